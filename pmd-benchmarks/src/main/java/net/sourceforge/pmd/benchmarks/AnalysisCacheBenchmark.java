@@ -0,0 +1,123 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.cache.internal.AnalysisCache;
+import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.rule.RuleSetLoader;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+
+/**
+ * Loads and persists an analysis cache that was filled by a previous
+ * run of PMD on the Java corpus. Loading includes the validity checks
+ * and the up-to-date check of every file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisCacheBenchmark {
+
+    @Param("rulesets/java/quickstart.xml")
+    public String ruleset;
+
+    private Path tempDir;
+    private File cacheFile;
+    private PMDConfiguration configuration;
+    private RuleSets ruleSets;
+    private List<TextFile> files;
+    private List<TextDocument> documents;
+    private AnalysisCache loadedCache;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCorpus corpus = BenchmarkCorpus.load(JavaLanguageModule.getInstance().getId());
+        tempDir = Files.createTempDirectory("pmd-benchmark");
+        cacheFile = tempDir.resolve("analysis.cache").toFile();
+
+        configuration = new PMDConfiguration();
+        configuration.setAnalysisCacheLocation(cacheFile.getPath());
+        configuration.addRuleSet(ruleset);
+        try (PmdAnalysis pmd = PmdAnalysis.create(configuration)) {
+            corpus.textFiles().forEach(pmd.files()::addFile);
+            pmd.performAnalysis();
+        }
+
+        ruleSets = new RuleSets(RuleSetLoader.fromPmdConfig(configuration).loadFromResources(configuration.getRuleSetPaths()));
+        files = corpus.textFiles();
+        documents = corpus.textDocuments();
+
+        if (load() < 0) {
+            throw new IllegalStateException("Cache was not hit, the benchmark is broken");
+        }
+
+        // persisting rewrites the same contents into the cache file
+        loadedCache = new FileAnalysisCache(cacheFile);
+        loadCache(loadedCache);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Returns the number of cached violations, or -1 if any file was not
+     * up-to-date.
+     */
+    @SuppressWarnings("PMD.CloseResource") // read-only documents
+    private int loadCache(AnalysisCache cache) {
+        cache.checkValidity(ruleSets, configuration.getClassLoader(), files);
+        int violations = 0;
+        for (TextDocument doc : documents) {
+            if (!cache.isUpToDate(doc)) {
+                return -1;
+            }
+            violations += cache.getCachedViolations(doc).size();
+        }
+        return violations;
+    }
+
+    @Benchmark
+    public int load() {
+        return loadCache(new FileAnalysisCache(cacheFile));
+    }
+
+    @Benchmark
+    public void persist() throws IOException {
+        loadedCache.persist();
+    }
+}
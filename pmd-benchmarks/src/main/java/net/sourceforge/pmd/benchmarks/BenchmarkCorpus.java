@@ -0,0 +1,165 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+/**
+ * Source files the benchmarks run on. The corpus is bundled into the
+ * benchmarks jar under {@code corpus/<language id>}, so that two runs
+ * of the same benchmark on different PMD versions see the same inputs.
+ *
+ * <p>Set the system property {@value #CORPUS_PROP} to a directory to
+ * use another corpus. That directory must contain one subdirectory per
+ * language id, e.g. {@code java} and {@code xml}.
+ *
+ * <p>Files are read into memory once, so that file system access is
+ * not part of the measurements (except where it is the point).
+ */
+public final class BenchmarkCorpus {
+
+    public static final String CORPUS_PROP = "pmd.benchmark.corpus";
+
+    private final LanguageVersion languageVersion;
+    private final List<SourceFile> files;
+
+    private BenchmarkCorpus(LanguageVersion languageVersion, List<SourceFile> files) {
+        this.languageVersion = languageVersion;
+        this.files = Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Load the corpus for the given language, using the default version
+     * of that language.
+     *
+     * @param languageId Language id, e.g. {@code "java"}
+     *
+     * @throws IllegalArgumentException If the language is unknown or the corpus is empty
+     */
+    public static BenchmarkCorpus load(String languageId) {
+        Language language = LanguageRegistry.CPD.getLanguageById(languageId);
+        if (language == null) {
+            throw new IllegalArgumentException("Unknown language " + languageId);
+        }
+        LanguageVersion version = language.getDefaultVersion();
+        Path root = corpusRoot().resolve(languageId);
+        List<SourceFile> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            List<Path> sorted = paths.filter(Files::isRegularFile)
+                                     .filter(it -> language.hasExtension(extension(it)))
+                                     .sorted()
+                                     .collect(Collectors.toList());
+            files = new ArrayList<>(sorted.size());
+            for (Path path : sorted) {
+                String name = languageId + "/" + root.relativize(path).toString().replace('\\', '/');
+                files.add(new SourceFile(name, new String(Files.readAllBytes(path), StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read corpus " + root, e);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No " + language.getName() + " files in corpus " + root);
+        }
+        return new BenchmarkCorpus(version, files);
+    }
+
+    private static String extension(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1);
+    }
+
+    private static Path corpusRoot() {
+        String override = System.getProperty(CORPUS_PROP);
+        if (override != null) {
+            return Paths.get(override);
+        }
+        URL url = BenchmarkCorpus.class.getClassLoader().getResource("corpus");
+        if (url == null) {
+            throw new IllegalStateException("No corpus on the classpath, set -D" + CORPUS_PROP);
+        }
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                return jarFileSystem(uri).provider().getPath(uri);
+            }
+            return Paths.get(uri);
+        } catch (URISyntaxException | IOException e) {
+            throw new IllegalStateException("Cannot open corpus " + url, e);
+        }
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // the file system stays open until the JVM exits
+    private static FileSystem jarFileSystem(URI uri) throws IOException {
+        try {
+            return FileSystems.newFileSystem(uri, Collections.emptyMap());
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(uri);
+        }
+    }
+
+    public LanguageVersion getLanguageVersion() {
+        return languageVersion;
+    }
+
+    /** Number of files in the corpus. */
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns fresh in-memory text files for the corpus. Text files
+     * are closed by the analysis, so each analysis needs its own.
+     */
+    public List<TextFile> textFiles() {
+        return files.stream()
+                    .map(it -> TextFile.forCharSeq(it.text, FileId.fromPathLikeString(it.name), languageVersion))
+                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns read-only text documents for the corpus. Those need not
+     * be closed.
+     */
+    public List<TextDocument> textDocuments() {
+        return files.stream()
+                    .map(it -> TextDocument.readOnlyString(it.text, FileId.fromPathLikeString(it.name), languageVersion))
+                    .collect(Collectors.toList());
+    }
+
+    private static final class SourceFile {
+
+        private final String name;
+        private final String text;
+
+        SourceFile(String name, String text) {
+            this.name = name;
+            this.text = text;
+        }
+    }
+}
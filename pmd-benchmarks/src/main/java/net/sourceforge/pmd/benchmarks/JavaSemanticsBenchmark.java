@@ -0,0 +1,94 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.ast.Parser.ParserTask;
+import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.InternalApiBridge;
+import net.sourceforge.pmd.lang.java.ast.JavaParser;
+import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor;
+import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor.LazyPass;
+import net.sourceforge.pmd.lang.java.internal.JavaLanguageProcessor;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+/**
+ * Runs the Java semantic passes of {@link JavaAstProcessor} (symbol
+ * resolution, disambiguation, type resolution, etc.) over the Java corpus,
+ * including the {@linkplain LazyPass lazy passes}, which run during an
+ * analysis as soon as one rule needs them.
+ * Trees are parsed again before each invocation, which is not measured.
+ * The type system is shared between invocations, like it is shared
+ * between files during an analysis.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JavaSemanticsBenchmark {
+
+    private LanguageProcessorRegistry lpRegistry;
+    private JavaLanguageProcessor javaProcessor;
+    private List<TextDocument> documents;
+    private List<ASTCompilationUnit> roots;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = BenchmarkCorpus.load(JavaLanguageModule.getInstance().getId()).textDocuments();
+        lpRegistry = LanguageProcessorRegistry.create(LanguageRegistry.PMD, Collections.emptyMap(), PmdReporter.quiet());
+        javaProcessor = (JavaLanguageProcessor) lpRegistry.getProcessor(JavaLanguageModule.getInstance());
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // read-only documents
+    @Setup(Level.Invocation)
+    public void parse() {
+        JavaParser parser = javaProcessor.getParserWithoutProcessing();
+        roots = new ArrayList<>(documents.size());
+        for (TextDocument doc : documents) {
+            roots.add(parser.parse(new ParserTask(doc, SemanticErrorReporter.noop(), lpRegistry)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lpRegistry.close();
+    }
+
+    @Benchmark
+    public List<ASTCompilationUnit> process() {
+        for (ASTCompilationUnit root : roots) {
+            JavaAstProcessor.process(javaProcessor, SemanticErrorReporter.noop(), root);
+            JavaAstProcessor astProcessor = InternalApiBridge.getProcessor(root);
+            for (LazyPass pass : LazyPass.values()) {
+                astProcessor.ensurePassDone(pass);
+            }
+        }
+        return roots;
+    }
+}
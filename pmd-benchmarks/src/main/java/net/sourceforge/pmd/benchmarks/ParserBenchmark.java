@@ -0,0 +1,81 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.sourceforge.pmd.lang.LanguageProcessor;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.ast.Parser;
+import net.sourceforge.pmd.lang.ast.Parser.ParserTask;
+import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.java.internal.JavaLanguageProcessor;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+/**
+ * Parses the whole corpus of a language. For Java, this excludes the
+ * semantic passes, see {@link JavaSemanticsBenchmark} for those.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"java", "xml"})
+    public String language;
+
+    private LanguageProcessorRegistry lpRegistry;
+    private Parser parser;
+    private List<TextDocument> documents;
+
+    @SuppressWarnings("PMD.CloseResource") // the processor is closed with the registry
+    @Setup
+    public void setup() {
+        BenchmarkCorpus corpus = BenchmarkCorpus.load(language);
+        documents = corpus.textDocuments();
+        lpRegistry = LanguageProcessorRegistry.create(LanguageRegistry.PMD, Collections.emptyMap(), PmdReporter.quiet());
+
+        LanguageProcessor processor = lpRegistry.getProcessor(corpus.getLanguageVersion().getLanguage());
+        if (processor instanceof JavaLanguageProcessor) {
+            parser = ((JavaLanguageProcessor) processor).getParserWithoutProcessing();
+        } else {
+            parser = processor.services().getParser();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        lpRegistry.close();
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // read-only documents
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (TextDocument doc : documents) {
+            bh.consume(parser.parse(new ParserTask(doc, SemanticErrorReporter.noop(), lpRegistry)));
+        }
+    }
+}
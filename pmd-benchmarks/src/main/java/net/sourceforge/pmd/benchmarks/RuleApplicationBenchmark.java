@@ -0,0 +1,130 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.ast.Parser;
+import net.sourceforge.pmd.lang.ast.Parser.ParserTask;
+import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.RuleSetLoader;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+/**
+ * Applies the XPath rules or the Java rules of some rule categories to
+ * the Java corpus. Files are parsed (including the semantic passes) once
+ * before the benchmark, so this only measures rule application, ie
+ * indexing the tree and running the rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleApplicationBenchmark {
+
+    /** Either {@code xpath} or {@code java}. */
+    @Param({"xpath", "java"})
+    public String ruleKind;
+
+    /** Comma-separated list of rulesets from which to take the rules. */
+    @Param("category/java/bestpractices.xml,category/java/codestyle.xml,category/java/design.xml,"
+        + "category/java/errorprone.xml,category/java/multithreading.xml,category/java/performance.xml")
+    public String rulesets;
+
+    private LanguageProcessorRegistry lpRegistry;
+    private RuleSets ruleSets;
+    private List<RootNode> roots;
+
+    @SuppressWarnings("PMD.CloseResource") // read-only documents
+    @Setup
+    public void setup() {
+        List<TextDocument> documents = BenchmarkCorpus.load(JavaLanguageModule.getInstance().getId()).textDocuments();
+        lpRegistry = LanguageProcessorRegistry.create(LanguageRegistry.PMD, Collections.emptyMap(), PmdReporter.quiet());
+
+        Parser parser = lpRegistry.getProcessor(JavaLanguageModule.getInstance()).services().getParser();
+        roots = new ArrayList<>(documents.size());
+        for (TextDocument doc : documents) {
+            roots.add(parser.parse(new ParserTask(doc, SemanticErrorReporter.noop(), lpRegistry)));
+        }
+
+        boolean xpath = "xpath".equals(ruleKind);
+        if (!xpath && !"java".equals(ruleKind)) {
+            throw new IllegalArgumentException("Unknown rule kind " + ruleKind);
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (RuleSet rset : new RuleSetLoader().loadFromResources(Arrays.asList(rulesets.split(",")))) {
+            for (Rule rule : rset.getRules()) {
+                if (isXPathRule(rule) == xpath) {
+                    rules.add(rule);
+                }
+            }
+        }
+        ruleSets = new RuleSets(RuleSet.create("benchmark", ruleKind + " rules", "benchmark.xml",
+                                               Collections.emptyList(), Collections.emptyList(), rules));
+        ruleSets.initializeRules(lpRegistry, PmdReporter.quiet());
+    }
+
+    private static boolean isXPathRule(Rule rule) {
+        while (rule instanceof RuleReference) {
+            rule = ((RuleReference) rule).getRule();
+        }
+        return rule instanceof XPathRule;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        lpRegistry.close();
+    }
+
+    @Benchmark
+    public int apply() {
+        CountingListener listener = new CountingListener();
+        for (RootNode root : roots) {
+            ruleSets.apply(root, listener);
+        }
+        return listener.count;
+    }
+
+    private static final class CountingListener implements FileAnalysisListener {
+
+        private int count;
+
+        @Override
+        public void onRuleViolation(RuleViolation violation) {
+            count++;
+        }
+    }
+}
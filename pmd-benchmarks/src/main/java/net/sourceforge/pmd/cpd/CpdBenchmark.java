@@ -0,0 +1,81 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.benchmarks.BenchmarkCorpus;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.document.TextDocument;
+
+/**
+ * Tokenizes the corpus of a language and runs the CPD match algorithm
+ * on the tokens. This class is in the package of CPD because the token
+ * store and match algorithm are package-private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CpdBenchmark {
+
+    @Param({"java", "xml"})
+    public String language;
+
+    @Param("50")
+    public int minimumTileSize;
+
+    private CpdLexer cpdLexer;
+    private List<TextDocument> documents;
+    private SourceManager sourceManager;
+    private Tokens tokens;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCorpus corpus = BenchmarkCorpus.load(language);
+        Language lang = corpus.getLanguageVersion().getLanguage();
+        cpdLexer = ((CpdCapableLanguage) lang).createCpdLexer(lang.newPropertyBundle());
+        documents = corpus.textDocuments();
+        sourceManager = new SourceManager(corpus.textFiles());
+        tokens = tokenize();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sourceManager.close();
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // read-only documents
+    @Benchmark
+    public Tokens tokenize() throws IOException {
+        Tokens result = new Tokens();
+        for (TextDocument doc : documents) {
+            CpdLexer.tokenize(cpdLexer, doc, result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Match> match() {
+        return new MatchAlgorithm(tokens, minimumTileSize).findMatches(new CPDNullListener(), sourceManager);
+    }
+}
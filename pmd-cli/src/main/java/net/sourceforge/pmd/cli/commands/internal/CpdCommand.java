@@ -87,6 +87,11 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
     @Option(names = "--non-recursive", description = "Don't scan subdirectiories.")
     private boolean nonRecursive;
 
+    @Option(names = { "--threads", "-t" },
+            description = "Sets the number of threads used by CPD. The report does not depend on the number of threads. "
+                    + "Defaults to 1.")
+    private Integer threads;
+
 
     /**
      * Converts these parameters into a configuration.
@@ -122,6 +127,9 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
         configuration.setSkipLexicalErrors(skipLexicalErrors);
         configuration.setSourceEncoding(encoding.getEncoding());
         configuration.setInputUri(uri);
+        if (threads != null) {
+            configuration.setThreads(threads);
+        }
 
         return configuration;
     }
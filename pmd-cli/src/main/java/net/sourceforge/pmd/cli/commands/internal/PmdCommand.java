@@ -84,10 +84,14 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
 
     private int threads;
 
+    private boolean virtualThreads;
+
     private boolean benchmark;
 
     private boolean showSuppressed;
 
+    private boolean reportInFileOrder;
+
     private String suppressMarker;
 
     private RulePriority minimumPriority;
@@ -106,6 +110,8 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
 
     private boolean noCache;
 
+    private boolean verifyCache;
+
     private boolean showProgressBar;
 
     @Option(names = { "--rulesets", "-R" },
@@ -143,6 +149,13 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         this.showSuppressed = showSuppressed;
     }
 
+    @Option(names = "--report-in-file-order",
+            description = "Report files in the order of their path, instead of the order in which their analysis finishes. "
+                    + "This makes the report reproducible when using several threads.")
+    public void setReportInFileOrder(final boolean reportInFileOrder) {
+        this.reportInFileOrder = reportInFileOrder;
+    }
+
     @Option(names = "--suppress-marker",
             description = "Specifies the string that marks a line which PMD should ignore.",
             defaultValue = "NOPMD")
@@ -215,7 +228,9 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
             description = "Specify the location of the cache file for incremental analysis. "
                     + "This should be the full path to the file, including the desired file name (not just the parent directory). "
                     + "If the file doesn't exist, it will be created on the first run. The file will be overwritten on each run "
-                    + "with the most up-to-date rule violations.")
+                    + "with the most up-to-date rule violations. "
+                    + "If the location is an existing directory, a cache that can be shared by several checkouts "
+                    + "of the project or by several machines is stored in that directory.")
     public void setCacheLocation(final Path cacheLocation) {
         this.cacheLocation = cacheLocation;
     }
@@ -225,6 +240,13 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         this.noCache = noCache;
     }
 
+    @Option(names = "--verify-cache",
+            description = "Read every file to compare its checksum with the cache, instead of trusting "
+                    + "files whose size and modification time didn't change since they were cached.")
+    public void setVerifyCache(final boolean verifyCache) {
+        this.verifyCache = verifyCache;
+    }
+
     @Option(names = { "--threads", "-t" }, description = "Sets the number of threads used by PMD.",
             defaultValue = "1")
     public void setThreads(final int threads) {
@@ -235,6 +257,14 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         this.threads = threads;
     }
 
+    @Option(names = "--virtual-threads",
+            description = "Process each file on a virtual thread (requires Java 21 or later). "
+                    + "Parsing and rule application still use at most as many threads as set with --threads. "
+                    + "This helps when reading the files is slow, e.g. on a network file system.")
+    public void setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     @Option(names = "--no-progress", negatable = true, defaultValue = "true",
             description = "Enables / disables progress bar indicator of live analysis progress.")
     public void setShowProgressBar(final boolean showProgressBar) {
@@ -267,11 +297,14 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         }
         configuration.setRuleSets(rulesets);
         configuration.setShowSuppressedViolations(showSuppressed);
+        configuration.setReportInFileOrder(reportInFileOrder);
         configuration.setSuppressMarker(suppressMarker);
         configuration.setThreads(threads);
+        configuration.setUseVirtualThreads(virtualThreads);
         configuration.setFailOnViolation(failOnViolation);
         configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null);
         configuration.setIgnoreIncrementalAnalysis(noCache);
+        configuration.setVerifyAnalysisCacheChecksums(verifyCache);
 
         if (languageVersion != null) {
             configuration.setDefaultLanguageVersions(languageVersion);
@@ -49,6 +49,12 @@ class CpdCommandTest extends BaseCommandTest<CpdCommand> {
         assertMultipleDirs(cmd);
     }
 
+    @Test
+    void testThreads() {
+        assertEquals(3, setupAndParse("-t", "3", "-d", "a").toConfiguration().getThreads());
+        assertEquals(1, setupAndParse("-d", "a").toConfiguration().getThreads());
+    }
+
     @Test
     void testEmptyDirOption() {
         assertError("-d", "-f", "text");
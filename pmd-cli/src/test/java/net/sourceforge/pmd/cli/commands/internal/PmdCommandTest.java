@@ -6,6 +6,8 @@ package net.sourceforge.pmd.cli.commands.internal;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Path;
 import java.util.List;
@@ -60,6 +62,21 @@ class PmdCommandTest extends BaseCommandTest<PmdCommand> {
         assertMultipleDirsAndRulesets(cmd);
     }
 
+    @Test
+    void testVirtualThreads() {
+        final PmdCommand cmd = setupAndParse("--virtual-threads", "-t", "4", "-d", "a", "-R", "x.xml");
+        final PMDConfiguration config = cmd.toConfiguration();
+        assertTrue(config.isUseVirtualThreads());
+        assertEquals(4, config.getThreads());
+        assertFalse(setupAndParse("-d", "a", "-R", "x.xml").toConfiguration().isUseVirtualThreads());
+    }
+
+    @Test
+    void testVerifyCache() {
+        assertTrue(setupAndParse("--verify-cache", "-d", "a", "-R", "x.xml").toConfiguration().isVerifyAnalysisCacheChecksums());
+        assertFalse(setupAndParse("-d", "a", "-R", "x.xml").toConfiguration().isVerifyAnalysisCacheChecksums());
+    }
+
     @Test
     void testEmptyDirOption() {
         assertError("-d", "-R", "y.xml");
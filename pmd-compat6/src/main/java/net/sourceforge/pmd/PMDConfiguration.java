@@ -7,6 +7,7 @@
 // - setSourceEncoding
 // - setBenchmark (non-functional)
 // - getMinimumPriority
+// - reportInFileOrder, added in 7.3.0
 
 package net.sourceforge.pmd;
 
@@ -28,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.annotation.DeprecatedUntil700;
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
+import net.sourceforge.pmd.cache.internal.DirectoryAnalysisCache;
 import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
 import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
@@ -120,6 +122,7 @@ public class PMDConfiguration extends AbstractConfiguration {
     private String reportFormat;
     private Properties reportProperties = new Properties();
     private boolean showSuppressedViolations = false;
+    private boolean reportInFileOrder = false;
     private boolean failOnViolation = true;
 
     private AnalysisCache analysisCache = new NoopAnalysisCache();
@@ -372,6 +375,7 @@ public class PMDConfiguration extends AbstractConfiguration {
     public Renderer createRenderer(boolean withReportWriter) {
         Renderer renderer = RendererFactory.createRenderer(reportFormat, reportProperties);
         renderer.setShowSuppressedViolations(showSuppressedViolations);
+        renderer.setReportInFileOrder(reportInFileOrder);
         if (withReportWriter) {
             renderer.setReportFile(getReportFile());
         }
@@ -420,6 +424,35 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.showSuppressedViolations = showSuppressedViolations;
     }
 
+    /**
+     * Whether the report lists files in a deterministic order.
+     *
+     * @return True if files are reported in order
+     *
+     * @see #setReportInFileOrder(boolean)
+     * @since 7.3.0
+     */
+    public boolean isReportInFileOrder() {
+        return reportInFileOrder;
+    }
+
+    /**
+     * Report the files in the order of their path, instead of the order
+     * in which their analysis finishes. With several threads, this makes
+     * the report reproducible between runs. Reports of files that finish
+     * early are then kept in memory until the previous files are rendered.
+     * At most a few hundred reports are kept this way: a file that takes
+     * longer than that is reported out of order. Defaults to false.
+     *
+     * @param reportInFileOrder Whether to report files in order
+     *
+     * @see Renderer#setReportInFileOrder(boolean)
+     * @since 7.3.0
+     */
+    public void setReportInFileOrder(boolean reportInFileOrder) {
+        this.reportInFileOrder = reportInFileOrder;
+    }
+
     /**
      * Get the Report properties. These are used to create the Renderer.
      *
@@ -516,9 +549,13 @@ public class PMDConfiguration extends AbstractConfiguration {
      * @param cacheLocation The location of the analysis cache to be used.
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
-                ? new NoopAnalysisCache()
-                : new FileAnalysisCache(new File(cacheLocation)));
+        if (cacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else if (new File(cacheLocation).isDirectory()) {
+            setAnalysisCache(new DirectoryAnalysisCache(new File(cacheLocation)));
+        } else {
+            setAnalysisCache(new FileAnalysisCache(new File(cacheLocation)));
+        }
     }
 
 
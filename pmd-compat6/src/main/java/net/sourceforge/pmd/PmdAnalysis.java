@@ -56,6 +56,7 @@ import net.sourceforge.pmd.reporting.Report;
 import net.sourceforge.pmd.reporting.ReportStats;
 import net.sourceforge.pmd.reporting.ReportStatsListener;
 import net.sourceforge.pmd.util.AssertionUtil;
+import net.sourceforge.pmd.util.CollectionUtil;
 import net.sourceforge.pmd.util.StringUtil;
 import net.sourceforge.pmd.util.log.PmdReporter;
 
@@ -382,6 +383,7 @@ public final class PmdAnalysis implements AutoCloseable {
 
         GlobalAnalysisListener listener;
         try {
+            configuration.getAnalysisCache().setReporter(reporter);
             @SuppressWarnings("PMD.CloseResource")
             AnalysisCacheListener cacheListener = new AnalysisCacheListener(configuration.getAnalysisCache(),
                     rulesets,
@@ -395,6 +397,7 @@ public final class PmdAnalysis implements AutoCloseable {
             // Initialize listeners
             try (ListenerInitializer initializer = listener.initializer()) {
                 initializer.setNumberOfFilesToAnalyze(textFiles.size());
+                initializer.setFilesToAnalyze(CollectionUtil.map(textFiles, TextFile::getFileId));
                 initializer.setFileNameRenderer(fileNameRenderer());
             }
         } catch (Exception e) {
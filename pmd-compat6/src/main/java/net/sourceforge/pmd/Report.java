@@ -4,6 +4,7 @@
 
 // This class has been taken from 7.0.0-SNAPSHOT
 // Changes: filterViolations(net.sourceforge.pmd.util.Predicate<RuleViolation> filter)
+// Violations are collected per file and merged lazily, as in 7.3.0.
 
 package net.sourceforge.pmd;
 
@@ -14,7 +15,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -49,7 +54,13 @@ import net.sourceforge.pmd.util.BaseResultProducingCloseable;
 public class Report {
     // todo move to package reporting
 
-    protected final List<RuleViolation> violations = synchronizedList(new ArrayList<>());
+    /**
+     * Violations that were not merged into {@link #sortedViolations} yet.
+     * Each chunk is sorted, and usually contains the violations of one file.
+     */
+    private final Queue<List<RuleViolation>> violationChunks = new ConcurrentLinkedQueue<>();
+    /** Guarded by {@link #violationChunks}. */
+    private List<RuleViolation> sortedViolations = Collections.emptyList();
     protected final List<SuppressedViolation> suppressedRuleViolations = synchronizedList(new ArrayList<>());
     protected final List<ProcessingError> errors = synchronizedList(new ArrayList<>());
     protected final List<ConfigurationError> configErrors = synchronizedList(new ArrayList<>());
@@ -196,11 +207,74 @@ public class Report {
     @Deprecated
     @InternalApi
     public void addRuleViolation(RuleViolation violation) {
-        synchronized (violations) {
-            // note that this binary search is inefficient as we usually
-            // report violations file by file.
-            int index = Collections.binarySearch(violations, violation, RuleViolation.DEFAULT_COMPARATOR);
-            violations.add(index < 0 ? -index - 1 : index, violation);
+        List<RuleViolation> chunk = new ArrayList<>(1);
+        chunk.add(violation);
+        addRuleViolations(chunk);
+    }
+
+    /**
+     * Adds violations to the report. The list is sorted here, and must
+     * not be modified afterwards. This doesn't block other threads: the chunks
+     * are only merged when {@link #getViolations()} is called.
+     *
+     * @param chunk the violations to add
+     */
+    private void addRuleViolations(List<RuleViolation> chunk) {
+        if (!chunk.isEmpty()) {
+            chunk.sort(RuleViolation.DEFAULT_COMPARATOR);
+            violationChunks.add(chunk);
+        }
+    }
+
+    /**
+     * Merges sorted lists into one sorted list.
+     */
+    private static List<RuleViolation> mergeSorted(List<List<RuleViolation>> chunks) {
+        int size = 0;
+        Queue<ChunkCursor> heads = new PriorityQueue<>(Math.max(1, chunks.size()));
+        for (List<RuleViolation> chunk : chunks) {
+            if (!chunk.isEmpty()) {
+                size += chunk.size();
+                heads.add(new ChunkCursor(chunk));
+            }
+        }
+        if (heads.size() == 1) {
+            return heads.poll().chunk;
+        }
+
+        List<RuleViolation> merged = new ArrayList<>(size);
+        while (!heads.isEmpty()) {
+            ChunkCursor head = heads.poll();
+            merged.add(head.current());
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static final class ChunkCursor implements Comparable<ChunkCursor> {
+
+        private static final Comparator<RuleViolation> COMPARATOR = RuleViolation.DEFAULT_COMPARATOR;
+
+        private final List<RuleViolation> chunk;
+        private int index;
+
+        ChunkCursor(List<RuleViolation> chunk) {
+            this.chunk = chunk;
+        }
+
+        RuleViolation current() {
+            return chunk.get(index);
+        }
+
+        boolean advance() {
+            return ++index < chunk.size();
+        }
+
+        @Override
+        public int compareTo(ChunkCursor o) {
+            return COMPARATOR.compare(current(), o.current());
         }
     }
 
@@ -259,9 +333,8 @@ public class Report {
         configErrors.addAll(r.configErrors);
         suppressedRuleViolations.addAll(r.suppressedRuleViolations);
 
-        for (RuleViolation violation : r.getViolations()) {
-            addRuleViolation(violation);
-        }
+        // the violations of r are sorted, they're merged when needed
+        violationChunks.add(r.getViolations());
     }
 
 
@@ -277,9 +350,22 @@ public class Report {
      * recorded until now. None of those violations were suppressed.
      *
      * <p>The violations list is sorted with {@link RuleViolation#DEFAULT_COMPARATOR}.
+     * It is a snapshot: violations that are added afterwards are not
+     * part of it.
      */
     public List<RuleViolation> getViolations() {
-        return Collections.unmodifiableList(violations);
+        synchronized (violationChunks) {
+            if (!violationChunks.isEmpty()) {
+                List<List<RuleViolation>> chunks = new ArrayList<>();
+                chunks.add(sortedViolations);
+                List<RuleViolation> chunk;
+                while ((chunk = violationChunks.poll()) != null) { // NOPMD AssignmentInOperand
+                    chunks.add(chunk);
+                }
+                sortedViolations = Collections.unmodifiableList(mergeSorted(chunks));
+            }
+            return sortedViolations;
+        }
     }
 
 
@@ -315,6 +401,11 @@ public class Report {
     public static /*final*/ class ReportBuilderListener extends BaseResultProducingCloseable<Report> implements FileAnalysisListener {
 
         private final Report report;
+        /**
+         * Violations added to the report when this listener is closed.
+         * Null once it is closed.
+         */
+        private List<RuleViolation> violations = new ArrayList<>();
 
         public ReportBuilderListener() {
             this(new Report());
@@ -329,9 +420,20 @@ public class Report {
             return report;
         }
 
+        @Override
+        protected void closeImpl() {
+            report.addRuleViolations(violations);
+            violations = null;
+        }
+
         @Override
         public void onRuleViolation(net.sourceforge.pmd.reporting.RuleViolation violation) {
-            report.addRuleViolation(violation);
+            if (violations == null) {
+                // reported after close, like the other events
+                report.addRuleViolation(violation);
+            } else {
+                violations.add(violation);
+            }
         }
 
         @Override
@@ -360,7 +462,8 @@ public class Report {
 
         @Override
         public FileAnalysisListener startFileAnalysis(TextFile file) {
-            // note that the report is shared, but Report is now thread-safe
+            // note that the report is shared, but Report is thread-safe,
+            // and each file listener only adds its violations when it is closed
             return new ReportBuilderListener(this.report);
         }
 
@@ -386,11 +489,13 @@ public class Report {
     public Report filterViolations(Predicate<RuleViolation> filter) {
         Report copy = new Report();
 
-        for (RuleViolation violation : violations) {
+        List<RuleViolation> kept = new ArrayList<>();
+        for (RuleViolation violation : getViolations()) {
             if (filter.test(violation)) {
-                copy.addRuleViolation(violation);
+                kept.add(violation);
             }
         }
+        copy.addRuleViolations(kept);
 
         copy.suppressedRuleViolations.addAll(suppressedRuleViolations);
         copy.errors.addAll(errors);
@@ -410,12 +515,9 @@ public class Report {
     public Report union(Report other) {
         Report copy = new Report();
 
-        for (RuleViolation violation : violations) {
-            copy.addRuleViolation(violation);
-        }
-        for (RuleViolation violation : other.violations) {
-            copy.addRuleViolation(violation);
-        }
+        // both lists are sorted, they're merged when needed
+        copy.violationChunks.add(getViolations());
+        copy.violationChunks.add(other.getViolations());
 
         copy.suppressedRuleViolations.addAll(suppressedRuleViolations);
         copy.suppressedRuleViolations.addAll(other.suppressedRuleViolations);
@@ -5,6 +5,7 @@
 // Old version of this class. In PMD 7, this has been moved into sub-package "rule".
 // Changes:
 // - deepCopy
+// - isThreadSafe, added in 7.3.0
 
 package net.sourceforge.pmd;
 
@@ -12,6 +13,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
+import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageProcessor;
 import net.sourceforge.pmd.lang.LanguageVersion;
@@ -30,7 +32,9 @@ import net.sourceforge.pmd.reporting.RuleContext;
  * <p>
  * <strong>Thread safety:</strong> PMD will create one instance of a rule per
  * thread. The instances are not shared across different threads. However, a
- * single rule instance is reused for analyzing multiple files.
+ * single rule instance is reused for analyzing multiple files. Rules that
+ * declare themselves {@linkplain #isThreadSafe() thread-safe} are the exception,
+ * a single instance is then shared by all threads.
  * </p>
  */
 public interface Rule extends PropertySource {
@@ -314,6 +318,23 @@ public interface Rule extends PropertySource {
      */
     net.sourceforge.pmd.lang.rule.Rule deepCopy();
 
+    /**
+     * Returns true if, once {@linkplain #initialize(LanguageProcessor) initialized},
+     * this rule instance may be applied to several files concurrently. PMD then
+     * shares this instance between all threads, instead of using a
+     * {@linkplain #deepCopy() copy} per thread. This is only possible if the rule
+     * keeps no state between {@link #start(RuleContext)} and {@link #end(RuleContext)},
+     * or only state that is itself thread-safe.
+     *
+     * <p>Returns false by default.
+     *
+     * @since 7.3.0
+     */
+    @Experimental
+    default boolean isThreadSafe() {
+        return false;
+    }
+
     // new method to be compatible with PMD 6 - Rule has changed package
     default Rule deepCopy$$bridge() { // SUPPRESS CHECKSTYLE ignore
         return deepCopy();
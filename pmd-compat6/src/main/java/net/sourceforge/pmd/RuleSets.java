@@ -5,6 +5,8 @@
 // This class has been taken from 7.0.0-SNAPSHOT
 // And it is kept in the old package.
 // The moved class is in net.sourceforge.pmd.lang.rule.internal
+// Changes: initializeRules/forkForConcurrentUse are synced with 7.3.0,
+// the fork is created by newFork to have the type of the subclass.
 
 package net.sourceforge.pmd;
 
@@ -39,6 +41,7 @@ public class RuleSets {
     private final List<RuleSet> ruleSets;
 
     private RuleApplicator ruleApplicator;
+    private boolean initialized;
 
     /**
      * Copy constructor. Deep copies RuleSets.
@@ -66,20 +69,75 @@ public class RuleSets {
         this.ruleSets = Collections.singletonList(ruleSet);
     }
 
-    public void initializeRules(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+    /**
+     * Initialize the rules. Rules that fail to initialize are removed and
+     * reported. This only has an effect the first time it is called, so
+     * that rules that are already shared with {@linkplain #forkForConcurrentUse forks}
+     * are not modified again.
+     */
+    public synchronized void initializeRules(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
         // this is abusing the mutability of RuleSet, will go away eventually.
         for (RuleSet rset : ruleSets) {
             for (Iterator<Rule> iterator = rset.getRules().iterator(); iterator.hasNext();) {
                 Rule rule = iterator.next();
-                try {
-                    rule.initialize(lpReg.getProcessor(rule.getLanguage()));
-                } catch (Exception e) {
-                    reporter.errorEx(
-                            "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
+                if (!initializeRule(rule, lpReg, reporter)) {
                     iterator.remove();
+                } else if (rule.isThreadSafe()) {
+                    // build it now, not concurrently in each fork
+                    rule.getTargetSelector();
+                }
+            }
+        }
+    }
+
+    private static boolean initializeRule(Rule rule, LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        try {
+            rule.initialize(lpReg.getProcessor(rule.getLanguage()));
+            return true;
+        } catch (Exception e) {
+            reporter.errorEx(
+                "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns a copy of these rulesets that can be used on another thread
+     * than this instance. Rules that are {@linkplain Rule#isThreadSafe() thread-safe}
+     * are shared with this instance, the other rules are deep copied and
+     * initialized. Copies that fail to initialize are dropped and reported.
+     *
+     * <p>This instance must have been {@linkplain #initializeRules initialized},
+     * and may not be modified anymore.
+     */
+    public RuleSets forkForConcurrentUse(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        List<RuleSet> rsets = new ArrayList<>(ruleSets.size());
+        for (RuleSet rs : ruleSets) {
+            List<Rule> rules = new ArrayList<>(rs.getRules().size());
+            for (Rule rule : rs.getRules()) {
+                if (rule.isThreadSafe()) {
+                    rules.add(rule);
+                } else {
+                    Rule copy = rule.deepCopy();
+                    if (initializeRule(copy, lpReg, reporter)) {
+                        rules.add(copy);
+                    }
                 }
             }
+            rsets.add(InternalApiBridge.withRules(rs, rules));
         }
+        RuleSets fork = newFork(rsets);
+        fork.initialized = true;
+        return fork;
+    }
+
+    /** Creates the instance returned by {@link #forkForConcurrentUse}. */
+    protected RuleSets newFork(List<RuleSet> ruleSets) {
+        return new RuleSets(ruleSets);
     }
 
     private RuleApplicator prepareApplicator() {
@@ -5,8 +5,11 @@
 package net.sourceforge.pmd.lang.rule.internal;
 
 import java.util.Collection;
+import java.util.List;
 
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
 import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.util.log.PmdReporter;
 
 public class RuleSets extends net.sourceforge.pmd.RuleSets {
     public RuleSets(net.sourceforge.pmd.RuleSets ruleSets) {
@@ -24,4 +27,15 @@ public class RuleSets extends net.sourceforge.pmd.RuleSets {
     public RuleSets(RuleSet ruleSet) {
         super(ruleSet);
     }
+
+    @Override
+    public RuleSets forkForConcurrentUse(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        // the return type must be this class, as in pmd-core
+        return (RuleSets) super.forkForConcurrentUse(lpReg, reporter);
+    }
+
+    @Override
+    protected RuleSets newFork(List<RuleSet> ruleSets) {
+        return new RuleSets(ruleSets);
+    }
 }
@@ -3,7 +3,8 @@
  */
 
 // This class has been taken from 7.0.0-SNAPSHOT
-// Changes: not final anymore to allow a subclass in the old package
+// Changes: not final anymore to allow a subclass in the old package,
+// so only XPathRule itself and that subclass are thread-safe.
 
 package net.sourceforge.pmd.lang.rule.xpath;
 
@@ -92,6 +93,17 @@ public /*final*/ class XPathRule extends AbstractRule {
         return rule;
     }
 
+    /**
+     * XPath rules are thread-safe once initialized: the compiled query is
+     * immutable, and the state of an evaluation is local to that evaluation.
+     * Subclasses may keep state, unless they are the empty subclass in the
+     * old package.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return getClass() == XPathRule.class || getClass() == net.sourceforge.pmd.lang.rule.XPathRule.class;
+    }
+
     /**
      * Returns the XPath expression that implements this rule.
      */
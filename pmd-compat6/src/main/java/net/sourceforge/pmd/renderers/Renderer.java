@@ -9,11 +9,13 @@ package net.sourceforge.pmd.renderers;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 
 import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 import net.sourceforge.pmd.properties.PropertySource;
@@ -106,6 +108,38 @@ public interface Renderer extends PropertySource {
      */
     void setShowSuppressedViolations(boolean showSuppressedViolations);
 
+    /**
+     * Whether the reports of files are rendered in the order of the
+     * files, see {@link #setReportInFileOrder(boolean)}.
+     *
+     * @since 7.3.0
+     */
+    default boolean isReportInFileOrder() {
+        return false;
+    }
+
+    /**
+     * Render the reports of files in the order in which the files were
+     * collected, that is, sorted by {@link FileId}, instead of the order
+     * in which their analysis finishes. With several threads, this makes
+     * the report reproducible, but reports of files that are analysed
+     * early are kept in memory until the reports of previous files are
+     * rendered. To bound memory usage, at most a few hundred reports
+     * are kept this way. If a file takes so long that more reports are
+     * waiting for it, its report is rendered out of order when it is done.
+     *
+     * <p>This is only used by the default implementation of {@link #newListener()}.
+     * Renderers that override it may already sort the violations of the
+     * whole report. The default implementation of this method does nothing.
+     *
+     * @param reportInFileOrder Whether to render the files in order
+     *
+     * @since 7.3.0
+     */
+    default void setReportInFileOrder(boolean reportInFileOrder) {
+        // noop
+    }
+
     /**
      * Get the Writer for the Renderer.
      *
@@ -199,15 +233,17 @@ public interface Renderer extends PropertySource {
     //  ie violations are batched by file and forwarded to the renderer
     //  when the file is done. Many renderers could directly handle
     //  violations as they come though.
+    //  File reports are rendered one at a time on a dedicated thread,
+    //  see FileReportPipeline.
     default GlobalAnalysisListener newListener() throws IOException {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
             this.start();
         }
 
-        return new GlobalAnalysisListener() {
+        // the writer thread of the pipeline is started with the first file report
+        FileReportPipeline pipeline = new FileReportPipeline(this);
 
-            // guard for the close routine
-            final Object reportMergeLock = new Object();
+        return new GlobalAnalysisListener() {
 
             final GlobalReportBuilderListener configErrorReport = new GlobalReportBuilderListener();
 
@@ -223,6 +259,13 @@ public interface Renderer extends PropertySource {
                     public void setFileNameRenderer(FileNameRenderer fileNameRenderer) {
                         Renderer.this.setFileNameRenderer(fileNameRenderer);
                     }
+
+                    @Override
+                    public void setFilesToAnalyze(List<FileId> files) {
+                        if (isReportInFileOrder()) {
+                            pipeline.setFileOrder(files);
+                        }
+                    }
                 };
             }
 
@@ -252,12 +295,11 @@ public interface Renderer extends PropertySource {
                     @Override
                     public void close() throws Exception {
                         reportBuilder.close();
-                        synchronized (reportMergeLock) {
-                            // TODO renderFileReport should be thread-safe instead
-                            try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
-                                renderer.renderFileReport(reportBuilder.getResult());
-                            }
-                        }
+                        // the builder produces an old report, converted like in renderFileReport(net.sourceforge.pmd.Report)
+                        Report report = new Report();
+                        report.merge(reportBuilder.getResult());
+                        // rendered on the writer thread of the pipeline, as renderFileReport is not thread-safe
+                        pipeline.submit(file.getFileId(), report);
                     }
 
                     @Override
@@ -269,6 +311,7 @@ public interface Renderer extends PropertySource {
 
             @Override
             public void close() throws Exception {
+                pipeline.finish();
                 configErrorReport.close();
                 Renderer.this.renderFileReport(configErrorReport.getResult());
                 try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
@@ -52,7 +52,7 @@ public class Report extends net.sourceforge.pmd.Report {
     public Report filterViolations(Predicate<net.sourceforge.pmd.RuleViolation> filter) {
         Report copy = new Report();
 
-        for (net.sourceforge.pmd.RuleViolation violation : violations) {
+        for (net.sourceforge.pmd.RuleViolation violation : getViolations()) {
             if (filter.test(violation)) {
                 copy.addRuleViolation(violation);
             }
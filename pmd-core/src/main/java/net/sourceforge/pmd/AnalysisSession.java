@@ -0,0 +1,328 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.lang.LanguageProcessor;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry.LanguageTerminationException;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Parser.ParserTask;
+import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
+import net.sourceforge.pmd.lang.ast.SemanticException;
+import net.sourceforge.pmd.lang.document.Chars;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.document.TextRegion;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.InternalApiBridge;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.Report.ReportBuilderListener;
+import net.sourceforge.pmd.reporting.Report.SuppressedViolation;
+import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+/**
+ * Analyses files one at a time, for instance each time a file is saved
+ * in an IDE. This is created by {@link PmdAnalysis#newSession()}.
+ *
+ * <p>A session keeps the language processors and the initialized rules
+ * of the analysis until it is closed. This avoids setting up the analysis
+ * for each file, which is much more costly than analysing a single file.
+ * In particular, the Java type system and the classes it loaded from
+ * the auxclasspath are reused.
+ *
+ * <p>When a file is {@linkplain #reanalyze(FileResult, TextRegion, CharSequence) analysed again}
+ * after an edit, only the rules that may report something different are
+ * applied again, see there. The file is still parsed again in full,
+ * as parsers and the processing of the AST (e.g. symbol and type
+ * resolution in Java) work on whole files.
+ *
+ * <p>The analysis cache and the renderers of the configuration are not
+ * used. Methods of this class may be called from several threads, but
+ * analyses run one at a time.
+ *
+ * <pre>{@code
+ * try (PmdAnalysis pmd = PmdAnalysis.create(config);
+ *      AnalysisSession session = pmd.newSession()) {
+ *     FileResult result = session.analyze(file);
+ *     // later, when the file changes
+ *     result = session.reanalyze(result, editedRegion, newText);
+ *     result.getReport().getViolations()...
+ * }
+ * }</pre>
+ */
+@Experimental
+public final class AnalysisSession implements AutoCloseable {
+
+    private final RuleSets ruleSets;
+    private final LanguageProcessorRegistry lpRegistry;
+    private final PmdReporter reporter;
+    private boolean closed;
+
+    AnalysisSession(RuleSets ruleSets, LanguageProcessorRegistry lpRegistry, PmdReporter reporter) {
+        this.ruleSets = ruleSets;
+        this.lpRegistry = lpRegistry;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Reads and analyses the given file.
+     *
+     * @throws IOException If the file cannot be read
+     */
+    public FileResult analyze(TextFile file) throws IOException {
+        try (TextDocument doc = TextDocument.create(file)) {
+            return analyze(doc);
+        }
+    }
+
+    /**
+     * Analyses the file of a previous result, after the given region of
+     * its text was replaced with the given text. The region is given in
+     * the coordinates of the text of the previous result, see {@link FileResult#getText()}.
+     * If the text does not change, the previous result is returned.
+     *
+     * <p>The file is parsed again, but a rule is only applied again if
+     * it visits a node on the edited lines, or if it reported a violation
+     * on those lines in the previous result. The violations of the
+     * other rules are taken from the previous result, and moved to
+     * their new lines. This assumes that rules report violations on
+     * the nodes they visit, or near them: a rule that reports a violation
+     * because of a declaration elsewhere in the file may keep a stale violation,
+     * until the file is analysed again with {@link #analyze(TextFile)}.
+     * All rules are applied again if the previous analysis failed.
+     *
+     * @throws IndexOutOfBoundsException If the region is not in the bounds of the text
+     */
+    public FileResult reanalyze(FileResult previous, TextRegion region, CharSequence replacement) {
+        Chars text = previous.getText();
+        if (region.getEndOffset() > text.length()) {
+            throw new IndexOutOfBoundsException("Region " + region + " is not in a text of length " + text.length());
+        }
+        if (text.subSequence(region.getStartOffset(), region.getEndOffset()).contentEquals(replacement)) {
+            return previous;
+        }
+        StringBuilder newText = new StringBuilder(text.length() - region.getLength() + replacement.length());
+        newText.append(text, 0, region.getStartOffset())
+               .append(replacement)
+               .append(text, region.getEndOffset(), text.length());
+
+        TextDocument doc = TextDocument.readOnlyString(newText, previous.getFileId(), previous.getLanguageVersion());
+        if (previous.getRootNode() == null || !previous.getReport().getProcessingErrors().isEmpty()) {
+            return analyze(doc);
+        }
+        Edit edit = new Edit(doc, region, replacement.length(), text, newText);
+        return analyze(doc, (root, listener) -> reapplyRules(previous.getReport(), edit, root, listener));
+    }
+
+    private FileResult analyze(TextDocument doc) {
+        return analyze(doc, ruleSets::apply);
+    }
+
+    private synchronized FileResult analyze(TextDocument doc, BiConsumer<RootNode, FileAnalysisListener> applyRules) {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+        ReportBuilderListener listener = new ReportBuilderListener();
+        RootNode root;
+        try {
+            root = analyze(doc, applyRules, listener);
+        } finally {
+            listener.close();
+        }
+        return new FileResult(doc.getFileId(), doc.getLanguageVersion(), doc.getText(), root, listener.getResult());
+    }
+
+    private @Nullable RootNode analyze(TextDocument doc, BiConsumer<RootNode, FileAnalysisListener> applyRules, FileAnalysisListener listener) {
+        try {
+            SemanticErrorReporter semanticReporter = SemanticErrorReporter.reportToLogger(reporter);
+            @SuppressWarnings("PMD.CloseResource")
+            LanguageProcessor processor = lpRegistry.getProcessor(doc.getLanguageVersion().getLanguage());
+            ParserTask task = new ParserTask(doc, semanticReporter, lpRegistry);
+
+            RootNode root = processor.services().getParser().parse(task);
+
+            SemanticException semanticError = semanticReporter.getFirstError();
+            if (semanticError != null) {
+                throw semanticError;
+            }
+            applyRules.accept(root, listener);
+            return root;
+        } catch (Exception e) {
+            listener.onError(new Report.ProcessingError(e, doc.getFileId()));
+            return null;
+        }
+    }
+
+    private void reapplyRules(Report previous, Edit edit, RootNode root, FileAnalysisListener listener) {
+        Set<Rule> reportedOnEdit = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RuleViolation violation : previous.getViolations()) {
+            if (edit.touches(violation.getLocation())) {
+                reportedOnEdit.add(violation.getRule());
+            }
+        }
+        for (SuppressedViolation suppressed : previous.getSuppressedViolations()) {
+            if (edit.touches(suppressed.getRuleViolation().getLocation())) {
+                reportedOnEdit.add(suppressed.getRuleViolation().getRule());
+            }
+        }
+
+        Set<Rule> skipped = ruleSets.applyOnLines(root, edit.beginLine, edit.newEndLine, reportedOnEdit::contains, listener);
+
+        for (RuleViolation violation : previous.getViolations()) {
+            if (skipped.contains(violation.getRule())) {
+                listener.onRuleViolation(edit.move(violation));
+            }
+        }
+        for (SuppressedViolation suppressed : previous.getSuppressedViolations()) {
+            if (skipped.contains(suppressed.getRuleViolation().getRule())) {
+                listener.onSuppressedRuleViolation(
+                    new SuppressedViolation(edit.move(suppressed.getRuleViolation()), suppressed.getSuppressor(), suppressed.getUserMessage()));
+            }
+        }
+    }
+
+    /**
+     * Closes the language processors of this session.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            lpRegistry.close();
+        } catch (LanguageTerminationException e) {
+            reporter.errorEx("Error while closing language processors", e);
+        }
+    }
+
+    /**
+     * The lines that were edited, from the start of the first one to the
+     * end of the last one. Lines after them are moved, but not modified.
+     */
+    private static final class Edit {
+
+        private final TextDocument newDoc;
+        private final int beginLine;
+        private final int oldEndLine;
+        private final int newEndLine;
+        private final int oldEndOffset;
+        private final int offsetShift;
+
+        Edit(TextDocument newDoc, TextRegion region, int replacementLength, Chars oldText, CharSequence newText) {
+            this.newDoc = newDoc;
+            this.beginLine = lineAt(oldText, region.getStartOffset());
+            this.oldEndLine = lineAt(oldText, region.getEndOffset());
+            this.newEndLine = lineAt(newText, region.getStartOffset() + replacementLength);
+            this.oldEndOffset = region.getEndOffset();
+            this.offsetShift = replacementLength - region.getLength();
+        }
+
+        boolean touches(FileLocation location) {
+            return location.getStartLine() <= oldEndLine && beginLine <= location.getEndLine();
+        }
+
+        /** Moves a violation that does not touch the edited lines to its place in the new text. */
+        RuleViolation move(RuleViolation violation) {
+            FileLocation location = violation.getLocation();
+            if (location.getEndLine() < beginLine) {
+                return violation;
+            }
+            TextRegion region = location.getRegionInFile();
+            FileLocation moved;
+            if (region != null && region.getStartOffset() >= oldEndOffset) {
+                moved = newDoc.toLocation(TextRegion.fromOffsetLength(region.getStartOffset() + offsetShift, region.getLength()));
+            } else {
+                int lineShift = newEndLine - oldEndLine;
+                moved = FileLocation.range(location.getFileId(),
+                                           TextRange2d.range2d(location.getStartLine() + lineShift, location.getStartColumn(),
+                                                               location.getEndLine() + lineShift, location.getEndColumn()));
+            }
+            return InternalApiBridge.createRuleViolation(violation.getRule(), moved, violation.getDescription(), violation.getAdditionalInfo());
+        }
+
+        /** Returns the 1-based line of the offset, in a text with normalized line terminators. */
+        private static int lineAt(CharSequence text, int offset) {
+            int line = 1;
+            for (int i = 0; i < offset; i++) {
+                if (text.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return line;
+        }
+    }
+
+    /**
+     * The result of the analysis of a file in a session.
+     */
+    public static final class FileResult {
+
+        private final FileId fileId;
+        private final LanguageVersion languageVersion;
+        private final Chars text;
+        private final @Nullable RootNode rootNode;
+        private final Report report;
+
+        FileResult(FileId fileId, LanguageVersion languageVersion, Chars text, @Nullable RootNode rootNode, Report report) {
+            this.fileId = fileId;
+            this.languageVersion = languageVersion;
+            this.text = text;
+            this.rootNode = rootNode;
+            this.report = Objects.requireNonNull(report);
+        }
+
+        public FileId getFileId() {
+            return fileId;
+        }
+
+        public LanguageVersion getLanguageVersion() {
+            return languageVersion;
+        }
+
+        /**
+         * Returns the text that was analysed, with normalized line endings.
+         * Regions passed to {@link AnalysisSession#reanalyze(FileResult, TextRegion, CharSequence)}
+         * are offsets in this text.
+         */
+        public Chars getText() {
+            return text;
+        }
+
+        /**
+         * Returns the AST of the file. This is null if the file could not
+         * be parsed, in that case the report contains a processing error.
+         */
+        public @Nullable RootNode getRootNode() {
+            return rootNode;
+        }
+
+        /**
+         * Returns the violations and errors found in the file.
+         */
+        public @NonNull Report getReport() {
+            return report;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
+import net.sourceforge.pmd.cache.internal.DirectoryAnalysisCache;
 import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
 import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
@@ -86,6 +87,8 @@ import net.sourceforge.pmd.util.log.internal.SimpleMessageReporter;
  * <ul>
  * <li>Use {@link #setThreads(int)} to control the parallelism of the analysis. Defaults
  * one thread per available processor. {@link #getThreads()}</li>
+ * <li>Use {@link #setUseVirtualThreads(boolean)} to process files on virtual threads
+ * on Java 21 and later.</li>
  * </ul>
  */
 public class PMDConfiguration extends AbstractConfiguration {
@@ -98,6 +101,7 @@ public class PMDConfiguration extends AbstractConfiguration {
     // General behavior options
     private String suppressMarker = DEFAULT_SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean useVirtualThreads;
     private ClassLoader classLoader = getClass().getClassLoader();
 
     // Rule and source file options
@@ -108,10 +112,12 @@ public class PMDConfiguration extends AbstractConfiguration {
     private String reportFormat;
     private Properties reportProperties = new Properties();
     private boolean showSuppressedViolations = false;
+    private boolean reportInFileOrder = false;
     private boolean failOnViolation = true;
 
     private AnalysisCache analysisCache = new NoopAnalysisCache();
     private boolean ignoreIncrementalAnalysis;
+    private boolean verifyAnalysisCacheChecksums;
 
     public PMDConfiguration() {
         this(DEFAULT_REGISTRY);
@@ -161,6 +167,36 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Whether files are processed on virtual threads.
+     *
+     * @return True if virtual threads are used
+     *
+     * @see #setUseVirtualThreads(boolean)
+     * @since 7.3.0
+     */
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Process each file on its own virtual thread. This helps when reading
+     * the files is slow, e.g. on a network file system, as threads that wait
+     * for I/O don't prevent other files from being analysed. Parsing and
+     * rule application still run on at most {@link #getThreads()} threads
+     * at a time.
+     *
+     * <p>Virtual threads need Java 21 or later. On older runtimes, and if
+     * the thread count is zero, this setting is ignored. Defaults to false.
+     *
+     * @param useVirtualThreads Whether to use virtual threads
+     *
+     * @since 7.3.0
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      *
@@ -295,6 +331,7 @@ public class PMDConfiguration extends AbstractConfiguration {
     public Renderer createRenderer(boolean withReportWriter) {
         Renderer renderer = RendererFactory.createRenderer(reportFormat, reportProperties);
         renderer.setShowSuppressedViolations(showSuppressedViolations);
+        renderer.setReportInFileOrder(reportInFileOrder);
         if (withReportWriter) {
             renderer.setReportFile(getReportFilePath() != null ? getReportFilePath().toString() : null);
         }
@@ -343,6 +380,35 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.showSuppressedViolations = showSuppressedViolations;
     }
 
+    /**
+     * Whether the report lists files in a deterministic order.
+     *
+     * @return True if files are reported in order
+     *
+     * @see #setReportInFileOrder(boolean)
+     * @since 7.3.0
+     */
+    public boolean isReportInFileOrder() {
+        return reportInFileOrder;
+    }
+
+    /**
+     * Report the files in the order of their path, instead of the order
+     * in which their analysis finishes. With several threads, this makes
+     * the report reproducible between runs. Reports of files that finish
+     * early are then kept in memory until the previous files are rendered.
+     * At most a few hundred reports are kept this way: a file that takes
+     * longer than that is reported out of order. Defaults to false.
+     *
+     * @param reportInFileOrder Whether to report files in order
+     *
+     * @see Renderer#setReportInFileOrder(boolean)
+     * @since 7.3.0
+     */
+    public void setReportInFileOrder(boolean reportInFileOrder) {
+        this.reportInFileOrder = reportInFileOrder;
+    }
+
     /**
      * Get the Report properties. These are used to create the Renderer.
      *
@@ -423,13 +489,25 @@ public class PMDConfiguration extends AbstractConfiguration {
      * If incremental analysis was explicitly disabled ({@link #isIgnoreIncrementalAnalysis()}),
      * then this method is a noop.
      *
+     * <p>If the location is an existing directory, the cache entries are
+     * stored in that directory, keyed by the content of the analyzed files
+     * instead of their path. Such a cache can be shared by several checkouts
+     * of a project, or by several machines. Otherwise, the location is the
+     * cache file.
+     *
      * @param cacheLocation The location of the analysis cache to be used. Use {@code null}
      *                      to disable the cache.
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
-                         ? new NoopAnalysisCache()
-                         : new FileAnalysisCache(new File(cacheLocation)));
+        if (cacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else if (new File(cacheLocation).isDirectory()) {
+            setAnalysisCache(new DirectoryAnalysisCache(new File(cacheLocation)));
+        } else {
+            FileAnalysisCache cache = new FileAnalysisCache(new File(cacheLocation));
+            cache.setUseFileStamps(!verifyAnalysisCacheChecksums);
+            setAnalysisCache(cache);
+        }
     }
 
 
@@ -456,6 +534,38 @@ public class PMDConfiguration extends AbstractConfiguration {
         return ignoreIncrementalAnalysis;
     }
 
+    /**
+     * Sets whether the analysis cache reads every file to compare its
+     * checksum with the cached one. By default, a file whose size,
+     * modification time and file key didn't change since it was cached
+     * is assumed to be unchanged, and is not read at all. Enable this if
+     * the files may be modified without their modification time changing,
+     * e.g. when they are restored from an archive. Defaults to false.
+     *
+     * @param verify Whether to always compare checksums
+     *
+     * @since 7.3.0
+     */
+    public void setVerifyAnalysisCacheChecksums(boolean verify) {
+        this.verifyAnalysisCacheChecksums = verify;
+        if (analysisCache instanceof FileAnalysisCache) {
+            ((FileAnalysisCache) analysisCache).setUseFileStamps(!verify);
+        }
+    }
+
+    /**
+     * Returns whether the analysis cache reads every file to compare its
+     * checksum with the cached one.
+     *
+     * @return {@code true} if checksums are always compared
+     *
+     * @see #setVerifyAnalysisCacheChecksums(boolean)
+     * @since 7.3.0
+     */
+    public boolean isVerifyAnalysisCacheChecksums() {
+        return verifyAnalysisCacheChecksums;
+    }
+
     /**
      * Get the file to which the report should render.
      *
@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
 
+import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
@@ -45,6 +46,7 @@ import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.lang.document.FileCollector;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AnalysisScheduler;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.lang.rule.RuleSetLoader;
@@ -59,6 +61,7 @@ import net.sourceforge.pmd.reporting.Report.GlobalReportBuilderListener;
 import net.sourceforge.pmd.reporting.ReportStats;
 import net.sourceforge.pmd.reporting.ReportStatsListener;
 import net.sourceforge.pmd.util.AssertionUtil;
+import net.sourceforge.pmd.util.CollectionUtil;
 import net.sourceforge.pmd.util.StringUtil;
 import net.sourceforge.pmd.util.log.PmdReporter;
 
@@ -373,6 +376,31 @@ public final class PmdAnalysis implements AutoCloseable {
         }
     }
 
+    /**
+     * Starts a session to analyse files one at a time, with the rulesets
+     * and language properties of this instance. The session keeps the
+     * language processors open until it is closed, so that analysing a
+     * file again after an edit doesn't pay for setting up the analysis.
+     * Files and renderers of this instance are not used by the session.
+     *
+     * @see AnalysisSession
+     */
+    @Experimental
+    public AnalysisSession newSession() {
+        // the rules are initialized with the language processors of the
+        // session, so each session needs its own copy
+        RuleSets rulesets = new RuleSets(CollectionUtil.map(this.ruleSets, RuleSet::copy));
+        removeBrokenRules(rulesets);
+
+        LanguageProcessorRegistry lpRegistry = LanguageProcessorRegistry.create(
+            new LanguageRegistry(getApplicableLanguages(true)),
+            langProperties,
+            reporter
+        );
+        rulesets.initializeRules(lpRegistry, reporter);
+        return new AnalysisSession(rulesets, lpRegistry, reporter);
+    }
+
     void performAnalysisImpl(List<? extends GlobalReportBuilderListener> extraListeners) {
         try (FileCollector files = collector) {
             files.filterLanguages(getApplicableLanguages(false));
@@ -385,6 +413,7 @@ public final class PmdAnalysis implements AutoCloseable {
 
         GlobalAnalysisListener listener;
         try {
+            configuration.getAnalysisCache().setReporter(reporter);
             @SuppressWarnings("PMD.CloseResource")
             AnalysisCacheListener cacheListener = new AnalysisCacheListener(configuration.getAnalysisCache(),
                                                                             rulesets,
@@ -398,6 +427,7 @@ public final class PmdAnalysis implements AutoCloseable {
             // Initialize listeners
             try (ListenerInitializer initializer = listener.initializer()) {
                 initializer.setNumberOfFilesToAnalyze(textFiles.size());
+                initializer.setFilesToAnalyze(CollectionUtil.map(textFiles, TextFile::getFileId));
                 initializer.setFileNameRenderer(fileNameRenderer());
             }
         } catch (Exception e) {
@@ -421,7 +451,9 @@ public final class PmdAnalysis implements AutoCloseable {
                 new LanguageRegistry(getApplicableLanguages(true)),
                 langProperties,
                 reporter
-            )) {
+            );
+                 // closed before the language processors
+                 AnalysisScheduler scheduler = newScheduler()) {
                 // Note the analysis task is shared: all processors see
                 // the same file list, which may contain files for other
                 // languages.
@@ -432,7 +464,8 @@ public final class PmdAnalysis implements AutoCloseable {
                     configuration.getThreads(),
                     configuration.getAnalysisCache(),
                     reporter,
-                    lpRegistry
+                    lpRegistry,
+                    scheduler
                 );
 
                 List<AutoCloseable> analyses = new ArrayList<>();
@@ -462,6 +495,25 @@ public final class PmdAnalysis implements AutoCloseable {
     }
 
 
+    /**
+     * Returns the threads shared by all language processors, so that the
+     * thread count is a limit for the whole analysis. Returns null if the
+     * analysis is single-threaded.
+     */
+    private AnalysisScheduler newScheduler() {
+        int threads = configuration.getThreads();
+        if (threads <= 0) {
+            return null;
+        } else if (configuration.isUseVirtualThreads()) {
+            if (!AnalysisScheduler.supportsVirtualThreads()) {
+                reporter.warn("Virtual threads need Java 21 or later, using {0} platform threads instead", threads);
+                return new AnalysisScheduler(threads);
+            }
+            return AnalysisScheduler.withVirtualThreads(threads);
+        }
+        return new AnalysisScheduler(threads);
+    }
+
     private GlobalAnalysisListener createComposedRendererListener(List<Renderer> renderers) throws Exception {
         if (renderers.isEmpty()) {
             return GlobalAnalysisListener.noop();
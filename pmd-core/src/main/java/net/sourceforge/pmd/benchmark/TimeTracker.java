@@ -4,8 +4,8 @@
 
 package net.sourceforge.pmd.benchmark;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -40,7 +40,7 @@ public final class TimeTracker {
     };
 
     static {
-        TIMER_ENTRIES = ThreadLocal.withInitial(() -> Collections.asLifoQueue(new LinkedList<>()));
+        TIMER_ENTRIES = ThreadLocal.withInitial(() -> Collections.asLifoQueue(new ArrayDeque<>()));
     }
 
     private TimeTracker() {
@@ -100,7 +100,8 @@ public final class TimeTracker {
 
         finishOperation(0);
 
-        // clean up thread-locals in multithread analysis
+        // clean up thread-locals in multithread analysis, files may
+        // each run on their own thread, which must not keep an empty queue
         if (TIMER_ENTRIES.get().isEmpty()) {
             TIMER_ENTRIES.remove();
         }
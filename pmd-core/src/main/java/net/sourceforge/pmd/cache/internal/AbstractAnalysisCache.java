@@ -37,6 +37,8 @@ import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.Report.ProcessingError;
 import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
+import net.sourceforge.pmd.util.log.internal.SimpleMessageReporter;
 
 /**
  * Abstract implementation of the analysis cache. Handles all operations, except for persistence.
@@ -48,7 +50,11 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
     protected final String pmdVersion;
     protected final ConcurrentMap<FileId, AnalysisResult> fileResultsCache = new ConcurrentHashMap<>();
     protected final ConcurrentMap<FileId, AnalysisResult> updatedResultsCache = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<FileId, FileStamp> fileStamps = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<FileId, FileStamp> updatedFileStamps = new ConcurrentHashMap<>();
     protected final CachedRuleMapper ruleMapper = new CachedRuleMapper();
+    protected PmdReporter reporter = new SimpleMessageReporter(LOG);
+    private boolean useFileStamps = true;
     protected long rulesetChecksum;
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
@@ -67,9 +73,20 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
             final AnalysisResult updatedResult;
 
             // is this a known file? has it changed?
-            final boolean upToDate = cachedResult != null
+            boolean upToDate = cachedResult != null
                 && cachedResult.getFileChecksum() == document.getCheckSum();
 
+            if (upToDate) {
+                try {
+                    // results of a cache file are loaded lazily
+                    cachedResult.loadViolations();
+                } catch (final IOException e) {
+                    LOG.warn("Cached violations of {} can't be read, the file will be analyzed again: {}",
+                             document.getFileId().getOriginalPath(), e.getMessage());
+                    upToDate = false;
+                }
+            }
+
             if (upToDate) {
                 LOG.trace("Incremental Analysis cache HIT");
                 
@@ -89,16 +106,69 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
         }
     }
 
+    @Override
+    public void setReporter(final PmdReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * Sets whether files whose {@link FileStamp} didn't change are assumed
+     * to be unchanged, see {@link #isUnmodified(TextFile)}. If false, every
+     * file is read to compare its checksum with the cached one. The stamps
+     * are still recorded for later analyses.
+     */
+    public void setUseFileStamps(boolean useFileStamps) {
+        this.useFileStamps = useFileStamps;
+    }
+
+    @Override
+    public boolean isUnmodified(final TextFile file) {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
+            final FileId fileId = file.getFileId();
+            final FileStamp stamp = FileStamp.of(file);
+            if (stamp == null) {
+                return false;
+            }
+            // taken before the file is read, so it's never newer than the analyzed contents
+            updatedFileStamps.put(fileId, stamp);
+
+            final AnalysisResult cachedResult = fileResultsCache.get(fileId);
+            if (!useFileStamps || cachedResult == null || !stamp.equals(fileStamps.get(fileId))) {
+                return false;
+            }
+            try {
+                cachedResult.loadViolations();
+            } catch (final IOException e) {
+                LOG.warn("Cached violations of {} can't be read, the file will be analyzed again: {}",
+                         fileId.getOriginalPath(), e.getMessage());
+                return false;
+            }
+
+            LOG.trace("Incremental Analysis cache HIT - file metadata unchanged");
+            updatedResultsCache.put(fileId, cachedResult);
+            return true;
+        }
+    }
+
+    @Override
+    public List<RuleViolation> getCachedViolations(final TextFile file) {
+        return getCachedViolations(file.getFileId());
+    }
+
     @Override
     public List<RuleViolation> getCachedViolations(final TextDocument sourceFile) {
-        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getFileId());
+        return getCachedViolations(sourceFile.getFileId());
+    }
+
+    private List<RuleViolation> getCachedViolations(final FileId fileId) {
+        final AnalysisResult analysisResult = fileResultsCache.get(fileId);
 
         if (analysisResult == null) {
             // new file, avoid nulls
             return Collections.emptyList();
         }
 
-        return analysisResult.getViolations();
+        return analysisResult.getViolations(reporter);
     }
 
     @Override
@@ -148,6 +218,7 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
             if (!cacheIsValid) {
                 // Clear the cache
                 fileResultsCache.clear();
+                fileStamps.clear();
             }
 
             // Update the local checksums
@@ -220,7 +291,7 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
             @Override
             public void onRuleViolation(RuleViolation violation) {
                 if (!failed) {
-                    updatedResultsCache.get(fileName).addViolation(violation);
+                    updatedResultsCache.get(fileName).addViolation(violation, reporter);
                 }
             }
 
@@ -6,6 +6,7 @@ package net.sourceforge.pmd.cache.internal;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import net.sourceforge.pmd.lang.document.TextDocument;
@@ -14,6 +15,7 @@ import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
 import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
 
 /**
  * An analysis cache for incremental analysis.
@@ -38,6 +40,31 @@ public interface AnalysisCache {
      */
     boolean isUpToDate(TextDocument document);
 
+    /**
+     * Checks if a given file is up to date in the cache, without reading it.
+     * This compares the file system metadata of the file (size, modification
+     * time...) with the one recorded when it was last analyzed. If this returns
+     * true, then the file is treated as if {@link #isUpToDate(TextDocument)}
+     * had returned true, and its violations can be retrieved with
+     * {@link #getCachedViolations(TextFile)}. Otherwise, the file must be
+     * read and checked with {@link #isUpToDate(TextDocument)}.
+     *
+     * @param file The file to check in the cache
+     * @return True if the file is known to be unchanged, false if it must be checked
+     */
+    default boolean isUnmodified(TextFile file) {
+        return false;
+    }
+
+    /**
+     * Retrieves cached violations for the given file. Make sure to call {@link #isUnmodified(TextFile)} first.
+     * @param file The file to check in the cache
+     * @return The list of cached violations.
+     */
+    default List<RuleViolation> getCachedViolations(TextFile file) {
+        return Collections.emptyList();
+    }
+
     /**
      * Retrieves cached violations for the given file. Make sure to call {@link #isUpToDate(TextDocument)} first.
      * @param sourceFile The file to check in the cache
@@ -51,6 +78,16 @@ public interface AnalysisCache {
      */
     void analysisFailed(TextDocument sourceFile);
 
+    /**
+     * Sets the reporter used to report errors of the cache, e.g. if cached
+     * violations can't be read. This is called before {@link #checkValidity(RuleSets, ClassLoader, Collection)}.
+     *
+     * @param reporter The reporter of the analysis
+     */
+    default void setReporter(PmdReporter reporter) {
+        // errors are not reported
+    }
+
     /**
      * Checks if the cache is valid for the configured rulesets and class loader.
      * If the provided rulesets and classpath don't match those of the cache, the
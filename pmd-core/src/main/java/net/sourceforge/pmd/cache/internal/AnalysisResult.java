@@ -4,19 +4,27 @@
 
 package net.sourceforge.pmd.cache.internal;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
 
 /**
  * The result of a single file analysis.
  * Includes a checksum of the file and the complete list of violations detected.
+ * The violations of a result that was loaded from a cache file may be read
+ * lazily, on first access.
  */
 public class AnalysisResult {
 
     private final long fileChecksum;
-    private final List<RuleViolation> violations;
+    // guarded by this, null until loaded
+    private List<RuleViolation> violations;
+    private ViolationLoader loader;
+    // guarded by this, set if the loader failed
+    private IOException loadFailure;
 
     public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
@@ -27,19 +35,70 @@ public class AnalysisResult {
         this(fileChecksum, new ArrayList<>());
     }
 
+    /**
+     * Creates a result whose violations are loaded on first access.
+     */
+    AnalysisResult(final long fileChecksum, final ViolationLoader loader) {
+        this.fileChecksum = fileChecksum;
+        this.loader = loader;
+    }
+
     public long getFileChecksum() {
         return fileChecksum;
     }
 
-    public List<RuleViolation> getViolations() {
+    /**
+     * Returns the violations. If they could not be loaded, the error is
+     * reported and this returns a list that only contains the violations
+     * added since then, use {@link #loadViolations()} to find out whether
+     * the cached violations are usable.
+     */
+    public synchronized List<RuleViolation> getViolations(final PmdReporter reporter) {
+        try {
+            return loadViolations();
+        } catch (IOException e) {
+            reporter.errorEx("Cached violations can't be read", e);
+            return violations;
+        }
+    }
+
+    /**
+     * Loads the violations if that hasn't been done yet.
+     *
+     * @throws IOException If the violations cannot be loaded
+     */
+    synchronized List<RuleViolation> loadViolations() throws IOException {
+        if (loadFailure != null) {
+            throw loadFailure;
+        }
+        if (violations == null) {
+            try {
+                violations = loader.load();
+            } catch (IOException e) {
+                loadFailure = e;
+                violations = new ArrayList<>();
+                throw e;
+            } finally {
+                loader = null;
+            }
+        }
         return violations;
     }
 
-    public void addViolations(final List<RuleViolation> violations) {
-        this.violations.addAll(violations);
+    public void addViolations(final List<RuleViolation> violations, final PmdReporter reporter) {
+        getViolations(reporter).addAll(violations);
+    }
+
+    public void addViolation(final RuleViolation ruleViolation, final PmdReporter reporter) {
+        getViolations(reporter).add(ruleViolation);
     }
 
-    public void addViolation(final RuleViolation ruleViolation) {
-        this.violations.add(ruleViolation);
+    /**
+     * Reads the violations of a lazily loaded result.
+     */
+    @FunctionalInterface
+    interface ViolationLoader {
+
+        List<RuleViolation> load() throws IOException;
     }
 }
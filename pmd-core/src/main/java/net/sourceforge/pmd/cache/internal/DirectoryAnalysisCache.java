@@ -0,0 +1,380 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static net.sourceforge.pmd.lang.rule.InternalApiBridge.ruleSetApplies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * An analysis cache backed by a directory, which can be shared by several
+ * checkouts of a project, or several machines, e.g. on a mounted volume.
+ *
+ * <p>The directory contains one entry per analyzed file content. An entry
+ * is found by a hash of the file content, the language version, the PMD
+ * version, and the checksums of the ruleset, the auxclasspath and the
+ * execution classpath. Results may also depend on the path of the file,
+ * through the include and exclude patterns of the rule sets, and through
+ * rules that look at the file name. So the name of the file and the rule
+ * sets that apply to it are part of the key, but not the rest of its
+ * path: a moved file, or a file of another checkout, hits the cache as
+ * long as its name and content are the same. Since the checksums are part
+ * of the key, the cache is never invalidated as a whole. Entries that are
+ * not used anymore are evicted instead, least recently used first, once
+ * the directory is larger than its maximum size.
+ *
+ * <p>Entries are written to a temporary file which is then moved to its
+ * final name, so that concurrent readers never see an incomplete entry.
+ * Concurrent writers of the same entry write the same contents.
+ */
+public class DirectoryAnalysisCache extends AbstractAnalysisCache {
+
+    /** Default maximum size of the directory, 1 GB. */
+    public static final long DEFAULT_MAX_SIZE = 1L << 30;
+
+    private static final String ENTRY_EXTENSION = ".entry";
+    private static final String TEMP_EXTENSION = ".tmp";
+    /** Temporary files older than that were left behind by a crashed writer. */
+    private static final long STALE_TEMP_FILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /** Eviction removes entries until the directory is at most this fraction of the maximum size. */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Path directory;
+    private final long maxSize;
+    // keys of the files that were not found in the cache
+    private final ConcurrentMap<FileId, String> missedKeys = new ConcurrentHashMap<>();
+    private RuleSet[] ruleSets = new RuleSet[0];
+
+    /**
+     * Creates a new cache backed by the given directory, with the
+     * {@linkplain #DEFAULT_MAX_SIZE default maximum size}.
+     *
+     * @param directory The directory in which to store the cache entries
+     */
+    public DirectoryAnalysisCache(final File directory) {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new cache backed by the given directory.
+     *
+     * @param directory The directory in which to store the cache entries
+     * @param maxSize   The size in bytes above which old entries are evicted
+     */
+    public DirectoryAnalysisCache(final File directory, final long maxSize) {
+        super();
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void checkValidity(RuleSets ruleSets, ClassLoader auxclassPathClassLoader, Collection<? extends TextFile> files) {
+        if (Files.exists(directory) && !Files.isDirectory(directory)) {
+            LOG.error("The configured cache location must be the path to a directory, but is a file.");
+        }
+        // computes the current checksums, which are part of the keys
+        super.checkValidity(ruleSets, auxclassPathClassLoader, files);
+        this.ruleSets = ruleSets.getAllRuleSets();
+    }
+
+    @Override
+    public boolean isUpToDate(final TextDocument document) {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
+            final FileId fileId = document.getFileId();
+            final String key = computeKey(document);
+            final AnalysisResult cachedResult = readEntry(key, fileId);
+
+            if (cachedResult != null) {
+                LOG.trace("Incremental Analysis cache HIT");
+                fileResultsCache.put(fileId, cachedResult);
+                updatedResultsCache.put(fileId, cachedResult);
+                return true;
+            }
+
+            LOG.trace("Incremental Analysis cache MISS - no entry for the file content");
+            missedKeys.put(fileId, key);
+            updatedResultsCache.put(fileId, new AnalysisResult(document.getCheckSum(), new ArrayList<>()));
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isUnmodified(final TextFile file) {
+        // entries are found by the file content, which must be read
+        return false;
+    }
+
+    private String computeKey(final TextDocument document) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update(pmdVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(document.getLanguageVersion().getTerseName().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        updateLong(digest, rulesetChecksum);
+        updateLong(digest, auxClassPathChecksum);
+        updateLong(digest, executionClassPathChecksum);
+        final FileId fileId = document.getFileId();
+        digest.update(fileId.getFileName().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        for (final RuleSet ruleSet : ruleSets) {
+            digest.update((byte) (ruleSetApplies(ruleSet, fileId) ? 1 : 0));
+        }
+        digest.update(document.getText().getBytes(StandardCharsets.UTF_8));
+
+        final StringBuilder key = new StringBuilder(64);
+        for (final byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    private static void updateLong(final MessageDigest digest, final long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    /**
+     * Entries are spread over subdirectories named after the first
+     * characters of their key, so that no directory gets too large.
+     */
+    private Path entryPath(final String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Returns the cached result, or null if there is no usable entry.
+     */
+    private AnalysisResult readEntry(final String key, final FileId fileId) {
+        final Path entry = entryPath(key);
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            final int countViolations = inputStream.readInt();
+            final List<RuleViolation> violations = new ArrayList<>(countViolations);
+            for (int i = 0; i < countViolations; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+            }
+            markUsed(entry);
+            // the checksum of the file is not used by this cache
+            return new AnalysisResult(0, violations);
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final IOException e) {
+            // the entry may just have been evicted by another process
+            LOG.debug("Could not read analysis cache entry {}: {}", entry, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The modification time of an entry is its last use, as access times
+     * are often not recorded.
+     */
+    private static void markUsed(final Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            // e.g. a read-only cache, it can still be used
+            LOG.trace("Could not update the modification time of {}", entry, e);
+        }
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (Files.exists(directory) && !Files.isDirectory(directory)) {
+                LOG.error("Cannot persist the cache, the given path points to a file.");
+                return;
+            }
+
+            int written = 0;
+            try {
+                for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                    final String key = missedKeys.get(resultEntry.getKey());
+                    // files that were hits are already in the cache
+                    if (key != null) {
+                        writeEntry(key, resultEntry.getValue().getViolations(reporter));
+                        written++;
+                    }
+                }
+                LOG.debug("Analysis cache updated with {} entries", written);
+                evictEntries();
+            } catch (final IOException e) {
+                LOG.error("Could not persist analysis cache to directory: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void writeEntry(final String key, final List<RuleViolation> violations) throws IOException {
+        final Path entry = entryPath(key);
+        if (Files.exists(entry)) {
+            // written by someone else in the meantime, with the same contents
+            return;
+        }
+        Files.createDirectories(entry.getParent());
+        final Path tempFile = Files.createTempFile(entry.getParent(), key, TEMP_EXTENSION);
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                outputStream.writeInt(violations.size());
+                for (final RuleViolation rv : violations) {
+                    CachedRuleViolation.storeToStream(outputStream, rv);
+                }
+            }
+            moveAtomically(tempFile, entry);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void moveAtomically(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final FileAlreadyExistsException ignored) {
+            // a concurrent writer was faster
+        } catch (final AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(source, target);
+            } catch (final FileAlreadyExistsException ignored) {
+                // a concurrent writer was faster
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the directory is
+     * below its maximum size, as well as stale temporary files.
+     */
+    private void evictEntries() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        final List<CacheFile> entries;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            entries = files.map(CacheFile::read)
+                           .filter(Objects::nonNull)
+                           .collect(Collectors.toList());
+        }
+
+        final long now = System.currentTimeMillis();
+        long totalSize = 0;
+        final List<CacheFile> candidates = new ArrayList<>();
+        for (final CacheFile file : entries) {
+            final String name = file.path.getFileName().toString();
+            if (name.endsWith(TEMP_EXTENSION)) {
+                if (now - file.lastUsed > STALE_TEMP_FILE_MILLIS) {
+                    deleteQuietly(file.path);
+                }
+            } else if (name.endsWith(ENTRY_EXTENSION)) {
+                totalSize += file.size;
+                candidates.add(file);
+            }
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        candidates.sort(Comparator.comparingLong(it -> it.lastUsed));
+        final long targetSize = (long) (maxSize * EVICTION_TARGET);
+        int evicted = 0;
+        for (final CacheFile file : candidates) {
+            if (totalSize <= targetSize) {
+                break;
+            }
+            deleteQuietly(file.path);
+            totalSize -= file.size;
+            evicted++;
+        }
+        LOG.debug("Evicted {} analysis cache entries", evicted);
+    }
+
+    private static void deleteQuietly(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException e) {
+            LOG.trace("Could not delete {}", path, e);
+        }
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        // the checksums are part of the key of each entry, there
+        // are no stored checksums that may invalidate the cache
+        return false;
+    }
+
+    /**
+     * A regular file of the cache directory.
+     */
+    private static final class CacheFile {
+
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        private CacheFile(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        /**
+         * Returns null if the path is not a regular file, or was deleted
+         * concurrently.
+         */
+        static CacheFile read(Path path) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return null;
+                }
+                return new CacheFile(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (final IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -11,9 +11,20 @@ import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -29,11 +40,52 @@ import net.sourceforge.pmd.reporting.RuleViolation;
 
 /**
  * An analysis cache backed by a regular file.
+ *
+ * <p>The file starts with a fixed-size header, which points to an index
+ * of the cached files. For each file, the index contains its checksum, its
+ * {@link FileStamp} if known, and the location of its violations in the
+ * cache file. Loading the cache only
+ * reads the index, the violations of a file are read when they are first
+ * needed, from a memory-mapped view of the cache file.
+ *
+ * <p>When persisting, the violations of unchanged files are left where they
+ * are. The violations of the other files and a new index are appended, then
+ * the header is updated to point to the new index. Once the file contains
+ * more unused bytes than used ones, it is compacted instead, by writing a new
+ * file and moving it over the old one.
+ *
+ * <p>Cache files of the previous format, which is read and written in
+ * one go, can still be loaded. They are replaced with the new format the
+ * next time the cache is persisted.
  */
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    /**
+     * The first bytes of a cache file. In the previous format, the file
+     * starts with the length of the PMD version string instead.
+     */
+    private static final int MAGIC = 0x504D_4443; // "PMDC"
+    private static final int FORMAT_VERSION = 2;
+    /** Magic, format version, offset and length of the index. */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    /**
+     * On Windows, a file cannot be replaced while it is mapped into memory,
+     * and a mapping is only released when it is garbage collected. There,
+     * the cache file is read into memory instead.
+     */
+    private static final boolean CAN_MAP_FILES = !System.getProperty("os.name", "").startsWith("Windows");
+
     private final File cacheFile;
 
+    // The contents of the cache file when it was loaded, and where the
+    // violations of each file are. Null/empty unless the cache file had
+    // the current format and PMD version, so that it can be appended to.
+    private ByteBuffer loadedFile;
+    private final Map<FileId, Segment> segments = new HashMap<>();
+    private long fileSize;
+    private int indexLength;
+
     /**
      * Creates a new cache backed by the given file.
      * @param cache The file on which to store analysis cache
@@ -62,48 +114,20 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
 
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "load")) {
             if (cacheExists()) {
-                try (
-                    DataInputStream inputStream = new DataInputStream(
-                        new BufferedInputStream(Files.newInputStream(cacheFile.toPath())));
-                ) {
-                    final String cacheVersion = inputStream.readUTF();
-
-                    if (PMDVersion.VERSION.equals(cacheVersion)) {
-                        // Cache seems valid, load the rest
-
-                        // Get checksums
-                        rulesetChecksum = inputStream.readLong();
-                        auxClassPathChecksum = inputStream.readLong();
-                        executionClassPathChecksum = inputStream.readLong();
-
-                        // Cached results
-                        while (inputStream.available() > 0) {
-                            final String filePathId = inputStream.readUTF();
-                            FileId fileId = idMap.get(filePathId);
-                            if (fileId == null) {
-                                LOG.debug("File {} is in the cache but is not part of the analysis",
-                                          filePathId);
-                                fileId = FileId.fromURI(filePathId);
-                            }
-                            final long checksum = inputStream.readLong();
-
-                            final int countViolations = inputStream.readInt();
-                            final List<RuleViolation> violations = new ArrayList<>(countViolations);
-                            for (int i = 0; i < countViolations; i++) {
-                                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
-                            }
-
-                            fileResultsCache.put(fileId, new AnalysisResult(checksum, violations));
-                        }
-
-                        LOG.debug("Analysis cache loaded from {}", cacheFile);
+                try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer magic = ByteBuffer.allocate(4);
+                    channel.read(magic, 0);
+                    if (!magic.hasRemaining() && magic.getInt(0) == MAGIC) {
+                        loadSegmentedFile(channel, idMap);
                     } else {
-                        LOG.debug("Analysis cache invalidated, PMD version changed.");
+                        loadLegacyFile(channel, idMap);
                     }
                 } catch (final EOFException e) {
                     LOG.warn("Cache file {} is malformed, will not be used for current analysis", cacheFile.getPath());
+                    forgetLoadedFile();
                 } catch (final IOException e) {
                     LOG.error("Could not load analysis cache from file: {}", e.getMessage());
+                    forgetLoadedFile();
                 }
             } else if (cacheFile.isDirectory()) {
                 LOG.error("The configured cache location must be the path to a file, but is a directory.");
@@ -111,6 +135,134 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
         }
     }
 
+    private void loadSegmentedFile(FileChannel channel, Map<String, FileId> idMap) throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            LOG.warn("Cache file {} is too large, will not be used for current analysis", cacheFile.getPath());
+            return;
+        }
+        if (size < HEADER_SIZE) {
+            throw new EOFException();
+        }
+        final ByteBuffer file = CAN_MAP_FILES ? channel.map(MapMode.READ_ONLY, 0, size) : readFully(channel, (int) size);
+
+        final int formatVersion = file.getInt(4);
+        final long indexOffset = file.getLong(8);
+        final int indexLength = file.getInt(16);
+        if (formatVersion != FORMAT_VERSION) {
+            LOG.debug("Analysis cache invalidated, cache format changed.");
+            return;
+        }
+        if (indexOffset < HEADER_SIZE || indexLength < 0 || indexOffset + indexLength > size) {
+            throw new EOFException();
+        }
+
+        @SuppressWarnings("PMD.CloseResource") // reads from memory
+        final DataInputStream index = new DataInputStream(new ByteBufferInputStream(slice(file, indexOffset, indexLength)));
+        final String cacheVersion = index.readUTF();
+        if (!PMDVersion.VERSION.equals(cacheVersion)) {
+            LOG.debug("Analysis cache invalidated, PMD version changed.");
+            return;
+        }
+
+        // Get checksums
+        rulesetChecksum = index.readLong();
+        auxClassPathChecksum = index.readLong();
+        executionClassPathChecksum = index.readLong();
+
+        // Cached results, the violations are read lazily
+        final int countFiles = index.readInt();
+        for (int i = 0; i < countFiles; i++) {
+            final String filePathId = index.readUTF();
+            FileId fileId = idMap.get(filePathId);
+            if (fileId == null) {
+                LOG.debug("File {} is in the cache but is not part of the analysis",
+                          filePathId);
+                fileId = FileId.fromURI(filePathId);
+            }
+            final long checksum = index.readLong();
+            final FileStamp stamp = index.readBoolean() ? FileStamp.loadFromStream(index) : null;
+            final Segment segment = new Segment(index.readLong(), index.readInt(), index.readInt());
+            // violations are always written before the index that refers to them
+            if (segment.offset < HEADER_SIZE || segment.length < 0 || segment.offset + segment.length > indexOffset) {
+                throw new EOFException();
+            }
+
+            final FileId id = fileId;
+            segments.put(fileId, segment);
+            if (stamp != null) {
+                fileStamps.put(fileId, stamp);
+            }
+            fileResultsCache.put(fileId, new AnalysisResult(checksum, () -> readViolations(file, segment, id)));
+        }
+
+        this.loadedFile = file;
+        this.fileSize = size;
+        this.indexLength = indexLength;
+        LOG.debug("Analysis cache loaded from {}", cacheFile);
+    }
+
+    private List<RuleViolation> readViolations(ByteBuffer file, Segment segment, FileId fileId) throws IOException {
+        @SuppressWarnings("PMD.CloseResource") // reads from memory
+        final DataInputStream inputStream = new DataInputStream(new ByteBufferInputStream(slice(file, segment.offset, segment.length)));
+        final List<RuleViolation> violations = new ArrayList<>(segment.count);
+        for (int i = 0; i < segment.count; i++) {
+            violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+        }
+        return violations;
+    }
+
+    /**
+     * Loads a cache file of the previous format, which starts with
+     * the PMD version and contains the violations of each file in line.
+     */
+    private void loadLegacyFile(FileChannel channel, Map<String, FileId> idMap) throws IOException {
+        @SuppressWarnings("PMD.CloseResource") // closed with the channel
+        final DataInputStream inputStream = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        final String cacheVersion = inputStream.readUTF();
+
+        if (PMDVersion.VERSION.equals(cacheVersion)) {
+            // Cache seems valid, load the rest
+
+            // Get checksums
+            rulesetChecksum = inputStream.readLong();
+            auxClassPathChecksum = inputStream.readLong();
+            executionClassPathChecksum = inputStream.readLong();
+
+            // Cached results
+            while (inputStream.available() > 0) {
+                final String filePathId = inputStream.readUTF();
+                FileId fileId = idMap.get(filePathId);
+                if (fileId == null) {
+                    LOG.debug("File {} is in the cache but is not part of the analysis",
+                              filePathId);
+                    fileId = FileId.fromURI(filePathId);
+                }
+                final long checksum = inputStream.readLong();
+
+                final int countViolations = inputStream.readInt();
+                final List<RuleViolation> violations = new ArrayList<>(countViolations);
+                for (int i = 0; i < countViolations; i++) {
+                    violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+                }
+
+                fileResultsCache.put(fileId, new AnalysisResult(checksum, violations));
+            }
+
+            LOG.debug("Analysis cache loaded from {}", cacheFile);
+        } else {
+            LOG.debug("Analysis cache invalidated, PMD version changed.");
+        }
+    }
+
+    private void forgetLoadedFile() {
+        loadedFile = null;
+        segments.clear();
+        fileResultsCache.clear();
+        fileStamps.clear();
+    }
+
     @Override
     public void persist() {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
@@ -129,26 +281,12 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                 }
             }
 
-            try (
-                DataOutputStream outputStream = new DataOutputStream(
-                    new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))
-            ) {
-                outputStream.writeUTF(pmdVersion);
-
-                outputStream.writeLong(rulesetChecksum);
-                outputStream.writeLong(auxClassPathChecksum);
-                outputStream.writeLong(executionClassPathChecksum);
-
-                for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
-                    final List<RuleViolation> violations = resultEntry.getValue().getViolations();
-
-                    outputStream.writeUTF(resultEntry.getKey().getUriString()); // the path id
-                    outputStream.writeLong(resultEntry.getValue().getFileChecksum());
-
-                    outputStream.writeInt(violations.size());
-                    for (final RuleViolation rv : violations) {
-                        CachedRuleViolation.storeToStream(outputStream, rv);
-                    }
+            try {
+                final Map<FileId, Segment> unchanged = getUnchangedSegments();
+                if (shouldCompact(unchanged)) {
+                    rewriteFile(unchanged);
+                } else {
+                    appendToFile(unchanged);
                 }
                 if (cacheFileShouldBeCreated) {
                     LOG.debug("Analysis cache created");
@@ -161,8 +299,235 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
         }
     }
 
+    /**
+     * Returns the segments of the loaded file that contain the violations
+     * of files that were up-to-date, and can be kept as is.
+     */
+    private Map<FileId, Segment> getUnchangedSegments() {
+        final Map<FileId, Segment> unchanged = new HashMap<>();
+        if (loadedFile != null) {
+            for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                final Segment segment = segments.get(resultEntry.getKey());
+                // up-to-date files keep the result loaded from the file, see isUpToDate
+                if (segment != null && resultEntry.getValue() == fileResultsCache.get(resultEntry.getKey())) { // NOPMD CompareObjectsWithEquals
+                    unchanged.put(resultEntry.getKey(), segment);
+                }
+            }
+        }
+        return unchanged;
+    }
+
+    private boolean shouldCompact(Map<FileId, Segment> unchanged) {
+        if (loadedFile == null) {
+            // new file, previous format, or invalidated cache
+            return true;
+        }
+        long usedBytes = 0;
+        for (final Segment segment : unchanged.values()) {
+            usedBytes += segment.length;
+        }
+        final long unusedBytes = fileSize - HEADER_SIZE - usedBytes;
+        // the new index will take about as much space as the current one
+        return unusedBytes > usedBytes + indexLength;
+    }
+
+    private void appendToFile(Map<FileId, Segment> unchanged) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.WRITE)) {
+            final long end = channel.size();
+            final Map<FileId, Segment> written = writeResults(channel.position(end), end, unchanged, false);
+            segments.putAll(written);
+            fileSize = channel.size();
+        }
+    }
+
+    private void rewriteFile(Map<FileId, Segment> unchanged) throws IOException {
+        final Path target = cacheFile.getAbsoluteFile().toPath();
+        final Path tempFile = Files.createTempFile(target.getParent(), cacheFile.getName(), ".tmp");
+        try {
+            final Map<FileId, Segment> written;
+            final ByteBuffer newFile;
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                written = writeResults(channel, 0, unchanged, true);
+                newFile = CAN_MAP_FILES ? channel.map(MapMode.READ_ONLY, 0, channel.size()) : null;
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // further persist calls may append to the new file
+            segments.clear();
+            segments.putAll(written);
+            loadedFile = newFile;
+            fileSize = Files.size(target);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Writes the violations of changed files (or all files if compacting),
+     * then the index, and finally the header, which makes the new index
+     * visible.
+     *
+     * @param channel   Channel positioned at {@code start}
+     * @param start     Offset in the file where writing starts
+     * @param unchanged Segments of the loaded file that can be reused
+     * @param compact   Whether the file is written from scratch
+     *
+     * @return The segments referenced by the new index
+     */
+    private Map<FileId, Segment> writeResults(FileChannel channel, long start, Map<FileId, Segment> unchanged, boolean compact) throws IOException {
+        @SuppressWarnings("PMD.CloseResource") // closing it would close the channel
+        final DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel)));
+        if (compact) {
+            outputStream.write(new byte[HEADER_SIZE]);
+        }
+
+        final Map<FileId, Segment> written = new LinkedHashMap<>();
+        for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+            final Segment previous = unchanged.get(resultEntry.getKey());
+            if (previous != null && !compact) {
+                written.put(resultEntry.getKey(), previous);
+                continue;
+            }
+
+            final long offset = start + outputStream.size();
+            final int count;
+            if (previous != null) {
+                copySegment(previous, outputStream);
+                count = previous.count;
+            } else {
+                final List<RuleViolation> violations = resultEntry.getValue().getViolations(reporter);
+                for (final RuleViolation rv : violations) {
+                    CachedRuleViolation.storeToStream(outputStream, rv);
+                }
+                count = violations.size();
+            }
+            written.put(resultEntry.getKey(), new Segment(offset, (int) (start + outputStream.size() - offset), count));
+        }
+
+        final long indexOffset = start + outputStream.size();
+        outputStream.writeUTF(pmdVersion);
+
+        outputStream.writeLong(rulesetChecksum);
+        outputStream.writeLong(auxClassPathChecksum);
+        outputStream.writeLong(executionClassPathChecksum);
+
+        outputStream.writeInt(written.size());
+        for (final Map.Entry<FileId, Segment> entry : written.entrySet()) {
+            outputStream.writeUTF(entry.getKey().getUriString()); // the path id
+            outputStream.writeLong(updatedResultsCache.get(entry.getKey()).getFileChecksum());
+            final FileStamp stamp = updatedFileStamps.get(entry.getKey());
+            outputStream.writeBoolean(stamp != null);
+            if (stamp != null) {
+                stamp.storeToStream(outputStream);
+            }
+            outputStream.writeLong(entry.getValue().offset);
+            outputStream.writeInt(entry.getValue().length);
+            outputStream.writeInt(entry.getValue().count);
+        }
+        outputStream.flush();
+        final int newIndexLength = (int) (start + outputStream.size() - indexOffset);
+
+        // Everything else must be on disk before the header points to it
+        channel.force(false);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(indexOffset).putInt(newIndexLength).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+
+        this.indexLength = newIndexLength;
+        return written;
+    }
+
+    private void copySegment(Segment segment, DataOutputStream outputStream) throws IOException {
+        final ByteBuffer bytes = slice(loadedFile, segment.offset, segment.length);
+        if (bytes.hasArray()) {
+            outputStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            final byte[] copy = new byte[bytes.remaining()];
+            bytes.get(copy);
+            outputStream.write(copy);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a view of a range of the buffer. The given buffer is shared
+     * by threads that load violations, so its position is never changed.
+     */
+    private static ByteBuffer slice(ByteBuffer file, long offset, int length) {
+        final ByteBuffer slice = file.duplicate();
+        slice.limit((int) (offset + length));
+        slice.position((int) offset);
+        return slice;
+    }
+
     @Override
     protected boolean cacheExists() {
         return cacheFile.exists() && cacheFile.isFile() && cacheFile.length() > 0;
     }
+
+    /**
+     * The location of the violations of a file in the cache file.
+     */
+    private static final class Segment {
+
+        private final long offset;
+        private final int length;
+        private final int count;
+
+        Segment(long offset, int length, int count) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
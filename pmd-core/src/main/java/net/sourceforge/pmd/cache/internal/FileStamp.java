@@ -0,0 +1,97 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.pmd.lang.document.InternalApiBridge;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+/**
+ * The file system metadata of a file: its size, modification time,
+ * and file key (the inode on Unix). If the stamp of a file didn't change
+ * since the file was last analyzed, the file is assumed to be unchanged,
+ * and need not be read to compute its checksum.
+ */
+final class FileStamp {
+
+    /**
+     * A file modified less than this before its stamp is taken may be
+     * modified again without its modification time changing, as file
+     * systems have a limited timestamp resolution. Such a stamp is not
+     * trusted.
+     */
+    private static final long RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final long size;
+    private final long lastModifiedNanos;
+    private final int fileKeyHash;
+
+    private FileStamp(long size, long lastModifiedNanos, int fileKeyHash) {
+        this.size = size;
+        this.lastModifiedNanos = lastModifiedNanos;
+        this.fileKeyHash = fileKeyHash;
+    }
+
+    /**
+     * Returns the current stamp of the file, or null if the file is not
+     * on a file system, cannot be accessed, or was modified too recently
+     * for its stamp to be trusted.
+     */
+    static FileStamp of(TextFile file) {
+        final Path path = InternalApiBridge.getPath(file);
+        if (path == null) {
+            return null;
+        }
+        final long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            final long lastModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            if (!attributes.isRegularFile() || now - lastModified < RACY_WINDOW_NANOS) {
+                return null;
+            }
+            // the file key is an opaque object, its string form is stable between runs
+            final Object fileKey = attributes.fileKey();
+            return new FileStamp(attributes.size(), lastModified, fileKey == null ? 0 : fileKey.toString().hashCode());
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    static FileStamp loadFromStream(DataInputStream stream) throws IOException {
+        return new FileStamp(stream.readLong(), stream.readLong(), stream.readInt());
+    }
+
+    void storeToStream(DataOutputStream stream) throws IOException {
+        stream.writeLong(size);
+        stream.writeLong(lastModifiedNanos);
+        stream.writeInt(fileKeyHash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FileStamp that = (FileStamp) o;
+        return size == that.size
+            && lastModifiedNanos == that.lastModifiedNanos
+            && fileKeyHash == that.fileKeyHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(size) + Long.hashCode(lastModifiedNanos)) + fileKeyHash;
+    }
+}
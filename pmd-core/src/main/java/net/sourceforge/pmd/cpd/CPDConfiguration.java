@@ -75,6 +75,8 @@ public class CPDConfiguration extends AbstractConfiguration {
 
     private boolean failOnViolation = true;
 
+    private int threads = 1;
+
 
     public CPDConfiguration() {
         this(LanguageRegistry.CPD);
@@ -260,6 +262,31 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.skipBlocksPattern = skipBlocksPattern;
     }
 
+    /**
+     * Returns the number of threads used to tokenize the files and to
+     * find the duplicates.
+     *
+     * @see #setThreads(int)
+     * @since 7.3.0
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to tokenize the files and to find
+     * the duplicates. With one thread or less, everything happens on the
+     * thread that calls {@link CpdAnalysis#performAnalysis()}. The report
+     * does not depend on the number of threads. Defaults to 1.
+     *
+     * @param threads Number of threads
+     *
+     * @since 7.3.0
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public boolean isFailOnViolation() {
         return failOnViolation;
     }
@@ -7,10 +7,19 @@ package net.sourceforge.pmd.cpd;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -69,6 +78,8 @@ import net.sourceforge.pmd.util.log.PmdReporter;
 public final class CpdAnalysis implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CpdAnalysis.class);
+    // number of files that may be tokenized ahead of the file whose tokens are added
+    private static final int FILES_IN_FLIGHT_PER_THREAD = 4;
     private final CPDConfiguration configuration;
     private final FileCollector files;
     private final PmdReporter reporter;
@@ -138,11 +149,9 @@ public final class CpdAnalysis implements AutoCloseable {
         this.listener = cpdListener;
     }
 
-    private int doTokenize(TextDocument document, CpdLexer cpdLexer, Tokens tokens) throws IOException, LexException {
+    private static void tokenize(TextDocument document, CpdLexer cpdLexer, Tokens tokens) throws IOException, LexException {
         LOGGER.trace("Tokenizing {}", document.getFileId().getAbsolutePath());
-        int lastTokenSize = tokens.size();
         CpdLexer.tokenize(cpdLexer, document, tokens);
-        return tokens.size() - lastTokenSize - 1; /* EOF */
     }
 
     public void performAnalysis() {
@@ -151,25 +160,66 @@ public final class CpdAnalysis implements AutoCloseable {
 
     @SuppressWarnings("PMD.CloseResource")
     public void performAnalysis(Consumer<CPDReport> consumer) {
+        int threads = configuration.getThreads();
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, new CpdThreadFactory()) : null;
+        // lexers are not necessarily thread-safe, so each thread gets its own
+        ThreadLocal<Map<Language, CpdLexer>> tokenizers = new ThreadLocal<>();
 
         try (SourceManager sourceManager = new SourceManager(files.getCollectedFiles())) {
-            Map<Language, CpdLexer> tokenizers =
+            Map<Language, LanguagePropertyBundle> languageProperties =
                 sourceManager.getTextFiles().stream()
                              .map(it -> it.getLanguageVersion().getLanguage())
                              .distinct()
                              .filter(it -> it instanceof CpdCapableLanguage)
-                             .collect(Collectors.toMap(lang -> lang, lang -> ((CpdCapableLanguage) lang).createCpdLexer(configuration.getLanguageProperties(lang))));
+                             .collect(Collectors.toMap(lang -> lang, configuration::getLanguageProperties));
+
+            Function<TextFile, CpdLexer> lexerForThread = textFile -> {
+                Map<Language, CpdLexer> lexers = tokenizers.get();
+                if (lexers == null) {
+                    lexers = languageProperties.entrySet().stream()
+                                               .collect(Collectors.toMap(Map.Entry::getKey, e -> ((CpdCapableLanguage) e.getKey()).createCpdLexer(e.getValue())));
+                    tokenizers.set(lexers);
+                }
+                return lexers.get(textFile.getLanguageVersion().getLanguage());
+            };
 
             Map<FileId, Integer> numberOfTokensPerFile = new HashMap<>();
 
+            // Files are tokenized concurrently, but their tokens are added
+            // in the order of the files, so that the result is deterministic.
+            // Only a few files per thread are tokenized ahead of the next file
+            // to add, so that the tokens of the other files are not all kept
+            // twice in memory. Without executor, the files are tokenized
+            // directly into the global tokens.
+            List<TextFile> textFiles = sourceManager.getTextFiles();
+            int maxFilesInFlight = executor == null ? 0 : threads * FILES_IN_FLIGHT_PER_THREAD;
+            // the tasks of the files from the current one to nextFile (exclusive)
+            Deque<FutureTask<Tokens>> tokenizedFiles = new ArrayDeque<>(maxFilesInFlight);
+            int nextFile = 0;
+
             boolean hasErrors = false;
             Tokens tokens = new Tokens();
-            for (TextFile textFile : sourceManager.getTextFiles()) {
-                TextDocument textDocument = sourceManager.get(textFile);
+            for (TextFile textFile : textFiles) {
+                for (; nextFile < textFiles.size() && tokenizedFiles.size() < maxFilesInFlight; nextFile++) {
+                    TextFile fileToTokenize = textFiles.get(nextFile);
+                    FutureTask<Tokens> task = new FutureTask<>(() -> {
+                        Tokens fileTokens = new Tokens();
+                        tokenize(sourceManager.get(fileToTokenize), lexerForThread.apply(fileToTokenize), fileTokens);
+                        return fileTokens;
+                    });
+                    executor.execute(task);
+                    tokenizedFiles.add(task);
+                }
+
                 Tokens.State savedState = tokens.savePoint();
+                int tokenCountBefore = tokens.size();
                 try {
-                    int newTokens = doTokenize(textDocument, tokenizers.get(textFile.getLanguageVersion().getLanguage()), tokens);
-                    numberOfTokensPerFile.put(textDocument.getFileId(), newTokens);
+                    if (executor == null) {
+                        tokenize(sourceManager.get(textFile), lexerForThread.apply(textFile), tokens);
+                    } else {
+                        tokens.addAll(getTokens(tokenizedFiles.remove()));
+                    }
+                    numberOfTokensPerFile.put(textFile.getFileId(), tokens.size() - tokenCountBefore - 1 /* EOF */);
                     listener.addedFile(1);
                 } catch (IOException | FileAnalysisException e) {
                     if (e instanceof FileAnalysisException) { // NOPMD
@@ -187,7 +237,7 @@ public final class CpdAnalysis implements AutoCloseable {
             }
 
             LOGGER.debug("Running match algorithm on {} files...", sourceManager.size());
-            MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize());
+            MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize(), executor, threads);
             List<Match> matches = matchAlgorithm.findMatches(listener, sourceManager);
             tokens = null; // NOPMD null it out before rendering
             LOGGER.debug("Finished: {} duplicates found", matches.size());
@@ -202,15 +252,56 @@ public final class CpdAnalysis implements AutoCloseable {
 
             consumer.accept(cpdReport);
         } catch (Exception e) {
+            if (e instanceof InterruptedException) { // NOPMD
+                Thread.currentThread().interrupt();
+            }
             reporter.errorEx("Exception while running CPD", e);
+        } finally {
+            tokenizers.remove();
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
         // source manager is closed and closes all text files now.
     }
 
+    /**
+     * Waits for a file to be tokenized, and rethrows the exception that
+     * happened while tokenizing it, if any. If no thread has started to
+     * tokenize the file yet, it is tokenized on the current thread.
+     */
+    private static Tokens getTokens(FutureTask<Tokens> tokenizedFile) throws IOException, InterruptedException {
+        // this does nothing if the task was started already
+        tokenizedFile.run();
+        try {
+            return tokenizedFile.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
 
     @Override
     public void close() throws IOException {
         // nothing for now
     }
 
+    private static final class CpdThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "CpdThread " + counter.incrementAndGet());
+        }
+    }
+
 }
@@ -5,13 +5,16 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 class MatchAlgorithm {
 
@@ -19,21 +22,35 @@ class MatchAlgorithm {
     private int lastMod = 1;
 
     private final Tokens tokens;
-    private final List<TokenEntry> code;
     private final int minTileSize;
+    private final @Nullable ExecutorService executor;
+    private final int shardCount;
 
     MatchAlgorithm(Tokens tokens, int minTileSize) {
+        this(tokens, minTileSize, null, 1);
+    }
+
+    /**
+     * Create a new instance. The tiles are split into shards by the range
+     * of their hash, and the shards are grouped and matched in parallel on
+     * the executor. The matches don't depend on the number of shards.
+     *
+     * @param executor   Executor for the shards, if null they are processed on the calling thread
+     * @param shardCount Number of shards
+     */
+    MatchAlgorithm(Tokens tokens, int minTileSize, @Nullable ExecutorService executor, int shardCount) {
         this.tokens = tokens;
-        this.code = tokens.getTokens();
         this.minTileSize = minTileSize;
+        this.executor = executor;
+        this.shardCount = Math.max(1, shardCount);
         for (int i = 0; i < minTileSize; i++) {
             lastMod *= MOD;
         }
     }
 
 
-    public TokenEntry tokenAt(int offset, TokenEntry m) {
-        return code.get(offset + m.getIndex());
+    Tokens getTokens() {
+        return tokens;
     }
 
     public int getMinimumTileSize() {
@@ -44,18 +61,19 @@ class MatchAlgorithm {
         MatchCollector matchCollector = new MatchCollector(this);
         {
             cpdListener.phaseUpdate(CPDListener.HASH);
-            Map<TokenEntry, Object> markGroups = hash();
+            // the shards contain distinct tokens, so they can share this array
+            int[] nextTokens = new int[tokens.size()];
+            ShardedTiles tiles = shardCount == 1 ? null : shardTiles();
+            List<TileGroups> markGroups = forEachShard(shard -> hash(shard, tiles, nextTokens));
 
             cpdListener.phaseUpdate(CPDListener.MATCH);
-            markGroups.values()
-                      .stream()
-                      .filter(it -> it instanceof List)
-                      .forEach(it -> {
-                          @SuppressWarnings("unchecked")
-                          List<TokenEntry> l = (List<TokenEntry>) it;
-                          Collections.reverse(l);
-                          matchCollector.collect(l);
-                      });
+            List<PairBuffer> pairs = forEachShard(shard -> markGroups.get(shard).findPairs(matchCollector));
+            // report the pairs in token order, so that the result is deterministic
+            PairBuffer sortedPairs = PairBuffer.concatSorted(pairs);
+            for (int i = 0; i < sortedPairs.size; i++) {
+                long pair = sortedPairs.pairs[i];
+                matchCollector.reportMatch((int) (pair >>> 32), (int) pair, sortedPairs.dupeCounts[i]);
+            }
             // put markGroups out of scope
         }
 
@@ -75,44 +93,248 @@ class MatchAlgorithm {
         return matches;
     }
 
+    private <T> List<T> forEachShard(IntFunction<T> task) {
+        List<T> results = new ArrayList<>(shardCount);
+        if (executor == null || shardCount == 1) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                results.add(task.apply(shard));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            final int s = shard;
+            futures.add(executor.submit(() -> task.apply(s)));
+        }
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while matching", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private int shardOf(int hash) {
+        // the shards are ranges of hashes
+        return (int) (Integer.toUnsignedLong(hash) * shardCount >>> 32);
+    }
+
+    private TileGroups hash(int shard, @Nullable ShardedTiles tiles, int[] nextTokens) {
+        if (tiles == null) {
+            TileGroups markGroups = new TileGroups(tokens.size(), nextTokens);
+            hashTiles(markGroups::add);
+            return markGroups;
+        }
+        int start = tiles.shardStarts[shard];
+        int end = tiles.shardStarts[shard + 1];
+        TileGroups markGroups = new TileGroups(end - start, nextTokens);
+        for (int i = start; i < end; i++) {
+            int token = tiles.tilesByShard[i];
+            markGroups.add(tiles.hashes[token], token);
+        }
+        return markGroups;
+    }
+
+    /**
+     * Hashes all the tiles once, and sorts them by shard. The tiles of
+     * each shard stay in descending order of their first token.
+     */
+    private ShardedTiles shardTiles() {
+        int[] hashes = new int[tokens.size()];
+        int[] tilesInOrder = new int[tokens.size()];
+        int[] shardStarts = new int[shardCount + 1];
+        int[] tileCount = {0};
+        hashTiles((hash, token) -> {
+            hashes[token] = hash;
+            tilesInOrder[tileCount[0]++] = token;
+            shardStarts[shardOf(hash) + 1]++;
+        });
+        for (int shard = 0; shard < shardCount; shard++) {
+            shardStarts[shard + 1] += shardStarts[shard];
+        }
+        int[] nextInShard = Arrays.copyOf(shardStarts, shardCount);
+        int[] tilesByShard = new int[tileCount[0]];
+        for (int i = 0; i < tileCount[0]; i++) {
+            int token = tilesInOrder[i];
+            tilesByShard[nextInShard[shardOf(hashes[token])]++] = token;
+        }
+        return new ShardedTiles(hashes, tilesByShard, shardStarts);
+    }
+
+    /**
+     * Computes the hash of each tile of {@link #getMinimumTileSize()}
+     * tokens with a rolling hash. The tiles are visited in descending
+     * order of their first token.
+     */
     @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
+    private void hashTiles(TileVisitor visitor) {
         int lastHash = 0;
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (!token.isEof()) {
-                int last = tokenAt(minTileSize, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
-                }
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            int token = tokens.getImageId(i);
+            if (token != TokenEntry.EOF) {
+                int last = tokens.getImageId(i + minTileSize);
+                lastHash = MOD * lastHash + token - lastMod * last;
+                visitor.visit(lastHash, i);
             } else {
                 lastHash = 0;
                 for (int end = Math.max(0, i - minTileSize + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (token.isEof()) {
+                    token = tokens.getImageId(i - 1);
+                    lastHash = MOD * lastHash + token;
+                    if (token == TokenEntry.EOF) {
                         break;
                     }
                 }
             }
         }
-        return markGroups;
+    }
+
+    @FunctionalInterface
+    private interface TileVisitor {
+
+        void visit(int hash, int token);
+    }
+
+    /**
+     * The first tokens of all tiles, grouped by shard. The tiles of shard
+     * {@code s} are at indices {@code shardStarts[s]} (inclusive) to
+     * {@code shardStarts[s + 1]} (exclusive) of {@link #tilesByShard}.
+     */
+    private static final class ShardedTiles {
+
+        /** Hash of the tile starting at each token. */
+        final int[] hashes;
+        final int[] tilesByShard;
+        final int[] shardStarts;
+
+        ShardedTiles(int[] hashes, int[] tilesByShard, int[] shardStarts) {
+            this.hashes = hashes;
+            this.tilesByShard = tilesByShard;
+            this.shardStarts = shardStarts;
+        }
+    }
+
+    /**
+     * Groups the indices of the tokens by the hash of the tile they
+     * start. This is an open addressing hash table from the tile hash to
+     * the first token of the group, the other tokens of a group are linked
+     * through an array. This uses a few ints per token instead of a map
+     * entry and a list.
+     */
+    private static final class TileGroups {
+
+        private static final int NO_TOKEN = -1;
+
+        private final int[] keys;
+        private final int[] firstTokens;
+        private final int[] nextTokens;
+        private final int mask;
+        private final int shift;
+
+        TileGroups(int tileCount, int[] nextTokens) {
+            // the load factor is at most 0.75
+            int capacity = Integer.highestOneBit(Math.max(16, tileCount + tileCount / 3) - 1) << 1;
+            this.keys = new int[capacity];
+            this.firstTokens = new int[capacity];
+            Arrays.fill(firstTokens, NO_TOKEN);
+            this.nextTokens = nextTokens;
+            this.mask = capacity - 1;
+            this.shift = Integer.numberOfLeadingZeros(mask);
+        }
+
+        /**
+         * Adds a token to the group of its hash. Tokens must be added
+         * in descending order.
+         */
+        void add(int hash, int token) {
+            // fibonacci hashing, the high bits of the product are the best mixed
+            int slot = hash * 0x9E3779B9 >>> shift;
+            while (firstTokens[slot] != NO_TOKEN && keys[slot] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = hash;
+            nextTokens[token] = firstTokens[slot];
+            firstTokens[slot] = token;
+        }
+
+        PairBuffer findPairs(MatchCollector matchCollector) {
+            PairBuffer pairs = new PairBuffer();
+            int[] group = new int[16];
+            for (int first : firstTokens) {
+                if (first == NO_TOKEN || nextTokens[first] == NO_TOKEN) {
+                    // the vast majority of groups have a single token
+                    continue;
+                }
+                int size = 0;
+                for (int token = first; token != NO_TOKEN; token = nextTokens[token]) {
+                    if (size == group.length) {
+                        group = Arrays.copyOf(group, size * 2);
+                    }
+                    group[size++] = token;
+                }
+                matchCollector.findPairs(group, size, pairs);
+            }
+            return pairs;
+        }
+    }
+
+    /**
+     * The pairs of tokens that start a match, packed in longs, so that
+     * sorting them sorts the pairs by their first and second token. The
+     * number of duplicate tokens of each pair is kept at the same index.
+     */
+    private static final class PairBuffer implements MatchCollector.PairConsumer {
+
+        private long[] pairs = new long[16];
+        private int[] dupeCounts = new int[16];
+        private int size;
+
+        @Override
+        public void accept(int mark1, int mark2, int dupes) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+                dupeCounts = Arrays.copyOf(dupeCounts, size * 2);
+            }
+            pairs[size] = (long) mark1 << 32 | mark2;
+            dupeCounts[size] = dupes;
+            size++;
+        }
+
+        /**
+         * Concatenates the buffers, and sorts the pairs along with their
+         * number of duplicate tokens.
+         */
+        static PairBuffer concatSorted(List<PairBuffer> buffers) {
+            int total = buffers.stream().mapToInt(it -> it.size).sum();
+            long[] pairs = new long[total];
+            int[] dupeCounts = new int[total];
+            int offset = 0;
+            for (PairBuffer buffer : buffers) {
+                System.arraycopy(buffer.pairs, 0, pairs, offset, buffer.size);
+                System.arraycopy(buffer.dupeCounts, 0, dupeCounts, offset, buffer.size);
+                offset += buffer.size;
+            }
+
+            PairBuffer sorted = new PairBuffer();
+            sorted.pairs = pairs.clone();
+            Arrays.sort(sorted.pairs);
+            sorted.dupeCounts = new int[total];
+            sorted.size = total;
+            for (int i = 0; i < total; i++) {
+                // a pair of tokens is found only once, the pairs are distinct
+                sorted.dupeCounts[Arrays.binarySearch(sorted.pairs, pairs[i])] = dupeCounts[i];
+            }
+            return sorted;
+        }
     }
 }
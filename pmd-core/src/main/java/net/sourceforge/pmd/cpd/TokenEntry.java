@@ -6,33 +6,24 @@ package net.sourceforge.pmd.cpd;
 
 import net.sourceforge.pmd.lang.document.FileId;
 
+/**
+ * A token recorded by CPD. Token entries are views of the tokens stored
+ * in a {@link Tokens} instance, and are created when a token is queried.
+ * Two entries are equal if they denote the same token.
+ */
 public class TokenEntry implements Comparable<TokenEntry> {
 
-    private static final int EOF = 0;
+    static final int EOF = 0;
 
     private final FileId fileId;
     private final int beginLine;
     private final int beginColumn;
     private final int endColumn;
     private final int endLine;
-    private int index;
+    private final int index;
     private int identifier;
-    private int hashCode;
-
-    /** constructor for EOF entries. */
-    TokenEntry(FileId fileId, int line, int column) {
-        assert isOk(line) && isOk(column) : "Coordinates are 1-based";
-        this.identifier = EOF;
-        this.fileId = fileId;
-        this.beginLine = line;
-        this.beginColumn = column;
-        this.endLine = line;
-        this.endColumn = column;
-    }
 
     TokenEntry(int imageId, FileId fileId, int beginLine, int beginColumn, int endLine, int endColumn, int index) {
-        assert isOk(beginLine) && isOk(beginColumn) && isOk(endLine) && isOk(endColumn) : "Coordinates are 1-based";
-        assert imageId != EOF;
         this.fileId = fileId;
         this.beginLine = beginLine;
         this.beginColumn = beginColumn;
@@ -46,10 +37,6 @@ public class TokenEntry implements Comparable<TokenEntry> {
         return this.identifier == EOF;
     }
 
-    private boolean isOk(int coord) {
-        return coord >= 1;
-    }
-
 
     FileId getFileId() {
         return fileId;
@@ -86,14 +73,9 @@ public class TokenEntry implements Comparable<TokenEntry> {
 
     @Override
     public int hashCode() {
-        return hashCode;
-    }
-
-    void setHashCode(int hashCode) {
-        this.hashCode = hashCode;
+        return index;
     }
 
-    @SuppressWarnings("PMD.CompareObjectsWithEquals")
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -102,12 +84,7 @@ public class TokenEntry implements Comparable<TokenEntry> {
             return false;
         }
         TokenEntry other = (TokenEntry) o;
-        if (other.isEof() != this.isEof()) {
-            return false;
-        } else if (this.isEof()) {
-            return other.getFileId().equals(this.getFileId());
-        }
-        return other.hashCode == hashCode;
+        return other.index == index && other.fileId.equals(fileId);
     }
 
     @Override
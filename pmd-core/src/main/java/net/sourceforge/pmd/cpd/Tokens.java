@@ -4,11 +4,14 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.RandomAccess;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -23,8 +26,20 @@ import net.sourceforge.pmd.lang.document.TextDocument;
  */
 public class Tokens {
 
-    // This stores all the token entries recorded during the run.
-    private final List<TokenEntry> tokens = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // The tokens recorded during the run are stored column-wise, as there
+    // may be tens of millions of them. A TokenEntry is only created when a
+    // token is queried.
+    private int size;
+    private int[] imageIds = new int[INITIAL_CAPACITY];
+    private int[] fileIndices = new int[INITIAL_CAPACITY];
+    private int[] beginLines = new int[INITIAL_CAPACITY];
+    private int[] beginColumns = new int[INITIAL_CAPACITY];
+    private int[] endLines = new int[INITIAL_CAPACITY];
+    private int[] endColumns = new int[INITIAL_CAPACITY];
+
+    private final List<FileId> files = new ArrayList<>();
     private final Map<String, Integer> images = new HashMap<>();
     // the first ID is 1, 0 is the ID of the EOF token.
     private int curImageId = 1;
@@ -38,16 +53,41 @@ public class Tokens {
         // constructor is package private
     }
 
-    private void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+    private int add(int imageId, int fileIndex, int beginLine, int beginColumn, int endLine, int endColumn) {
+        if (size == imageIds.length) {
+            int newCapacity = size + (size >> 1);
+            imageIds = Arrays.copyOf(imageIds, newCapacity);
+            fileIndices = Arrays.copyOf(fileIndices, newCapacity);
+            beginLines = Arrays.copyOf(beginLines, newCapacity);
+            beginColumns = Arrays.copyOf(beginColumns, newCapacity);
+            endLines = Arrays.copyOf(endLines, newCapacity);
+            endColumns = Arrays.copyOf(endColumns, newCapacity);
+        }
+        imageIds[size] = imageId;
+        fileIndices[size] = fileIndex;
+        beginLines[size] = beginLine;
+        beginColumns[size] = beginColumn;
+        endLines[size] = endLine;
+        endColumns[size] = endColumn;
+        return size++;
+    }
+
+    private void addEof(int fileIndex, int line, int column) {
+        add(TokenEntry.EOF, fileIndex, line, column, line, column);
     }
 
-    private void addEof(FileId filePathId, int line, int column) {
-        add(new TokenEntry(filePathId, line, column));
+    private int fileIndex(FileId fileId) {
+        int last = files.size() - 1;
+        if (last >= 0 && files.get(last).equals(fileId)) {
+            return last;
+        }
+        files.add(fileId);
+        return last + 1;
     }
 
     private void setImage(TokenEntry entry, String newImage) {
         int i = getImageId(newImage);
+        imageIds[entry.getIndex()] = i;
         entry.setImageIdentifier(i);
     }
 
@@ -60,29 +100,76 @@ public class Tokens {
     }
 
     private TokenEntry peekLastToken() {
-        return tokens.isEmpty() ? null : getToken(size() - 1);
+        return size == 0 ? null : getToken(size - 1);
     }
 
-    private TokenEntry getToken(int index) {
-        return tokens.get(index);
+    TokenEntry getToken(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return new TokenEntry(imageIds[index], files.get(fileIndices[index]),
+                              beginLines[index], beginColumns[index],
+                              endLines[index], endColumns[index], index);
+    }
+
+    /**
+     * Returns the image ID of the token at the given index. The ID of
+     * an EOF token is 0.
+     */
+    int getImageId(int index) {
+        return imageIds[index];
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     TokenEntry getEndToken(TokenEntry mark, Match match) {
         return getToken(mark.getIndex() + match.getTokenCount() - 1);
     }
 
+    /**
+     * Returns an unmodifiable view of the tokens. The entries of the
+     * list are created when they are accessed.
+     */
     public List<TokenEntry> getTokens() {
-        return tokens;
+        return new TokenList();
     }
 
     TokenEntry addToken(String image, FileId fileName, int startLine, int startCol, int endLine, int endCol) {
-        TokenEntry newToken = new TokenEntry(getImageId(image), fileName, startLine, startCol, endLine, endCol, tokens.size());
-        add(newToken);
-        return newToken;
+        return addToken(getImageId(image), fileIndex(fileName), startLine, startCol, endLine, endCol);
+    }
+
+    private TokenEntry addToken(int imageId, int fileIndex, int startLine, int startCol, int endLine, int endCol) {
+        assert startLine >= 1 && startCol >= 1 && endLine >= 1 && endCol >= 1 : "Coordinates are 1-based";
+        return getToken(add(imageId, fileIndex, startLine, startCol, endLine, endCol));
+    }
+
+    /**
+     * Appends the tokens of another instance. The images of the other
+     * instance are mapped to the image IDs of this instance, in the order
+     * in which they first occur, as if the tokens had been recorded here.
+     *
+     * @param other Tokens to append
+     */
+    void addAll(Tokens other) {
+        String[] imagesById = new String[other.curImageId];
+        other.images.forEach((image, id) -> imagesById[id] = image);
+        int[] imageIdMap = new int[other.curImageId];
+        int[] fileIndexMap = new int[other.files.size()];
+        for (int i = 0; i < fileIndexMap.length; i++) {
+            fileIndexMap[i] = fileIndex(other.files.get(i));
+        }
+
+        for (int i = 0; i < other.size; i++) {
+            int imageId = other.imageIds[i];
+            if (imageId != TokenEntry.EOF && imageIdMap[imageId] == 0) {
+                imageIdMap[imageId] = getImageId(imagesById[imageId]);
+            }
+            add(imageIdMap[imageId], fileIndexMap[other.fileIndices[i]],
+                other.beginLines[i], other.beginColumns[i],
+                other.endLines[i], other.endColumns[i]);
+        }
     }
 
     State savePoint() {
@@ -102,11 +189,13 @@ public class Tokens {
     static TokenFactory factoryForFile(TextDocument file, Tokens tokens) {
         return new TokenFactory() {
             final FileId fileId = file.getFileId();
+            final int fileIndex = tokens.fileIndex(fileId);
             final int firstToken = tokens.size();
 
             @Override
             public void recordToken(@NonNull String image, int startLine, int startCol, int endLine, int endCol) {
-                tokens.addToken(image, fileId, startLine, startCol, endLine, endCol);
+                assert startLine >= 1 && startCol >= 1 && endLine >= 1 && endCol >= 1 : "Coordinates are 1-based";
+                tokens.add(tokens.getImageId(image), fileIndex, startLine, startCol, endLine, endCol);
             }
 
             @Override
@@ -131,9 +220,9 @@ public class Tokens {
             public void close() {
                 TokenEntry tok = peekLastToken();
                 if (tok == null) {
-                    tokens.addEof(fileId, 1, 1);
+                    tokens.addEof(fileIndex, 1, 1);
                 } else {
-                    tokens.addEof(fileId, tok.getEndLine(), tok.getEndColumn());
+                    tokens.addEof(fileIndex, tok.getEndLine(), tok.getEndColumn());
                 }
             }
         };
@@ -146,10 +235,12 @@ public class Tokens {
     static final class State {
 
         private final int tokenCount;
+        private final int fileCount;
         private final int curImageId;
 
         State(Tokens tokens) {
-            this.tokenCount = tokens.tokens.size();
+            this.tokenCount = tokens.size;
+            this.fileCount = tokens.files.size();
             this.curImageId = tokens.curImageId;
         }
 
@@ -157,8 +248,21 @@ public class Tokens {
             tokens.images.entrySet().removeIf(e -> e.getValue() >= curImageId);
             tokens.curImageId = this.curImageId;
 
-            final List<TokenEntry> entries = tokens.getTokens();
-            entries.subList(tokenCount, entries.size()).clear();
+            tokens.size = tokenCount;
+            tokens.files.subList(fileCount, tokens.files.size()).clear();
+        }
+    }
+
+    private final class TokenList extends AbstractList<TokenEntry> implements RandomAccess {
+
+        @Override
+        public TokenEntry get(int index) {
+            return getToken(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
     }
 
@@ -10,6 +10,8 @@ import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
 
+import org.apache.commons.lang3.StringUtils;
+
 import net.sourceforge.pmd.lang.TokenManager;
 import net.sourceforge.pmd.lang.ast.GenericToken;
 
@@ -70,11 +72,12 @@ public class BaseTokenFilter<T extends GenericToken<T>> implements TokenManager<
         // Check if a comment is altering the suppression state
         T comment = currentToken.getPreviousComment();
         while (comment != null) {
-            if (comment.getImage().contains("CPD-OFF")) {
+            CharSequence image = comment.getImageCs();
+            if (StringUtils.contains(image, "CPD-OFF")) {
                 discardingSuppressing = true;
                 break;
             }
-            if (comment.getImage().contains("CPD-ON")) {
+            if (StringUtils.contains(image, "CPD-ON")) {
                 discardingSuppressing = false;
                 break;
             }
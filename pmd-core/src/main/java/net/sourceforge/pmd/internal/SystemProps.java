@@ -7,6 +7,7 @@ package net.sourceforge.pmd.internal;
 public final class SystemProps {
 
     public static final String PMD_ERROR_RECOVERY = "pmd.error_recovery";
+    public static final String PMD_XPATH_SAXON_ONLY = "pmd.xpath.saxon_only";
 
     private SystemProps() {
     }
@@ -25,4 +26,17 @@ public final class SystemProps {
     public static boolean isErrorRecoveryMode() {
         return System.getProperty(PMD_ERROR_RECOVERY) != null;
     }
+
+    /**
+     * If set, XPath rules are always evaluated with Saxon, instead of being
+     * evaluated directly on the AST when their query allows it. Both ways
+     * must produce the same results, this is meant to compare them or to
+     * work around a bug in the direct evaluation.
+     * <p>
+     * The System Property is called {@code pmd.xpath.saxon_only}. It is
+     * read when an XPath rule is initialized.
+     */
+    public static boolean isXPathSaxonOnly() {
+        return System.getProperty(PMD_XPATH_SAXON_ONLY) != null;
+    }
 }
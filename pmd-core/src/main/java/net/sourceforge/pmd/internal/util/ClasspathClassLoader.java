@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +41,10 @@ import net.sourceforge.pmd.util.AssertionUtil;
  * the String looks like a URL to a file (e.g. starts with <code>file://</code>)
  * the file will be read with each line representing an path on the classpath.
  *
+ * <p>Resources are found with a {@link ClasspathIndex}, which opens each
+ * jar once and knows which jars contain a package, instead of probing
+ * every jar of the classpath.
+ *
  * @author Edwin Chan
  */
 public class ClasspathClassLoader extends URLClassLoader {
@@ -50,6 +55,7 @@ public class ClasspathClassLoader extends URLClassLoader {
 
     private FileSystem fileSystem;
     private Map<String, Set<String>> packagesDirsToModules;
+    private ClasspathIndex classpathIndex;
 
     static {
         registerAsParallelCapable();
@@ -70,6 +76,7 @@ public class ClasspathClassLoader extends URLClassLoader {
         for (URL url : fileToURL(files)) {
             addURL(url);
         }
+        classpathIndex = ClasspathIndex.create(getURLs());
     }
 
     public ClasspathClassLoader(String classpath, ClassLoader parent) throws IOException {
@@ -77,6 +84,7 @@ public class ClasspathClassLoader extends URLClassLoader {
         for (URL url : initURLs(classpath)) {
             addURL(url);
         }
+        classpathIndex = ClasspathIndex.create(getURLs());
     }
 
     private List<URL> fileToURL(List<File> files) throws IOException {
@@ -190,6 +198,14 @@ public class ClasspathClassLoader extends URLClassLoader {
         }
     }
 
+    /**
+     * Returns the java home of the runtime image whose classes are loaded
+     * through the jrt filesystem, or null if there is none.
+     */
+    public @Nullable String getJavaHome() {
+        return javaHome;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName()
@@ -228,7 +244,15 @@ public class ClasspathClassLoader extends URLClassLoader {
             }
         }
 
-        // search in the other jars of the aux classpath.
+        // search in the other jars of the aux classpath. The index reads the
+        // resource from the jar that was opened when the index was created.
+        if (classpathIndex != null) {
+            InputStream stream = classpathIndex.getResourceAsStream(name);
+            if (stream != null) {
+                return stream;
+            }
+        }
+
         // this will call this.getResource, which will do a child-first search, see below.
         return super.getResourceAsStream(name);
     }
@@ -249,6 +273,14 @@ public class ClasspathClassLoader extends URLClassLoader {
         return url;
     }
 
+    @Override
+    public URL findResource(String name) {
+        if (classpathIndex != null) {
+            return classpathIndex.getResource(name);
+        }
+        return super.findResource(name);
+    }
+
     @Override
     protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
         throw new IllegalStateException("This class loader shouldn't be used to load classes");
@@ -256,6 +288,10 @@ public class ClasspathClassLoader extends URLClassLoader {
 
     @Override
     public void close() throws IOException {
+        if (classpathIndex != null) {
+            classpathIndex.close();
+            classpathIndex = null;
+        }
         if (fileSystem != null) {
             fileSystem.close();
             // jrt created an own classloader to load the JrtFileSystemProvider class out of the
@@ -0,0 +1,379 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.internal.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the entries of a classpath, used by {@link ClasspathClassLoader}.
+ * Each jar is opened once, when the index is created, and stays open until
+ * the index is closed. The index maps each package to the jars that contain
+ * it, so that finding a resource only looks into these jars, and a resource
+ * whose package is in no jar is not looked up in any jar. Directories may
+ * change during the analysis, they are not indexed but searched for each
+ * resource, in classpath order.
+ */
+final class ClasspathIndex implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClasspathIndex.class);
+
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+    private static final int[] NO_ENTRIES = new int[0];
+
+    /**
+     * The feature version of the running JVM, which selects the entries
+     * of multi-release jars, like {@link java.net.URLClassLoader} does.
+     */
+    private static final int RUNTIME_VERSION = runtimeVersion();
+
+    private final List<Root> roots;
+    /** Positions of the directories in {@link #roots}. */
+    private final int[] directories;
+    /** Positions of the jars that contain each package, in increasing order. */
+    private final Map<String, int[]> packagesToJars;
+
+    private ClasspathIndex(List<Root> roots, int[] directories, Map<String, int[]> packagesToJars) {
+        this.roots = roots;
+        this.directories = directories;
+        this.packagesToJars = packagesToJars;
+    }
+
+    /**
+     * Creates an index of the given classpath. Returns null if the classpath
+     * contains URLs that are neither local jars nor local directories.
+     */
+    static @Nullable ClasspathIndex create(URL[] urls) {
+        List<Root> roots = new ArrayList<>(urls.length);
+        List<Integer> directories = new ArrayList<>();
+        Map<String, List<Integer>> packages = new HashMap<>();
+        try {
+            for (URL url : urls) {
+                Path path = toPath(url);
+                if (path == null) {
+                    LOG.debug("Classpath entry {} is not a local file, classpath is not indexed", url);
+                    closeAll(roots);
+                    return null;
+                }
+                if (Files.isDirectory(path)) {
+                    directories.add(roots.size());
+                    roots.add(new DirectoryRoot(url, path));
+                } else if (Files.isRegularFile(path)) {
+                    @SuppressWarnings("PMD.CloseResource") // closed with the index
+                    JarRoot jar = JarRoot.open(url, path);
+                    if (jar != null) {
+                        jar.indexPackages(packages, roots.size());
+                        roots.add(jar);
+                    }
+                }
+                // missing entries are ignored, like URLClassLoader does
+            }
+        } catch (RuntimeException e) {
+            closeAll(roots);
+            throw e;
+        }
+
+        Map<String, int[]> packagesToJars = new HashMap<>(packages.size());
+        packages.forEach((pkg, positions) -> packagesToJars.put(pkg, toIntArray(positions)));
+        return new ClasspathIndex(roots, toIntArray(directories), packagesToJars);
+    }
+
+    private static @Nullable Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String packageOf(String resourceName) {
+        return resourceName.substring(0, Math.max(resourceName.lastIndexOf('/'), 0));
+    }
+
+    /**
+     * Returns the contents of the first resource with the given name on
+     * the classpath, or null if there is none.
+     */
+    @Nullable InputStream getResourceAsStream(String name) {
+        return find(name, Root::getResourceAsStream);
+    }
+
+    /**
+     * Returns the URL of the first resource with the given name on
+     * the classpath, or null if there is none.
+     */
+    @Nullable URL getResource(String name) {
+        return find(name, Root::getResource);
+    }
+
+    private <T> @Nullable T find(String name, Lookup<T> lookup) {
+        int[] jars = packagesToJars.getOrDefault(packageOf(name), NO_ENTRIES);
+        // merge the positions of the directories and jars to search
+        // them in classpath order
+        int d = 0;
+        int j = 0;
+        while (d < directories.length || j < jars.length) {
+            int position;
+            if (j == jars.length || d < directories.length && directories[d] < jars[j]) {
+                position = directories[d++];
+            } else {
+                position = jars[j++];
+            }
+            @SuppressWarnings("PMD.CloseResource") // closed with the index
+            Root root = roots.get(position);
+            try {
+                T found = lookup.find(root, name);
+                if (found != null) {
+                    return found;
+                }
+            } catch (IOException e) {
+                LOG.debug("Cannot read {} from {}", name, root.url, e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Exception exception = IOUtil.closeAll(roots);
+        if (exception instanceof IOException) {
+            throw (IOException) exception;
+        } else if (exception != null) {
+            throw new IOException(exception);
+        }
+    }
+
+    private static void closeAll(List<Root> roots) {
+        Exception exception = IOUtil.closeAll(roots);
+        if (exception != null) {
+            LOG.debug("Could not close classpath entries", exception);
+        }
+    }
+
+    private static int runtimeVersion() {
+        String version = System.getProperty("java.specification.version", "");
+        try {
+            return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+        } catch (NumberFormatException ignored) {
+            return 8;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T> {
+        @Nullable T find(Root root, String name) throws IOException;
+    }
+
+    private abstract static class Root implements Closeable {
+
+        final URL url;
+
+        Root(URL url) {
+            this.url = url;
+        }
+
+        abstract @Nullable InputStream getResourceAsStream(String name) throws IOException;
+
+        abstract @Nullable URL getResource(String name) throws IOException;
+
+        @Override
+        public void close() throws IOException {
+            // nothing to do
+        }
+    }
+
+    private static final class DirectoryRoot extends Root {
+
+        private final Path directory;
+
+        DirectoryRoot(URL url, Path directory) {
+            super(url);
+            this.directory = directory;
+        }
+
+        private @Nullable Path resolve(String name) {
+            Path file = directory.resolve(name).normalize();
+            return file.startsWith(directory) && Files.isRegularFile(file) ? file : null;
+        }
+
+        @Override
+        @Nullable InputStream getResourceAsStream(String name) throws IOException {
+            Path file = resolve(name);
+            return file == null ? null : Files.newInputStream(file);
+        }
+
+        @Override
+        @Nullable URL getResource(String name) throws MalformedURLException {
+            Path file = resolve(name);
+            return file == null ? null : file.toUri().toURL();
+        }
+    }
+
+    private static final class JarRoot extends Root {
+
+        private final ZipFile zipFile;
+        /** Versions of a multi-release jar that apply to the runtime, in decreasing order. */
+        private final int[] versions;
+
+        private JarRoot(URL url, ZipFile zipFile, int[] versions) {
+            super(url);
+            this.zipFile = zipFile;
+            this.versions = versions;
+        }
+
+        static @Nullable JarRoot open(URL url, Path path) {
+            ZipFile zipFile;
+            try {
+                zipFile = new ZipFile(path.toFile());
+            } catch (IOException e) {
+                LOG.debug("Cannot open classpath entry {}, it is ignored", path, e);
+                return null;
+            }
+            try {
+                return new JarRoot(url, zipFile, isMultiRelease(zipFile) ? releaseVersions(zipFile) : NO_ENTRIES);
+            } catch (IOException e) {
+                LOG.debug("Cannot read the manifest of classpath entry {}, it is ignored", path, e);
+                IOUtil.closeQuietly(zipFile);
+                return null;
+            }
+        }
+
+        private static boolean isMultiRelease(ZipFile zipFile) throws IOException {
+            ZipEntry manifestEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+            if (RUNTIME_VERSION < 9 || manifestEntry == null) {
+                return false;
+            }
+            try (InputStream in = zipFile.getInputStream(manifestEntry)) {
+                Manifest manifest = new Manifest(in);
+                return "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(new Attributes.Name("Multi-Release")));
+            }
+        }
+
+        private static int[] releaseVersions(ZipFile zipFile) {
+            Set<Integer> versions = new TreeSet<>(Comparator.reverseOrder());
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                int version = versionOf(entries.nextElement().getName());
+                if (version >= 9 && version <= RUNTIME_VERSION) {
+                    versions.add(version);
+                }
+            }
+            return versions.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /** Returns the version of a versioned entry, or -1. */
+        private static int versionOf(String entryName) {
+            int versionEnd = entryName.indexOf('/', VERSIONS_PREFIX.length());
+            if (!entryName.startsWith(VERSIONS_PREFIX) || versionEnd < 0) {
+                return -1;
+            }
+            try {
+                return Integer.parseInt(entryName.substring(VERSIONS_PREFIX.length(), versionEnd));
+            } catch (NumberFormatException ignored) {
+                return -1;
+            }
+        }
+
+        void indexPackages(Map<String, List<Integer>> packages, int position) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = entry.getName();
+                if (versions.length > 0 && versionOf(name) > 0) {
+                    // versioned entries are found under their unversioned name
+                    name = name.substring(name.indexOf('/', VERSIONS_PREFIX.length()) + 1);
+                }
+                List<Integer> jars = packages.computeIfAbsent(packageOf(name), k -> new ArrayList<>(1));
+                if (jars.isEmpty() || jars.get(jars.size() - 1) != position) {
+                    jars.add(position);
+                }
+            }
+        }
+
+        private @Nullable ZipEntry getEntry(String name) {
+            for (int version : versions) {
+                ZipEntry entry = zipFile.getEntry(VERSIONS_PREFIX + version + "/" + name);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return zipFile.getEntry(name);
+        }
+
+        @Override
+        @Nullable InputStream getResourceAsStream(String name) throws IOException {
+            ZipEntry entry = getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            // The contents are read right away, so that the stream stays
+            // usable after the class loader is closed, see #4899.
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                long size = entry.getSize();
+                if (size >= 0 && size <= Integer.MAX_VALUE) {
+                    byte[] bytes = new byte[(int) size];
+                    new DataInputStream(in).readFully(bytes);
+                    return new ByteArrayInputStream(bytes);
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                IOUtil.copy(in, bytes);
+                return new ByteArrayInputStream(bytes.toByteArray());
+            }
+        }
+
+        @Override
+        @Nullable URL getResource(String name) throws MalformedURLException {
+            return getEntry(name) == null ? null : new URL("jar:" + url + "!/" + name);
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
+        }
+
+        @Override
+        public String toString() {
+            return "JarRoot[" + url + ", versions=" + Arrays.toString(versions) + ']';
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AnalysisScheduler;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
@@ -35,10 +36,25 @@ public final class InternalApiBridge {
                                                                     AnalysisCache analysisCache,
                                                                     PmdReporter messageReporter,
                                                                     LanguageProcessorRegistry lpRegistry) {
-        return new LanguageProcessor.AnalysisTask(rulesets, files, listener, threadCount, analysisCache, messageReporter, lpRegistry);
+        return createAnalysisTask(rulesets, files, listener, threadCount, analysisCache, messageReporter, lpRegistry, null);
+    }
+
+    public static LanguageProcessor.AnalysisTask createAnalysisTask(RuleSets rulesets,
+                                                                    List<TextFile> files,
+                                                                    GlobalAnalysisListener listener,
+                                                                    int threadCount,
+                                                                    AnalysisCache analysisCache,
+                                                                    PmdReporter messageReporter,
+                                                                    LanguageProcessorRegistry lpRegistry,
+                                                                    AnalysisScheduler scheduler) {
+        return new LanguageProcessor.AnalysisTask(rulesets, files, listener, threadCount, analysisCache, messageReporter, lpRegistry, scheduler);
     }
 
     public static LanguageProcessor.AnalysisTask taskWithFiles(LanguageProcessor.AnalysisTask originalTask, List<TextFile> newFiles) {
         return originalTask.withFiles(newFiles);
     }
+
+    public static AnalysisScheduler getScheduler(LanguageProcessor.AnalysisTask task) {
+        return task.getScheduler();
+    }
 }
@@ -11,6 +11,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AnalysisScheduler;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
@@ -66,6 +67,7 @@ public interface LanguageProcessor extends AutoCloseable {
         private final AnalysisCache analysisCache;
         private final PmdReporter messageReporter;
         private final LanguageProcessorRegistry lpRegistry;
+        private final AnalysisScheduler scheduler;
 
 
         /**
@@ -80,7 +82,8 @@ public interface LanguageProcessor extends AutoCloseable {
                             int threadCount,
                             AnalysisCache analysisCache,
                             PmdReporter messageReporter,
-                            LanguageProcessorRegistry lpRegistry) {
+                            LanguageProcessorRegistry lpRegistry,
+                            AnalysisScheduler scheduler) {
             this.rulesets = rulesets;
             this.files = files;
             this.listener = listener;
@@ -88,6 +91,7 @@ public interface LanguageProcessor extends AutoCloseable {
             this.analysisCache = analysisCache;
             this.messageReporter = messageReporter;
             this.lpRegistry = lpRegistry;
+            this.scheduler = scheduler;
         }
 
         public RuleSets getRulesets() {
@@ -118,6 +122,17 @@ public interface LanguageProcessor extends AutoCloseable {
             return lpRegistry;
         }
 
+        /**
+         * The thread pool shared by all processors of the analysis. This
+         * is null if the analysis is not multithreaded, or if each processor
+         * should use its own threads.
+         *
+         * @apiNote Internal API
+         */
+        AnalysisScheduler getScheduler() {
+            return scheduler;
+        }
+
         /**
          * Produce a new analysis task with just different files.
          *
@@ -131,7 +146,8 @@ public interface LanguageProcessor extends AutoCloseable {
                 threadCount,
                 analysisCache,
                 messageReporter,
-                lpRegistry
+                lpRegistry,
+                scheduler
             );
         }
     }
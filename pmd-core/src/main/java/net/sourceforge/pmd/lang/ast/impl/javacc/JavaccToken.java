@@ -24,6 +24,10 @@ import net.sourceforge.pmd.lang.document.TextRegion;
  * <li>It's a bit lighter. Token instances are one of the most numerous
  * class in a typical PMD run and this may reduce GC pressure.
  * </ul>
+ *
+ * <p>Tokens created by the token manager usually don't store their image.
+ * It is cut out of the text of the document when it is requested, which
+ * saves a {@link Chars} instance per token.
  */
 public class JavaccToken implements GenericToken<JavaccToken> {
 
@@ -47,6 +51,7 @@ public class JavaccToken implements GenericToken<JavaccToken> {
     public final int kind;
 
     private final JavaccTokenDocument document;
+    // null if the image is the text of the token in the document
     private final CharSequence image;
     private final int startOffset;
     private final int endOffset;
@@ -76,10 +81,11 @@ public class JavaccToken implements GenericToken<JavaccToken> {
     public JavaccToken specialToken;
 
 
-    // common constructor, with a CharSequence parameter
+    // common constructor, with a CharSequence parameter, which is null if
+    // the image is the text of the token in the document
     JavaccToken(int kind, CharSequence image, int startInclusive, int endExclusive, JavaccTokenDocument document) {
         assert document != null : "Null document";
-        assert image instanceof String || image instanceof Chars : "Null image";
+        assert image == null || image instanceof String || image instanceof Chars : "Unexpected image " + image;
         assert TextRegion.isValidRegion(startInclusive, endExclusive, document.getTextDocument());
 
         this.kind = kind;
@@ -136,17 +142,36 @@ public class JavaccToken implements GenericToken<JavaccToken> {
         return specialToken;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Most tokens don't store their image, so each call creates a new
+     * {@link Chars} slice of the document text. The slice is cheap and
+     * short-lived, and it doesn't copy the text, but callers that use the
+     * image several times should keep it in a local variable instead of
+     * calling this method repeatedly.
+     */
     @Override
     public Chars getImageCs() {
+        if (image == null) {
+            return documentText().slice(startOffset, endOffset - startOffset);
+        }
         // wrap it: it's zero cost (images are either Chars or String) and Chars has a nice API
         return Chars.wrap(image);
     }
 
     @Override
     public String getImage() {
+        if (image == null) {
+            return documentText().substring(startOffset, endOffset);
+        }
         return image.toString();
     }
 
+    private Chars documentText() {
+        return document.getTextDocument().getText();
+    }
+
     @Override
     public final TextRegion getRegion() {
         return TextRegion.fromBothOffsets(startOffset, endOffset);
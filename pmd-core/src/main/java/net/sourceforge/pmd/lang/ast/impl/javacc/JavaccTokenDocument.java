@@ -121,9 +121,11 @@ public final class JavaccTokenDocument extends TokenDocument<JavaccToken> {
          * @return A new token
          */
         public JavaccToken createToken(JavaccTokenDocument self, int kind, CharStream cs, @Nullable String image) {
+            // if the image is null, it is the text of the token, which the
+            // token can cut out of the document when needed
             return new JavaccToken(
                 kind,
-                image == null ? cs.getTokenImageCs() : image,
+                image,
                 cs.getStartOffset(),
                 cs.getEndOffset(),
                 self
@@ -4,6 +4,10 @@
 
 package net.sourceforge.pmd.lang.document;
 
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.util.log.PmdReporter;
@@ -30,4 +34,29 @@ public final class InternalApiBridge {
     public static FileCollector newCollector(FileCollector collector, PmdReporter reporter) {
         return collector.newCollector(reporter);
     }
+
+    /**
+     * Returns an estimate of the size of the given file, without reading
+     * it. This is the size in bytes for files on a file system, or the
+     * number of chars for in-memory files. Returns -1 if the size is unknown.
+     */
+    public static long estimateSize(TextFile textFile) {
+        if (textFile instanceof NioTextFile) {
+            return ((NioTextFile) textFile).estimateSize();
+        } else if (textFile instanceof StringTextFile) {
+            return ((StringTextFile) textFile).estimateSize();
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the path of the given file, if it is a file on a file
+     * system. Returns null for other text files, e.g. in-memory files.
+     */
+    public static @Nullable Path getPath(TextFile textFile) {
+        if (textFile instanceof NioTextFile) {
+            return ((NioTextFile) textFile).getPath();
+        }
+        return null;
+    }
 }
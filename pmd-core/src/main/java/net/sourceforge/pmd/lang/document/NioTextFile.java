@@ -86,7 +86,19 @@ class NioTextFile extends BaseCloseable implements TextFile {
             throw new IOException("Not a regular file: " + path);
         }
 
-        return TextFileContent.fromInputStream(Files.newInputStream(path), charset);
+        return TextFileContent.fromFile(path, charset);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long estimateSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
     }
 
 
@@ -44,6 +44,10 @@ class StringTextFile implements TextFile {
         return content;
     }
 
+    long estimateSize() {
+        return content.getNormalizedText().length();
+    }
+
     @Override
     public void close() {
         // nothing to do
@@ -6,6 +6,7 @@ package net.sourceforge.pmd.lang.document;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -14,6 +15,8 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.Adler32;
@@ -48,6 +51,7 @@ public final class TextFileContent {
     public static final char NORMALIZED_LINE_TERM_CHAR = '\n';
 
     private static final int DEFAULT_BUFSIZE = 8192;
+    private static final int UTF8_BOM_LENGTH = 3;
 
     private static final Pattern NEWLINE_PATTERN = Pattern.compile("\r\n?|\n");
     private static final String FALLBACK_LINESEP = System.lineSeparator();
@@ -150,7 +154,7 @@ public final class TextFileContent {
         return fromInputStream(inputStream, sourceEncoding, FALLBACK_LINESEP);
     }
 
-    // test only
+    // the fallbackLineSep parameter is here for testability
     static TextFileContent fromInputStream(InputStream inputStream, Charset sourceEncoding, String fallbackLineSep) throws IOException {
         Checksum checksum = newChecksum();
         try (CheckedInputStream checkedIs = new CheckedInputStream(new BufferedInputStream(inputStream), checksum);
@@ -160,6 +164,94 @@ public final class TextFileContent {
         }
     }
 
+    /**
+     * Reads the contents of a file. Files in UTF-8 or US-ASCII that only
+     * contain ASCII characters, which is the case of most source files,
+     * are read without a decoder, see {@link #fromBytes(byte[], Charset, String)}.
+     */
+    static TextFileContent fromFile(Path path, Charset sourceEncoding) throws IOException {
+        return fromBytes(Files.readAllBytes(path), sourceEncoding, FALLBACK_LINESEP);
+    }
+
+    /**
+     * Produces a {@link TextFileContent} from the bytes of a file. If the
+     * bytes are ASCII, and the encoding is ASCII-compatible, the line terminators
+     * are normalized in place in the byte array, in a single pass. The string
+     * is then created directly from the bytes. Otherwise, the bytes are decoded
+     * like in {@link #fromInputStream(InputStream, Charset)}. In both cases,
+     * the checksum is that of the bytes.
+     *
+     * <p>Note that this may modify the byte array.
+     */
+    // the fallbackLineSep parameter is here for testability
+    static TextFileContent fromBytes(byte[] bytes, Charset sourceEncoding, String fallbackLineSep) throws IOException {
+        if (StandardCharsets.UTF_8.equals(sourceEncoding) || StandardCharsets.US_ASCII.equals(sourceEncoding)) {
+            int start = StandardCharsets.UTF_8.equals(sourceEncoding) && hasUtf8Bom(bytes) ? UTF8_BOM_LENGTH : 0;
+            if (isAscii(bytes, start)) {
+                Checksum checksum = newChecksum();
+                checksum.update(bytes, 0, bytes.length);
+                return normalizeAscii(bytes, start, fallbackLineSep, checksum.getValue());
+            }
+        }
+        return fromInputStream(new ByteArrayInputStream(bytes), sourceEncoding, fallbackLineSep);
+    }
+
+    private static boolean hasUtf8Bom(byte[] bytes) {
+        return bytes.length >= UTF8_BOM_LENGTH
+            && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF;
+    }
+
+    private static boolean isAscii(byte[] bytes, int start) {
+        for (int i = start; i < bytes.length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Normalizes the line terminators of ASCII bytes in place. As line
+     * terminators are only ever shortened, the normalized text is written
+     * at the start of the same region.
+     */
+    private static TextFileContent normalizeAscii(byte[] bytes, int start, String fallbackLineSep, long checksum) {
+        SourceCodePositioner.Builder positionerBuilder = new SourceCodePositioner.Builder();
+        String detectedLineTerm = null;
+        int w = start;
+        int r = start;
+        while (r < bytes.length) {
+            byte b = bytes[r++];
+            if (b == '\r') {
+                String lineTerm = CR;
+                if (r < bytes.length && bytes[r] == NORMALIZED_LINE_TERM_CHAR) {
+                    lineTerm = CRLF;
+                    r++;
+                }
+                bytes[w++] = NORMALIZED_LINE_TERM_CHAR;
+                positionerBuilder.addLineEndAtOffset(w - start);
+                detectedLineTerm = detectLineTerm(detectedLineTerm, lineTerm, fallbackLineSep);
+            } else {
+                bytes[w++] = b;
+                if (b == NORMALIZED_LINE_TERM_CHAR) {
+                    positionerBuilder.addLineEndAtOffset(w - start);
+                    detectedLineTerm = detectLineTerm(detectedLineTerm, LF, fallbackLineSep);
+                }
+            }
+        }
+
+        if (detectedLineTerm == null) {
+            // no line terminator in text
+            detectedLineTerm = fallbackLineSep;
+        }
+        int length = w - start;
+        // The bytes are ASCII, so decoding them as ISO-8859-1 is the same as
+        // decoding them as UTF-8. With compact strings, the JVM then just copies
+        // the bytes.
+        String text = new String(bytes, start, length, StandardCharsets.ISO_8859_1);
+        return new TextFileContent(Chars.wrap(text), detectedLineTerm, checksum, positionerBuilder.build(length));
+    }
+
     // test only
     static @NonNull TextFileContent normalizeCharSeq(CharSequence text, String fallBackLineSep) {
         long checksum = getCheckSum(text); // the checksum is computed on the original file
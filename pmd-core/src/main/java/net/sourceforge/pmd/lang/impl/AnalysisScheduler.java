@@ -0,0 +1,262 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * The thread pool of an analysis. It is shared by all language processors,
+ * so that the configured thread count is a limit for the whole analysis,
+ * and not for each language separately.
+ *
+ * <p>Each processor submits its files into its own {@link Lane}. Workers
+ * take the next file from the lanes in round-robin order, so that a language
+ * with many files doesn't delay the languages that were launched after it.
+ * Within a lane, files are processed in submission order.
+ *
+ * <p>If created with {@link #withVirtualThreads(int)}, files are processed
+ * on virtual threads, so that a thread waiting for I/O doesn't hold back
+ * the analysis. The CPU-heavy part of processing a file must then be
+ * bracketed by {@link #acquireCpu()} and {@link #releaseCpu()}, which
+ * limit it to the thread count.
+ *
+ * @apiNote Internal API
+ */
+@InternalApi
+public final class AnalysisScheduler implements AutoCloseable {
+
+    /**
+     * With virtual threads, the number of files that are processed
+     * concurrently per permit for the CPU-heavy phase. Files that wait
+     * for a permit have been read already, so this bounds the memory
+     * used by files whose analysis has not started yet.
+     */
+    private static final int FILES_IN_FLIGHT_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    // null if the executor uses platform threads
+    private final Semaphore cpuPermits;
+    private final Semaphore filesInFlight;
+
+    // guarded by itself
+    private final List<Queue<Runnable>> lanes = new ArrayList<>();
+    private int cursor;
+
+    /**
+     * Create a new scheduler that uses platform threads.
+     *
+     * @param threadCount Maximum number of files that are processed concurrently
+     */
+    public AnalysisScheduler(int threadCount) {
+        // asyncMode: tasks are never joined, so process them in submission order
+        this.executor = new ForkJoinPool(threadCount, new PmdThreadFactory(), null, true);
+        this.cpuPermits = null;
+        this.filesInFlight = null;
+    }
+
+    private AnalysisScheduler(ExecutorService virtualThreads, int threadCount) {
+        this.executor = virtualThreads;
+        this.cpuPermits = new Semaphore(threadCount, true);
+        this.filesInFlight = new Semaphore(threadCount * FILES_IN_FLIGHT_PER_THREAD);
+    }
+
+    /**
+     * Create a new scheduler that processes files on virtual threads.
+     * If virtual threads are not supported by the runtime, this returns
+     * a scheduler that uses platform threads, like {@link #AnalysisScheduler(int)}.
+     *
+     * @param threadCount Maximum number of files that are parsed or analysed concurrently
+     *
+     * @see #supportsVirtualThreads()
+     */
+    public static AnalysisScheduler withVirtualThreads(int threadCount) {
+        ExecutorService virtualThreads = VirtualThreads.newExecutor();
+        return virtualThreads == null ? new AnalysisScheduler(threadCount)
+                                      : new AnalysisScheduler(virtualThreads, threadCount);
+    }
+
+    /**
+     * Returns true if the runtime supports virtual threads (Java 21 and later).
+     */
+    public static boolean supportsVirtualThreads() {
+        return VirtualThreads.FACTORY != null;
+    }
+
+    /**
+     * Returns true if this scheduler runs files on virtual threads.
+     */
+    public boolean usesVirtualThreads() {
+        return cpuPermits != null;
+    }
+
+    /**
+     * Returns a new lane. Tasks submitted to different lanes are interleaved.
+     */
+    Lane newLane() {
+        Queue<Runnable> queue = new ArrayDeque<>();
+        synchronized (lanes) {
+            lanes.add(queue);
+        }
+        return new Lane(queue);
+    }
+
+    /**
+     * Waits until the current thread may start CPU-heavy work. With
+     * platform threads, this returns immediately, as the number of threads
+     * is already bounded.
+     */
+    void acquireCpu() {
+        if (cpuPermits != null) {
+            cpuPermits.acquireUninterruptibly();
+        }
+    }
+
+    /**
+     * Ends the CPU-heavy work started with {@link #acquireCpu()}.
+     */
+    void releaseCpu() {
+        if (cpuPermits != null) {
+            cpuPermits.release();
+        }
+    }
+
+    private void runNext() {
+        Runnable next = pollNext();
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * With virtual threads, a limited number of threads drain the lanes,
+     * so that we don't create one thread for each file up front.
+     */
+    private void drain() {
+        do {
+            try {
+                Runnable next;
+                while ((next = pollNext()) != null) {
+                    next.run();
+                }
+            } finally {
+                filesInFlight.release();
+            }
+            // A task may have been submitted after the loop ended but
+            // before we released the permit. Then nobody else will run it.
+        } while (hasNext() && filesInFlight.tryAcquire());
+    }
+
+    private Runnable pollNext() {
+        synchronized (lanes) {
+            for (int i = 0; i < lanes.size(); i++) {
+                cursor = (cursor + 1) % lanes.size();
+                Runnable next = lanes.get(cursor).poll();
+                if (next != null) {
+                    return next;
+                }
+            }
+            return null;
+        }
+    }
+
+    private boolean hasNext() {
+        synchronized (lanes) {
+            for (Queue<Runnable> lane : lanes) {
+                if (!lane.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Waits until all submitted tasks are done, then stops the threads.
+     */
+    @Override
+    public void close() {
+        try {
+            executor.shutdown();
+            while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
+                // still waiting
+                Thread.yield();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A queue of tasks of a single processor.
+     */
+    final class Lane {
+
+        private final Queue<Runnable> queue;
+
+        private Lane(Queue<Runnable> queue) {
+            this.queue = queue;
+        }
+
+        void execute(Runnable task) {
+            synchronized (lanes) {
+                queue.add(task);
+            }
+            if (filesInFlight == null) {
+                // Every task is paired with exactly one call to runNext,
+                // but that call may run a task of another lane.
+                executor.execute(AnalysisScheduler.this::runNext);
+            } else if (filesInFlight.tryAcquire()) {
+                executor.execute(AnalysisScheduler.this::drain);
+            }
+        }
+    }
+
+    /**
+     * Virtual threads are created reflectively, as PMD is compiled for Java 8.
+     */
+    private static final class VirtualThreads {
+
+        private static final ThreadFactory FACTORY = createFactory();
+
+        private static ThreadFactory createFactory() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "PmdVirtualThread ", 1L);
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                // before Java 21, or Java 19/20 without --enable-preview
+                return null;
+            }
+        }
+
+        static ExecutorService newExecutor() {
+            if (FACTORY == null) {
+                return null;
+            }
+            try {
+                Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) newThreadPerTaskExecutor.invoke(null, FACTORY);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                return null;
+            }
+        }
+    }
+}
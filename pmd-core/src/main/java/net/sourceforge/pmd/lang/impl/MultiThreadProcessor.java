@@ -4,14 +4,17 @@
 
 package net.sourceforge.pmd.lang.impl;
 
-import java.util.LinkedList;
+import static net.sourceforge.pmd.lang.document.InternalApiBridge.estimateSize;
+
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
+import net.sourceforge.pmd.lang.InternalApiBridge;
 import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
@@ -19,68 +22,152 @@ import net.sourceforge.pmd.util.log.PmdReporter;
 
 
 /**
+ * Processes files on a work-stealing pool. Files are submitted largest
+ * first, so that a few big files at the end of the file list don't keep
+ * one thread busy while all others are idle.
+ *
+ * <p>The pool is the {@link AnalysisScheduler} of the analysis if there
+ * is one, so that processors of different languages share the same threads.
+ * Otherwise this processor starts its own.
+ *
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
  */
 final class MultiThreadProcessor extends AbstractPMDProcessor {
-    private final ExecutorService executor;
+    private final AnalysisScheduler scheduler;
+    private final AnalysisScheduler ownScheduler;
+    private final AnalysisScheduler.Lane lane;
+    // not static, but analysis-global, so every analysis is isolated
+    private final Queue<RuleSets> ruleSetCopies = new ConcurrentLinkedQueue<>();
 
-    private final List<Future<?>> futureList;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private CountDownLatch pendingFiles = new CountDownLatch(0);
 
+    @SuppressWarnings("PMD.CloseResource") // closed in close() if it's our own
     MultiThreadProcessor(final AnalysisTask task) {
         super(task);
 
-        executor = Executors.newFixedThreadPool(task.getThreadCount(), new PmdThreadFactory());
-        futureList = new LinkedList<>();
+        AnalysisScheduler shared = InternalApiBridge.getScheduler(task);
+        if (shared == null) {
+            ownScheduler = new AnalysisScheduler(task.getThreadCount());
+            scheduler = ownScheduler;
+        } else {
+            ownScheduler = null;
+            scheduler = shared;
+        }
+        lane = scheduler.newLane();
     }
 
     @Override
     @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
     public void processFiles() {
-        // The thread-local is not static, but analysis-global
-        // This means we don't have to reset it manually, every analysis is isolated.
-        // The initial value makes a copy of the rulesets
-        final ThreadLocal<RuleSets> ruleSetCopy = ThreadLocal.withInitial(() -> {
-            RuleSets copy = new RuleSets(task.getRulesets());
-            // use a noop reporter because the copy should only contain rules that
-            // initialized properly
-            copy.initializeRules(task.getLpRegistry(), PmdReporter.quiet());
-            return copy;
-        });
-
-        for (final TextFile textFile : task.getFiles()) {
-            futureList.add(executor.submit(new PmdRunnable(textFile, task) {
+        List<TextFile> files = largestFirst(task.getFiles());
+        CountDownLatch pending = new CountDownLatch(files.size());
+        pendingFiles = pending;
+        for (final TextFile textFile : files) {
+            PmdRunnable runnable = new PmdRunnable(textFile, task) {
                 @Override
                 protected RuleSets getRulesets() {
-                    return ruleSetCopy.get();
+                    scheduler.acquireCpu();
+                    try {
+                        return borrowRulesets();
+                    } catch (RuntimeException | Error e) {
+                        scheduler.releaseCpu();
+                        throw e;
+                    }
                 }
-            }));
+
+                @Override
+                protected void releaseRulesets(RuleSets ruleSets) {
+                    ruleSetCopies.add(ruleSets);
+                    scheduler.releaseCpu();
+                }
+            };
+            lane.execute(() -> runAndRecordFailure(runnable, pending));
+        }
+    }
+
+    /**
+     * Most rules are not thread-safe, so each file that is analysed concurrently
+     * needs its own copy of the rulesets. Copies are reused for later files,
+     * so there are at most as many copies as files analysed at the same time,
+     * and not one per thread, which matters with virtual threads. Thread-safe
+     * rules, like XPath rules, are shared by all copies.
+     */
+    private RuleSets borrowRulesets() {
+        RuleSets copy = ruleSetCopies.poll();
+        if (copy == null) {
+            // use a noop reporter because the copy should only contain rules that
+            // initialized properly
+            copy = task.getRulesets().forkForConcurrentUse(task.getLpRegistry(), PmdReporter.quiet());
+        }
+        return copy;
+    }
+
+    private void runAndRecordFailure(PmdRunnable runnable, CountDownLatch pending) {
+        try {
+            if (firstFailure.get() instanceof Error) {
+                // the analysis is failing, don't start new files
+                return;
+            }
+            runnable.run();
+        } catch (Exception | Error e) {
+            firstFailure.compareAndSet(null, e);
+        } finally {
+            pending.countDown();
         }
     }
 
+    /**
+     * Sorts the files by decreasing size. Files whose size is unknown
+     * come last, and the sort is stable, so the original order is otherwise
+     * preserved.
+     */
+    @SuppressWarnings("PMD.CloseResource") // files are closed by the PMDRunnable
+    static List<TextFile> largestFirst(List<TextFile> files) {
+        List<SizedFile> sized = new ArrayList<>(files.size());
+        for (TextFile file : files) {
+            sized.add(new SizedFile(file, estimateSize(file)));
+        }
+        sized.sort(Comparator.comparingLong((SizedFile it) -> it.size).reversed());
+
+        List<TextFile> result = new ArrayList<>(sized.size());
+        for (SizedFile file : sized) {
+            result.add(file.file);
+        }
+        return result;
+    }
+
     @Override
     public void close() {
         try {
-            try {
-                for (Future<?> task : futureList) {
-                    task.get();
-                }
-            } catch (ExecutionException e) {
+            // the scheduler may be shared, so only wait for our own files
+            pendingFiles.await();
+
+            Throwable failure = firstFailure.get();
+            if (failure != null) {
                 task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
-                        e.getCause().toString(), e.getCause());
-                if (e.getCause() instanceof Error) {
-                    throw (Error) e.getCause();
+                        failure.toString(), failure);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
                 }
             }
-
-            executor.shutdown();
-            while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
-                // still waiting
-                Thread.yield();
-            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
-            executor.shutdownNow();
+            if (ownScheduler != null) {
+                ownScheduler.close();
+            }
+        }
+    }
+
+    private static final class SizedFile {
+
+        private final TextFile file;
+        private final long size;
+
+        SizedFile(TextFile file, long size) {
+            this.file = file;
+            this.size = size;
         }
     }
 }
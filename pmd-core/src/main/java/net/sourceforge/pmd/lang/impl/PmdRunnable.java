@@ -6,6 +6,8 @@ package net.sourceforge.pmd.lang.impl;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,12 +47,21 @@ abstract class PmdRunnable implements Runnable {
     }
 
     /**
-     * This is only called within the run method (when we are on the actual carrier thread).
-     * That way an implementation that uses a ThreadLocal will see the
-     * correct thread.
+     * Returns the rulesets to apply to the file. This is only called within
+     * the run method, once the file has been read and needs to be analysed.
+     * The parse and rule application happen between this call and the
+     * corresponding call to {@link #releaseRulesets(RuleSets)}, on the same thread.
      */
     protected abstract RuleSets getRulesets();
 
+    /**
+     * Called once the rulesets returned by {@link #getRulesets()} are
+     * not used anymore. Does nothing by default.
+     */
+    protected void releaseRulesets(RuleSets ruleSets) {
+        // do nothing
+    }
+
     @Override
     public void run() throws FileAnalysisException {
         TimeTracker.initThread();
@@ -58,11 +69,16 @@ abstract class PmdRunnable implements Runnable {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.FILE_PROCESSING);
              FileAnalysisListener listener = task.getListener().startFileAnalysis(textFile)) {
 
-            RuleSets ruleSets = getRulesets();
-
-            // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later
-            if (ruleSets.applies(textFile)) {
+            // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later.
+            // This only reads the file filters, so the rulesets of the task can be used on any thread.
+            if (task.getRulesets().applies(textFile)) {
                 AnalysisCache analysisCache = task.getAnalysisCache();
+                if (analysisCache.isUnmodified(textFile)) {
+                    LOG.trace("Skipping file (lang: {}) because it was not modified since it was cached: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                    // the file is not even read
+                    reportCachedRuleViolations(listener, analysisCache.getCachedViolations(textFile));
+                    return;
+                }
                 try (TextDocument textDocument = TextDocument.create(textFile);
                      FileAnalysisListener cacheListener = analysisCache.startFileAnalysis(textDocument)) {
 
@@ -73,9 +89,10 @@ abstract class PmdRunnable implements Runnable {
                         LOG.trace("Skipping file (lang: {}) because it was found in the cache: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
                         // note: no cache listener here
                         //                         vvvvvvvv
-                        reportCachedRuleViolations(listener, textDocument);
+                        reportCachedRuleViolations(listener, analysisCache.getCachedViolations(textDocument));
                     } else {
                         LOG.trace("Processing file (lang: {}): {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                        RuleSets ruleSets = getRulesets();
                         try {
                             processSource(completeListener, textDocument, ruleSets);
                         } catch (Exception | StackOverflowError | AssertionError e) {
@@ -86,6 +103,8 @@ abstract class PmdRunnable implements Runnable {
                             // The listener handles logging if needed,
                             // it may also rethrow the error, as a FileAnalysisException (which we let through below)
                             completeListener.onError(new Report.ProcessingError(e, textFile.getFileId()));
+                        } finally {
+                            releaseRulesets(ruleSets);
                         }
                     }
                 }
@@ -96,13 +115,13 @@ abstract class PmdRunnable implements Runnable {
             throw e; // bubble managed exceptions, they were already reported
         } catch (Exception e) {
             throw FileAnalysisException.wrap(textFile.getFileId(), "An unknown exception occurred", e);
+        } finally {
+            TimeTracker.finishThread();
         }
-
-        TimeTracker.finishThread();
     }
 
-    private void reportCachedRuleViolations(final FileAnalysisListener ctx, TextDocument file) {
-        for (final RuleViolation rv : task.getAnalysisCache().getCachedViolations(file)) {
+    private void reportCachedRuleViolations(final FileAnalysisListener ctx, List<RuleViolation> violations) {
+        for (final RuleViolation rv : violations) {
             ctx.onRuleViolation(rv);
         }
     }
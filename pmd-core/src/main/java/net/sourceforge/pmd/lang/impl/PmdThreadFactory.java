@@ -4,16 +4,35 @@
 
 package net.sourceforge.pmd.lang.impl;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
-class PmdThreadFactory implements ThreadFactory {
+class PmdThreadFactory implements ThreadFactory, ForkJoinWorkerThreadFactory {
 
     private final AtomicInteger counter = new AtomicInteger();
+    // The default fork-join threads use the system class loader, but the
+    // language modules may have been loaded by another one (eg in the ant task).
+    private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 
     @Override
     public Thread newThread(Runnable r) {
         return new Thread(r, "PmdThread " + counter.incrementAndGet());
     }
 
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        return new PmdWorkerThread(pool, "PmdThread " + counter.incrementAndGet(), contextClassLoader);
+    }
+
+    private static final class PmdWorkerThread extends ForkJoinWorkerThread {
+
+        PmdWorkerThread(ForkJoinPool pool, String name, ClassLoader contextClassLoader) {
+            super(pool);
+            setName(name);
+            setContextClassLoader(contextClassLoader);
+        }
+    }
 }
@@ -40,6 +40,14 @@ public final class InternalApiBridge {
         return ruleSetLoader.loadRuleSetsWithoutException(rulesetPaths);
     }
 
+    /**
+     * Returns a copy of the ruleset with the given rules. The list is
+     * used as is and should be mutable.
+     */
+    public static RuleSet withRules(RuleSet ruleSet, List<Rule> rules) {
+        return new RuleSet(ruleSet, rules);
+    }
+
     public static RuleSetLoader withReporter(RuleSetLoader ruleSetLoader, @NonNull PmdReporter reporter) {
         return ruleSetLoader.withReporter(reporter);
     }
@@ -307,6 +307,11 @@ public class RuleReference implements Rule {
         return new RuleReference(this);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return rule.isThreadSafe();
+    }
+
     /**
      * Checks whether this rule reference explicitly overrides any of the possible
      * attributes of the referenced rule.
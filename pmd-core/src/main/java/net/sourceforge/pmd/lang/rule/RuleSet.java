@@ -77,21 +77,33 @@ public class RuleSet implements ChecksumAware {
     }
 
     public RuleSet(final RuleSet rs) {
+        this(rs, deepCopies(rs.rules));
+    }
+
+    /**
+     * Copy of the given ruleset with other rules.
+     */
+    RuleSet(final RuleSet rs, List<Rule> rules) {
         checksum = rs.checksum;
         fileName = rs.fileName;
         name = rs.name;
         description = rs.description;
 
-        rules = new ArrayList<>(rs.rules.size());
-        for (final Rule rule : rs.rules) {
-            rules.add(rule.deepCopy());
-        }
+        this.rules = rules;
 
         excludePatterns = rs.excludePatterns; // we can share immutable lists of immutable elements
         includePatterns = rs.includePatterns;
         filter = rs.filter; // filters are immutable, can be shared
     }
 
+    private static List<Rule> deepCopies(List<Rule> rules) {
+        List<Rule> copies = new ArrayList<>(rules.size());
+        for (final Rule rule : rules) {
+            copies.add(rule.deepCopy());
+        }
+        return copies;
+    }
+
     /**
      * Creates a new ruleset containing a single rule. The ruleset will
      * have default description, name, and null file name.
@@ -102,6 +102,16 @@ public abstract class RuleTargetSelector extends TargetSelectorInternal {
             return index.getByName(visits);
         }
 
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StringRulechainVisits && visits.equals(((StringRulechainVisits) o).visits);
+        }
+
+        @Override
+        public int hashCode() {
+            return visits.hashCode();
+        }
+
         @Override
         public String toString() {
             return "XPathNameVisits" + visits;
@@ -6,8 +6,15 @@ package net.sourceforge.pmd.lang.rule.internal;
 
 import static net.sourceforge.pmd.lang.rule.InternalApiBridge.ruleSetApplies;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.exception.ExceptionContext;
 import org.slf4j.Logger;
@@ -20,11 +27,17 @@ import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.document.FileLocation;
 import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.InternalApiBridge;
 import net.sourceforge.pmd.reporting.Report.ProcessingError;
+import net.sourceforge.pmd.reporting.Report.SuppressedViolation;
 import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.reporting.RuleViolation;
 import net.sourceforge.pmd.util.AssertionUtil;
 import net.sourceforge.pmd.util.StringUtil;
 
@@ -57,40 +70,139 @@ public class RuleApplicator {
         applyOnIndex(idx, rules, listener);
     }
 
+    /**
+     * Returns true if the rule visits a node of the indexed tree that
+     * starts or ends on the given lines, or spans them.
+     */
+    public boolean visitsNodeOnLines(Rule rule, int beginLine, int endLine) {
+        Iterator<? extends Node> targets = rule.getTargetSelector().getVisitedNodes(idx);
+        while (targets.hasNext()) {
+            Node node = targets.next();
+            // the report location of a node may be narrower than the node
+            FileLocation location = node.getTextDocument().toLocation(node.getTextRegion());
+            if (location.getStartLine() <= endLine && beginLine <= location.getEndLine()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void applyOnIndex(TreeIndex idx, Collection<? extends Rule> rules, FileAnalysisListener listener) {
+        // XPath rules that visit the same nodes are applied together, so
+        // that all their queries run while the wrapper of a node is hot.
+        List<Rule> applicable = new ArrayList<>();
+        Map<RuleTargetSelector, List<Rule>> xpathRuleGroups = new LinkedHashMap<>();
+        Map<Rule, List<Rule>> groupOfRule = new IdentityHashMap<>();
         for (Rule rule : rules) {
             if (!ruleSetApplies(rule, currentLangVer)) {
                 continue; // No point in even trying to apply the rule
             }
-            
-            RuleContext ctx = InternalApiBridge.createRuleContext(listener, rule);
-            rule.start(ctx);
-            try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULE, rule.getName())) {
 
+            applicable.add(rule);
+            if (isXPathRule(rule)) {
+                List<Rule> group = xpathRuleGroups.computeIfAbsent(rule.getTargetSelector(), k -> new ArrayList<>());
+                group.add(rule);
+                groupOfRule.put(rule, group);
+            }
+        }
+
+        // A group is applied at the place of its first rule. The events of
+        // each rule of the group are reported at the place of the rule, so
+        // that they come in the same order as if the rules were applied one
+        // by one.
+        Map<Rule, BufferedListener> fusedEvents = new IdentityHashMap<>();
+        for (Rule rule : applicable) {
+            List<Rule> group = groupOfRule.get(rule);
+            if (group == null || group.size() == 1) {
+                applyRule(idx, rule, listener);
+            } else {
+                if (group.get(0) == rule) {
+                    applyFused(idx, group, fusedEvents);
+                }
+                fusedEvents.remove(rule).replayTo(listener);
+            }
+        }
+    }
+
+    private void applyRule(TreeIndex idx, Rule rule, FileAnalysisListener listener) {
+        RuleContext ctx = InternalApiBridge.createRuleContext(listener, rule);
+        rule.start(ctx);
+        try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULE, rule.getName())) {
+
+            int nodeCounter = 0;
+            Iterator<? extends Node> targets = rule.getTargetSelector().getVisitedNodes(idx);
+            while (targets.hasNext()) {
+                Node node = targets.next();
+                nodeCounter++;
+                applyOnNode(rule, node, ctx, listener);
+            }
+
+            rcto.close(nodeCounter);
+        } finally {
+            rule.end(ctx);
+        }
+    }
+
+    /**
+     * Applies rules that have the same target selector in a single pass
+     * over their targets. Each node is visited by all the rules before
+     * moving on to the next node. The group is timed as a whole, with
+     * the names of its rules as label. The events of each rule are kept
+     * in the given map until they can be reported in order.
+     */
+    private void applyFused(TreeIndex idx, List<Rule> rules, Map<Rule, BufferedListener> fusedEvents) {
+        List<RuleContext> contexts = new ArrayList<>(rules.size());
+        List<BufferedListener> listeners = new ArrayList<>(rules.size());
+        try {
+            for (Rule rule : rules) {
+                BufferedListener ruleListener = new BufferedListener();
+                fusedEvents.put(rule, ruleListener);
+                RuleContext ctx = InternalApiBridge.createRuleContext(ruleListener, rule);
+                rule.start(ctx);
+                contexts.add(ctx);
+                listeners.add(ruleListener);
+            }
+
+            String label = rules.stream().map(Rule::getName).collect(Collectors.joining(", "));
+            try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULE, label)) {
                 int nodeCounter = 0;
-                Iterator<? extends Node> targets = rule.getTargetSelector().getVisitedNodes(idx);
+                Iterator<? extends Node> targets = rules.get(0).getTargetSelector().getVisitedNodes(idx);
                 while (targets.hasNext()) {
                     Node node = targets.next();
-
-                    try {
-                        nodeCounter++;
-                        rule.apply(node, ctx);
-                    } catch (RuntimeException e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), true);
-                    } catch (StackOverflowError e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
-                    } catch (AssertionError e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
+                    nodeCounter++;
+                    for (int i = 0; i < rules.size(); i++) {
+                        applyOnNode(rules.get(i), node, contexts.get(i), listeners.get(i));
                     }
                 }
-                
                 rcto.close(nodeCounter);
-            } finally {
-                rule.end(ctx);
             }
+        } finally {
+            for (int i = 0; i < contexts.size(); i++) {
+                rules.get(i).end(contexts.get(i));
+            }
+        }
+    }
+
+    private void applyOnNode(Rule rule, Node node, RuleContext ctx, FileAnalysisListener listener) {
+        try {
+            rule.apply(node, ctx);
+        } catch (RuntimeException e) {
+            reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), true);
+        } catch (StackOverflowError e) {
+            reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
+        } catch (AssertionError e) {
+            reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
         }
     }
 
+    private static boolean isXPathRule(Rule rule) {
+        Rule target = rule;
+        while (target instanceof RuleReference) {
+            target = ((RuleReference) target).getRule();
+        }
+        return target instanceof XPathRule;
+    }
+
 
     private <E extends Throwable> void reportOrRethrow(FileAnalysisListener listener, Rule rule, Node node, E e, boolean reportAndDontThrow) throws E {
         if (e instanceof ExceptionContext) {
@@ -117,6 +229,36 @@ public class RuleApplicator {
     }
 
 
+    /**
+     * Keeps the events of a rule of a fused group, until they are
+     * reported to the listener of the file.
+     */
+    private static final class BufferedListener implements FileAnalysisListener {
+
+        private final List<Consumer<FileAnalysisListener>> events = new ArrayList<>();
+
+        @Override
+        public void onRuleViolation(RuleViolation violation) {
+            events.add(listener -> listener.onRuleViolation(violation));
+        }
+
+        @Override
+        public void onSuppressedRuleViolation(SuppressedViolation violation) {
+            events.add(listener -> listener.onSuppressedRuleViolation(violation));
+        }
+
+        @Override
+        public void onError(ProcessingError error) {
+            events.add(listener -> listener.onError(error));
+        }
+
+        void replayTo(FileAnalysisListener listener) {
+            for (Consumer<FileAnalysisListener> event : events) {
+                event.accept(listener);
+            }
+        }
+    }
+
     private void indexTree(Node top, TreeIndex idx) {
         idx.indexNode(top);
         for (Node child : top.children()) {
@@ -8,9 +8,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
@@ -34,6 +39,7 @@ public class RuleSets {
     private final List<RuleSet> ruleSets;
 
     private RuleApplicator ruleApplicator;
+    private boolean initialized;
 
     /**
      * Copy constructor. Deep copies RuleSets.
@@ -61,20 +67,70 @@ public class RuleSets {
         this.ruleSets = Collections.singletonList(ruleSet);
     }
 
-    public void initializeRules(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+    /**
+     * Initialize the rules. Rules that fail to initialize are removed and
+     * reported. This only has an effect the first time it is called, so
+     * that rules that are already shared with {@linkplain #forkForConcurrentUse forks}
+     * are not modified again.
+     */
+    public synchronized void initializeRules(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
         // this is abusing the mutability of RuleSet, will go away eventually.
         for (RuleSet rset : ruleSets) {
             for (Iterator<Rule> iterator = rset.getRules().iterator(); iterator.hasNext();) {
                 Rule rule = iterator.next();
-                try {
-                    rule.initialize(lpReg.getProcessor(rule.getLanguage()));
-                } catch (Exception e) {
-                    reporter.errorEx(
-                        "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
+                if (!initializeRule(rule, lpReg, reporter)) {
                     iterator.remove();
+                } else if (rule.isThreadSafe()) {
+                    // build it now, not concurrently in each fork
+                    rule.getTargetSelector();
+                }
+            }
+        }
+    }
+
+    private static boolean initializeRule(Rule rule, LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        try {
+            rule.initialize(lpReg.getProcessor(rule.getLanguage()));
+            return true;
+        } catch (Exception e) {
+            reporter.errorEx(
+                "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns a copy of these rulesets that can be used on another thread
+     * than this instance. Rules that are {@linkplain Rule#isThreadSafe() thread-safe}
+     * are shared with this instance, the other rules are deep copied and
+     * initialized. Copies that fail to initialize are dropped and reported.
+     *
+     * <p>This instance must have been {@linkplain #initializeRules initialized},
+     * and may not be modified anymore.
+     */
+    public RuleSets forkForConcurrentUse(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        List<RuleSet> rsets = new ArrayList<>(ruleSets.size());
+        for (RuleSet rs : ruleSets) {
+            List<Rule> rules = new ArrayList<>(rs.getRules().size());
+            for (Rule rule : rs.getRules()) {
+                if (rule.isThreadSafe()) {
+                    rules.add(rule);
+                } else {
+                    Rule copy = rule.deepCopy();
+                    if (initializeRule(copy, lpReg, reporter)) {
+                        rules.add(copy);
+                    }
                 }
             }
+            rsets.add(InternalApiBridge.withRules(rs, rules));
         }
+        RuleSets fork = new RuleSets(rsets);
+        fork.initialized = true;
+        return fork;
     }
 
     private RuleApplicator prepareApplicator() {
@@ -139,6 +195,37 @@ public class RuleSets {
      * @param listener Listener that will handle events while analysing.
      */
     public void apply(RootNode root, FileAnalysisListener listener) {
+        apply(root, listener, null);
+    }
+
+    /**
+     * Applies the rules like {@link #apply(RootNode, FileAnalysisListener)},
+     * except the rules that visit no node on the given lines and that do
+     * not match the given predicate. This is used to analyse a file again
+     * after some of its lines were edited.
+     *
+     * @param root        The root of the edited file
+     * @param beginLine   First edited line
+     * @param endLine     Last edited line, in the edited file
+     * @param alwaysApply Rules that are applied even if they visit no node on the edited lines
+     * @param listener    Listener that will handle events while analysing
+     *
+     * @return The rules that were skipped
+     */
+    public Set<Rule> applyOnLines(RootNode root, int beginLine, int endLine,
+                                  Predicate<? super Rule> alwaysApply, FileAnalysisListener listener) {
+        Set<Rule> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        apply(root, listener, rule -> {
+            if (alwaysApply.test(rule) || ruleApplicator.visitsNodeOnLines(rule, beginLine, endLine)) {
+                return true;
+            }
+            skipped.add(rule);
+            return false;
+        });
+        return skipped;
+    }
+
+    private void apply(RootNode root, FileAnalysisListener listener, @Nullable Predicate<? super Rule> filter) {
         if (ruleApplicator == null) {
             // initialize here instead of ctor, because some rules properties
             // are set after creating the ruleset, and jaxen xpath queries
@@ -152,7 +239,11 @@ public class RuleSets {
 
         for (RuleSet ruleSet : ruleSets) {
             if (InternalApiBridge.ruleSetApplies(ruleSet, root.getTextDocument().getFileId())) {
-                ruleApplicator.apply(ruleSet.getRules(), listener);
+                Collection<Rule> rules = ruleSet.getRules();
+                if (filter != null) {
+                    rules = rules.stream().filter(filter).collect(Collectors.toList());
+                }
+                ruleApplicator.apply(rules, listener);
             }
         }
     }
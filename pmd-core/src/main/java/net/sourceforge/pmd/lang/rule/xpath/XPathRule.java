@@ -84,6 +84,15 @@ public final class XPathRule extends AbstractRule {
         return rule;
     }
 
+    /**
+     * XPath rules are thread-safe once initialized: the compiled query is
+     * immutable, and the state of an evaluation is local to that evaluation.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * Returns the XPath expression that implements this rule.
      */
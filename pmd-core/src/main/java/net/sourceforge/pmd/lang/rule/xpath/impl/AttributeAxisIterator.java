@@ -20,12 +20,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.impl.AbstractNode;
@@ -47,7 +49,7 @@ import net.sourceforge.pmd.util.AssertionUtil;
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
     /** Caches the precomputed attribute accessors of a given class. */
-    private static final ConcurrentMap<Class<?>, List<MethodWrapper>> METHOD_CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, AttributeTable> METHOD_CACHE = new ConcurrentHashMap<>();
 
     /* Constants used to determine which methods are accessors */
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES
@@ -72,8 +74,9 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
                 "getScope");
 
     /* Iteration variables */
-    private final Iterator<MethodWrapper> iterator;
+    private final AttributeTable table;
     private final Node node;
+    private int index;
 
 
     /**
@@ -83,20 +86,35 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      */
     public AttributeAxisIterator(@NonNull Node contextNode) {
         this.node = contextNode;
-        this.iterator = METHOD_CACHE.computeIfAbsent(contextNode.getClass(), this::getWrappersForClass).iterator();
+        this.table = METHOD_CACHE.computeIfAbsent(contextNode.getClass(), this::getTableForClass);
     }
 
-    private List<MethodWrapper> getWrappersForClass(Class<?> nodeClass) {
-        return Arrays.stream(nodeClass.getMethods())
-                     .filter(m -> isAttributeAccessor(nodeClass, m))
-                     .map(m -> {
-                         try {
-                             return new MethodWrapper(m, nodeClass);
-                         } catch (ReflectiveOperationException e) {
-                             throw AssertionUtil.shouldNotReachHere("Method '" + m + "' should be accessible, but: " + e, e);
-                         }
-                     })
-                     .collect(Collectors.toList());
+    static AttributeTable getAttributeTable(Node node) {
+        AttributeTable table = METHOD_CACHE.get(node.getClass());
+        return table != null ? table : new AttributeAxisIterator(node).table;
+    }
+
+    private AttributeTable getTableForClass(Class<?> nodeClass) {
+        List<MethodWrapper> wrappers =
+            Arrays.stream(nodeClass.getMethods())
+                  .filter(m -> isAttributeAccessor(nodeClass, m))
+                  .map(m -> {
+                      try {
+                          return new MethodWrapper(m, nodeClass);
+                      } catch (ReflectiveOperationException e) {
+                          throw AssertionUtil.shouldNotReachHere("Method '" + m + "' should be accessible, but: " + e, e);
+                      }
+                  })
+                  .collect(Collectors.toList());
+        return new AttributeTable(wrappers, usesDefaultAttributes(nodeClass));
+    }
+
+    private static boolean usesDefaultAttributes(Class<?> nodeClass) {
+        try {
+            return nodeClass.getMethod("getXPathAttributesIterator").getDeclaringClass() == Node.class;
+        } catch (NoSuchMethodException e) {
+            throw AssertionUtil.shouldNotReachHere("Node class '" + nodeClass + "' should implement Node", e);
+        }
     }
 
     /**
@@ -185,14 +203,16 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
 
     @Override
     public Attribute next() {
-        MethodWrapper m = iterator.next();
-        return new Attribute(node, m.name, m.methodHandle, m.method);
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return table.getAttribute(node, index++);
     }
 
 
     @Override
     public boolean hasNext() {
-        return iterator.hasNext();
+        return index < table.size();
     }
 
 
@@ -202,10 +222,16 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      * the name of the attribute for each attribute (it's only done
      * once and put inside the {@link #METHOD_CACHE}).
      */
-    private static class MethodWrapper {
+    static class MethodWrapper {
         static final Lookup LOOKUP = MethodHandles.publicLookup();
         private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Node.class);
+        private static final MethodType BOOLEAN_GETTER_TYPE = MethodType.methodType(boolean.class, Node.class);
+        private static final MethodType LONG_GETTER_TYPE = MethodType.methodType(long.class, Node.class);
         public final MethodHandle methodHandle;
+        /** Handle that doesn't box the value, null if the getter doesn't return a boolean. */
+        public final @Nullable MethodHandle booleanHandle;
+        /** Handle that doesn't box the value, null if the getter doesn't return an int or a long. */
+        public final @Nullable MethodHandle longHandle;
         public final Method method;
         public final String name;
 
@@ -214,15 +240,21 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
             this.method = m;
             this.name = truncateMethodName(m.getName());
 
+            MethodHandle handle;
             if (!Modifier.isPublic(m.getDeclaringClass().getModifiers())) {
                 // This is a public method of a non-public class.
                 // To call it from reflection we need to call it via invokevirtual,
                 // whereas the default handle would use invokespecial.
                 MethodType methodType = MethodType.methodType(m.getReturnType(), emptyList());
-                this.methodHandle = MethodWrapper.LOOKUP.findVirtual(nodeClass, m.getName(), methodType).asType(GETTER_TYPE);
+                handle = MethodWrapper.LOOKUP.findVirtual(nodeClass, m.getName(), methodType);
             } else {
-                this.methodHandle = LOOKUP.unreflect(m).asType(GETTER_TYPE);
+                handle = LOOKUP.unreflect(m);
             }
+            this.methodHandle = handle.asType(GETTER_TYPE);
+
+            Class<?> returnType = m.getReturnType();
+            this.booleanHandle = returnType == boolean.class ? handle.asType(BOOLEAN_GETTER_TYPE) : null;
+            this.longHandle = returnType == int.class || returnType == long.class ? handle.asType(LONG_GETTER_TYPE) : null;
         }
 
 
@@ -0,0 +1,158 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.lang.rule.xpath.DeprecatedAttribute;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator.MethodWrapper;
+
+/**
+ * The XPath attributes of a node class, as they are enumerated by
+ * {@link AttributeAxisIterator}. The attributes are addressed by their
+ * index in that enumeration, so that an attribute can be fetched by
+ * name without creating the other attributes of the node. Tables
+ * are computed once per node class and shared by all its instances.
+ *
+ * @since 7.3.0
+ */
+public final class AttributeTable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AttributeTable.class);
+
+    private final List<MethodWrapper> accessors;
+    private final Map<String, Integer> indices;
+    private final boolean[] deprecated;
+    private final boolean isDefault;
+
+    AttributeTable(List<MethodWrapper> accessors, boolean isDefault) {
+        this.accessors = accessors;
+        this.isDefault = isDefault;
+        this.indices = new HashMap<>();
+        this.deprecated = new boolean[accessors.size()];
+        for (int i = 0; i < accessors.size(); i++) {
+            MethodWrapper accessor = accessors.get(i);
+            // if several accessors have the same name, the last one wins
+            indices.put(accessor.name, i);
+            deprecated[i] = accessor.method.isAnnotationPresent(DeprecatedAttribute.class)
+                || accessor.method.isAnnotationPresent(Deprecated.class);
+        }
+    }
+
+    /**
+     * Returns the attribute table of the given node, or null if the
+     * node doesn't use the default attributes, that is, if it overrides
+     * {@link Node#getXPathAttributesIterator()}.
+     */
+    public static @Nullable AttributeTable forNode(@NonNull Node node) {
+        AttributeTable table = AttributeAxisIterator.getAttributeTable(node);
+        return table.isDefault ? table : null;
+    }
+
+    /** Returns the number of attributes. */
+    public int size() {
+        return accessors.size();
+    }
+
+    /**
+     * Returns the index of the attribute with the given name, or -1
+     * if there is none.
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /** Returns the name of the attribute at the given index. */
+    public String getName(int index) {
+        return accessors.get(index).name;
+    }
+
+    /** Returns the type of the attribute at the given index, that is, the return type of its getter. */
+    public Class<?> getType(int index) {
+        return accessors.get(index).method.getReturnType();
+    }
+
+    /**
+     * Returns whether the attribute at the given index is deprecated,
+     * see {@link Attribute#isDeprecated()}.
+     */
+    public boolean isDeprecated(int index) {
+        return deprecated[index];
+    }
+
+    /**
+     * Returns the attribute at the given index for the given node.
+     * The node must be an instance of the class this table was built
+     * for. The value of the attribute is fetched lazily.
+     */
+    public Attribute getAttribute(@NonNull Node node, int index) {
+        MethodWrapper accessor = accessors.get(index);
+        return new Attribute(node, accessor.name, accessor.methodHandle, accessor.method);
+    }
+
+    /**
+     * Returns the value of the attribute at the given index for the given
+     * node, like {@link Attribute#getValue()}, without creating an attribute.
+     * The getter is called each time. If it throws, this returns null,
+     * like {@link Attribute#getValue()}.
+     */
+    public @Nullable Object getValue(@NonNull Node node, int index) {
+        try {
+            return accessors.get(index).methodHandle.invokeExact(node);
+        } catch (Throwable e) { // NOPMD
+            LOG.debug("Exception while fetching attribute value", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value of the attribute at the given index for the given
+     * node, if its type is {@code boolean}. The value is not boxed.
+     *
+     * @throws IllegalArgumentException If the attribute is not a boolean
+     * @throws IllegalStateException    If the getter throws
+     */
+    public boolean getBooleanValue(@NonNull Node node, int index) {
+        MethodHandle handle = accessors.get(index).booleanHandle;
+        if (handle == null) {
+            throw new IllegalArgumentException("Attribute " + getName(index) + " is a " + getType(index));
+        }
+        try {
+            return (boolean) handle.invokeExact(node);
+        } catch (Throwable e) { // NOPMD
+            throw new IllegalStateException("Exception while fetching attribute " + getName(index), e);
+        }
+    }
+
+    /**
+     * Returns the value of the attribute at the given index for the given
+     * node, if its type is {@code int} or {@code long}. The value is not boxed.
+     *
+     * @throws IllegalArgumentException If the attribute is not an int or a long
+     * @throws IllegalStateException    If the getter throws
+     */
+    public long getLongValue(@NonNull Node node, int index) {
+        MethodHandle handle = accessors.get(index).longHandle;
+        if (handle == null) {
+            throw new IllegalArgumentException("Attribute " + getName(index) + " is a " + getType(index));
+        }
+        try {
+            return (long) handle.invokeExact(node);
+        } catch (Throwable e) { // NOPMD
+            throw new IllegalStateException("Exception while fetching attribute " + getName(index), e);
+        }
+    }
+}
@@ -5,10 +5,8 @@
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.mutable.MutableInt;
@@ -19,7 +17,9 @@ import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
 import net.sourceforge.pmd.lang.rule.xpath.CommentNode;
 import net.sourceforge.pmd.lang.rule.xpath.TextNode;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeTable;
 import net.sourceforge.pmd.util.CollectionUtil;
+import net.sourceforge.pmd.util.IteratorUtil;
 
 import net.sf.saxon.Configuration;
 import net.sf.saxon.om.NamespaceUri;
@@ -46,8 +46,18 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
     private final int id;
 
     private final List<AstElementNode> children;
-    private @Nullable Map<String, AstAttributeNode> attributes;
-    private @Nullable Map<String, Attribute> lightAttributes;
+    /** Null if the node overrides {@link Node#getXPathAttributesIterator()}. */
+    private @Nullable AttributeTable attributeTable;
+    /** The attributes of the node if it has no attribute table. */
+    private @Nullable List<Attribute> customAttributes;
+    /**
+     * The attributes, created lazily, by attribute index. An attribute
+     * caches its value, so the getter of an attribute is called at most
+     * once per node.
+     */
+    private Attribute @Nullable [] attributeValues;
+    /** The attribute nodes, created lazily, by attribute index. */
+    private AstAttributeNode @Nullable [] attributes;
 
 
     AstElementNode(AstTreeInfo document,
@@ -60,6 +70,7 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
         this.treeInfo = document;
         this.wrappedNode = wrappedNode;
         this.id = idGenerator.getAndIncrement();
+        document.registerWrapper(this);
 
         this.children = new ArrayList<>(wrappedNode.getNumChildren());
 
@@ -78,33 +89,53 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
         return Type.ELEMENT;
     }
 
-    public Map<String, AstAttributeNode> makeAttributes(Node wrappedNode) {
-        Map<String, AstAttributeNode> atts = new HashMap<>();
-        Iterator<Attribute> it = wrappedNode.getXPathAttributesIterator();
-
-        int attrIdx = 0;
-        while (it.hasNext()) {
-            Attribute next = it.next();
-            atts.put(next.getName(), new AstAttributeNode(this, next, attrIdx++));
+    private int getAttributeCount() {
+        if (attributes == null) {
+            attributeTable = AttributeTable.forNode(wrappedNode);
+            if (attributeTable == null) {
+                customAttributes = IteratorUtil.toList(wrappedNode.getXPathAttributesIterator());
+            }
+            int count = attributeTable != null ? attributeTable.size() : customAttributes.size();
+            attributeValues = new Attribute[count];
+            attributes = new AstAttributeNode[count];
         }
+        return attributes.length;
+    }
 
-        return atts;
+    /**
+     * Returns the index of the attribute with the given name, or -1.
+     * If several attributes have the same name, the last one wins.
+     */
+    private int indexOfAttribute(String name) {
+        getAttributeCount();
+        if (attributeTable != null) {
+            return attributeTable.indexOf(name);
+        }
+        for (int i = customAttributes.size() - 1; i >= 0; i--) {
+            if (customAttributes.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    public Map<String, AstAttributeNode> getAttributes() {
-        if (attributes == null) {
-            attributes = makeAttributes(getUnderlyingNode());
+    private Attribute getAttribute(int index) {
+        Attribute attribute = attributeValues[index];
+        if (attribute == null) {
+            attribute = attributeTable != null ? attributeTable.getAttribute(wrappedNode, index)
+                                               : customAttributes.get(index);
+            attributeValues[index] = attribute;
         }
-        return attributes;
+        return attribute;
     }
 
-    public Map<String, Attribute> getLightAttributes() {
-        if (lightAttributes == null) {
-            lightAttributes = new HashMap<>();
-            getUnderlyingNode().getXPathAttributesIterator()
-                               .forEachRemaining(it -> lightAttributes.put(it.getName(), it));
+    private AstAttributeNode getAttributeNode(int index) {
+        AstAttributeNode node = attributes[index];
+        if (node == null) {
+            node = new AstAttributeNode(this, getAttribute(index), index);
+            attributes[index] = node;
         }
-        return lightAttributes;
+        return node;
     }
 
     @Override
@@ -147,11 +178,19 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
     @Override
     protected AxisIterator iterateAttributes(NodeTest predicate) {
         if (predicate instanceof NameTest) {
-            String local = ((NameTest) predicate).getLocalPart();
-            return SingleNodeIterator.makeIterator(getAttributes().get(local));
+            int index = indexOfAttribute(((NameTest) predicate).getLocalPart());
+            return index < 0 ? EmptyIterator.ofNodes()
+                             : SingleNodeIterator.makeIterator(getAttributeNode(index));
         }
 
-        return filter(predicate, new IteratorAdapter(getAttributes().values().iterator()));
+        List<AstAttributeNode> attributeNodes = new ArrayList<>(getAttributeCount());
+        for (int i = 0; i < attributes.length; i++) {
+            Attribute attribute = getAttribute(i);
+            if (indexOfAttribute(attribute.getName()) == i) {
+                attributeNodes.add(getAttributeNode(i));
+            }
+        }
+        return filter(predicate, new IteratorAdapter(attributeNodes.iterator()));
     }
 
     @Override
@@ -174,8 +213,9 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
 
     @Override
     public String getAttributeValue(NamespaceUri uri, String local) {
-        Attribute attribute = getLightAttributes().get(local);
-        if (attribute != null) {
+        int index = indexOfAttribute(local);
+        if (index >= 0) {
+            Attribute attribute = getAttribute(index);
             getTreeInfo().getLogger().recordUsageOf(attribute);
             return attribute.getStringValue();
         }
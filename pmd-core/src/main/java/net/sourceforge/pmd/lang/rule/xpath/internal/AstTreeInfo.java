@@ -4,11 +4,8 @@
 
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 
@@ -25,19 +22,12 @@ import net.sf.saxon.om.GenericTreeInfo;
 public final class AstTreeInfo extends GenericTreeInfo {
 
     private DeprecatedAttrLogger logger;
-    private final Map<Node, AstElementNode> wrapperCache = new LinkedHashMap<Node, AstElementNode>() {
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            /*
-            hit ratio depending on cache size:
-            512: 61%
-            1024: 75%
-            2048: 82%
-            unbounded: 85%
-             */
-            return size() > 1024;
-        }
-    };
+    /**
+     * Maps each node of the tree to its wrapper. This is filled while
+     * the wrappers are built, so it is complete and never changes
+     * afterwards. This is an identity map, nodes may override equals.
+     */
+    private final Map<Node, AstElementNode> wrappers = new IdentityHashMap<>();
 
     /**
      * Builds an AstDocument, with the given node as the root.
@@ -53,48 +43,22 @@ public final class AstTreeInfo extends GenericTreeInfo {
         setRootNode(new AstDocumentNode(this, idGenerator, node, configuration));
     }
 
+    /**
+     * Returns the wrapper for the given node. For the {@link RootNode},
+     * this is the element child of the document node.
+     *
+     * @throws IllegalArgumentException If the node is not part of this tree
+     */
     public AstElementNode findWrapperFor(Node node) {
-        AstElementNode element = wrapperCache.get(node);
+        AstElementNode element = wrappers.get(node);
         if (element == null) {
-            element = findWrapperImpl(node);
-            wrapperCache.put(node, element);
-            assert element.getUnderlyingNode() == node : "Incorrect wrapper " + element + " for " + node;
+            throw new IllegalArgumentException("Node is not part of this tree " + node);
         }
         return element;
     }
 
-    // for the RootNode, this returns the document node
-    private AstElementNode findWrapperImpl(Node node) {
-        // find the closest cached ancestor
-        AstElementNode cur = getRootNode().getRootElement();
-        List<Node> ancestors = new ArrayList<>();
-        for (Node ancestor : node.ancestorsOrSelf()) {
-            AstElementNode wrappedAncestor = wrapperCache.get(ancestor);
-            ancestors.add(ancestor);
-            if (wrappedAncestor != null) {
-                cur = wrappedAncestor;
-                break;
-            }
-        }
-
-        // then go down the tree from that ancestor
-
-        // note we skip the first, who is the topmost ancestor
-        for (int i = ancestors.size() - 2; i >= 0; i--) {
-            Node ancestor = ancestors.get(i);
-            int idx = ancestor.getIndexInParent();
-            if (idx >= cur.getChildren().size()) {
-                throw new IllegalArgumentException("Node is not part of this tree " + node);
-            }
-
-            cur = cur.getChildren().get(idx);
-            wrapperCache.put(ancestor, cur);
-        }
-        if (cur.getUnderlyingNode() != node) {
-            // may happen with the root
-            throw new IllegalArgumentException("Node is not part of this tree " + node);
-        }
-        return cur;
+    void registerWrapper(AstElementNode element) {
+        wrappers.put(element.getUnderlyingNode(), element);
     }
 
     /**
@@ -90,7 +90,7 @@ public class SaxonExtensionFunctionDefinitionAdapter extends ExtensionFunctionDe
     @Override
     public ExtensionFunctionCall makeCallExpression() {
         XPathFunctionDefinition.FunctionCall call = definition.makeCallExpression();
-        return new ExtensionFunctionCall() {
+        return new PmdFunctionCall(call) {
             @Override
             public Expression rewrite(StaticContext context, Expression[] arguments) throws XPathException {
                 Object[] convertedArguments = new Object[definition.getArgumentTypes().length];
@@ -169,4 +169,30 @@ public class SaxonExtensionFunctionDefinitionAdapter extends ExtensionFunctionDe
             }
         };
     }
+
+    /**
+     * The Saxon call of a PMD function. This exposes the underlying
+     * {@link XPathFunctionDefinition.FunctionCall}, so that calls can be
+     * evaluated directly by {@link XPathCompiler}.
+     */
+    abstract class PmdFunctionCall extends ExtensionFunctionCall {
+
+        private final XPathFunctionDefinition.FunctionCall call;
+
+        PmdFunctionCall(XPathFunctionDefinition.FunctionCall call) {
+            this.call = call;
+        }
+
+        XPathFunctionDefinition getFunctionDefinition() {
+            return definition;
+        }
+
+        /**
+         * Returns the underlying call. It has been initialized with the
+         * literal arguments of the call site.
+         */
+        XPathFunctionDefinition.FunctionCall getCall() {
+            return call;
+        }
+    }
 }
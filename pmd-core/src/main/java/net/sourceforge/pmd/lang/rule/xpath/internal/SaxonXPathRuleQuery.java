@@ -15,6 +15,7 @@ import org.apache.commons.lang3.exception.ContextedRuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.rule.xpath.PmdXPathException;
@@ -75,6 +76,12 @@ public class SaxonXPathRuleQuery {
      */
     Map<String, List<Expression>> nodeNameToXPaths = new HashMap<>();
 
+    /**
+     * Contains for each nodeName the compiled form of its expressions,
+     * if they could all be compiled. See {@link XPathCompiler}.
+     */
+    Map<String, List<XPathCompiler.NodeQuery>> nodeNameToCompiledXPaths = new HashMap<>();
+
     /**
      * Representation of an XPath query, created at {@link #initialize()} using {@link #xpathExpr}.
      */
@@ -112,6 +119,34 @@ public class SaxonXPathRuleQuery {
 
 
     public List<Node> evaluate(final Node node) {
+        final List<XPathCompiler.NodeQuery> compiledQueries = getCompiledQueriesForLocalNameOrDefault(node.getXPathNodeName());
+        if (compiledQueries != null) {
+            try {
+                return evaluateCompiled(compiledQueries, node);
+            } catch (XPathCompiler.FallbackException ignored) {
+                // the node is evaluated with Saxon
+            }
+        }
+        return evaluateWithSaxon(node);
+    }
+
+    private List<Node> evaluateCompiled(List<XPathCompiler.NodeQuery> queries, Node node) {
+        final List<Node> sortedRes;
+        if (queries.size() == 1) {
+            // the results of a query are distinct
+            sortedRes = new ArrayList<>(queries.get(0).evaluate(node).toList());
+        } else {
+            final Set<Node> results = new LinkedHashSet<>();
+            for (XPathCompiler.NodeQuery query : queries) {
+                query.evaluate(node).forEach(results::add);
+            }
+            sortedRes = new ArrayList<>(results);
+        }
+        sortedRes.sort(RuleChainAnalyzer.documentOrderComparator());
+        return sortedRes;
+    }
+
+    List<Node> evaluateWithSaxon(final Node node) {
         final AstTreeInfo documentNode = getDocumentNodeForRootNode(node);
         documentNode.setAttrCtx(attrCtx);
         try {
@@ -161,6 +196,13 @@ public class SaxonXPathRuleQuery {
         return nodeNameToXPaths.get(AST_ROOT);
     }
 
+    private List<XPathCompiler.NodeQuery> getCompiledQueriesForLocalNameOrDefault(String nodeName) {
+        if (nodeNameToXPaths.containsKey(nodeName)) {
+            return nodeNameToCompiledXPaths.get(nodeName);
+        }
+        return nodeNameToCompiledXPaths.get(AST_ROOT);
+    }
+
     // test only
     Expression getFallbackExpr() {
         return nodeNameToXPaths.get(SaxonXPathRuleQuery.AST_ROOT).get(0);
@@ -213,6 +255,9 @@ public class SaxonXPathRuleQuery {
 
         xpathExpression = xpathEvaluator.createExpression(xpathExpr);
         analyzeXPathForRuleChain(xpathEvaluator);
+        if (!SystemProps.isXPathSaxonOnly()) {
+            compileExpressions();
+        }
 
     }
 
@@ -254,6 +299,22 @@ public class SaxonXPathRuleQuery {
         addExpressionForNode(AST_ROOT, xpathExpression.getInternalExpression());
     }
 
+    private void compileExpressions() {
+        for (Map.Entry<String, List<Expression>> entry : nodeNameToXPaths.entrySet()) {
+            List<XPathCompiler.NodeQuery> compiled = new ArrayList<>(entry.getValue().size());
+            for (Expression expression : entry.getValue()) {
+                XPathCompiler.NodeQuery query = XPathCompiler.compile(expression, attrCtx);
+                if (query == null) {
+                    break;
+                }
+                compiled.add(query);
+            }
+            if (compiled.size() == entry.getValue().size()) {
+                nodeNameToCompiledXPaths.put(entry.getKey(), compiled);
+            }
+        }
+    }
+
     public static NamePool getNamePool() {
         return NAME_POOL;
     }
@@ -0,0 +1,959 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeStream;
+import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.lang.rule.xpath.CommentNode;
+import net.sourceforge.pmd.lang.rule.xpath.TextNode;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeTable;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathFunctionDefinition;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathFunctionException;
+
+import net.sf.saxon.expr.AndExpression;
+import net.sf.saxon.expr.AtomicSequenceConverter;
+import net.sf.saxon.expr.Atomizer;
+import net.sf.saxon.expr.AxisExpression;
+import net.sf.saxon.expr.CardinalityChecker;
+import net.sf.saxon.expr.CompareToIntegerConstant;
+import net.sf.saxon.expr.CompareToStringConstant;
+import net.sf.saxon.expr.ContextItemExpression;
+import net.sf.saxon.expr.Expression;
+import net.sf.saxon.expr.FilterExpression;
+import net.sf.saxon.expr.FirstItemExpression;
+import net.sf.saxon.expr.GeneralComparison20;
+import net.sf.saxon.expr.ItemChecker;
+import net.sf.saxon.expr.Literal;
+import net.sf.saxon.expr.OrExpression;
+import net.sf.saxon.expr.RootExpression;
+import net.sf.saxon.expr.SingletonAtomizer;
+import net.sf.saxon.expr.SlashExpression;
+import net.sf.saxon.expr.StringLiteral;
+import net.sf.saxon.expr.SubscriptExpression;
+import net.sf.saxon.expr.SystemFunctionCall;
+import net.sf.saxon.expr.ValueComparison;
+import net.sf.saxon.expr.VennExpression;
+import net.sf.saxon.expr.parser.Token;
+import net.sf.saxon.expr.sort.DocumentSorter;
+import net.sf.saxon.functions.IntegratedFunctionCall;
+import net.sf.saxon.lib.ExtensionFunctionCall;
+import net.sf.saxon.om.AxisInfo;
+import net.sf.saxon.om.GroundedValue;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.NamespaceUri;
+import net.sf.saxon.pattern.AnyNodeTest;
+import net.sf.saxon.pattern.CombinedNodeTest;
+import net.sf.saxon.pattern.MultipleNodeKindTest;
+import net.sf.saxon.pattern.NameTest;
+import net.sf.saxon.pattern.NodeKindTest;
+import net.sf.saxon.pattern.NodeTest;
+import net.sf.saxon.type.BuiltInAtomicType;
+import net.sf.saxon.type.Type;
+import net.sf.saxon.type.UType;
+import net.sf.saxon.value.BooleanValue;
+import net.sf.saxon.value.Cardinality;
+import net.sf.saxon.value.Int64Value;
+import net.sf.saxon.value.StringValue;
+
+/**
+ * Compiles the expressions Saxon built for an XPath rule into functions
+ * that evaluate directly on {@link Node}s, using {@link NodeStream}s. This
+ * skips building the Saxon wrapper of the tree, and the dynamic dispatch
+ * of Saxon's evaluation, for most rules.
+ *
+ * <p>Only a subset of XPath is supported: axis steps on the element axes,
+ * name tests, filters, comparisons between attributes, literals and
+ * properties, the functions {@code not}, {@code boolean}, {@code exists},
+ * {@code empty}, {@code count}, {@code starts-with}, {@code ends-with},
+ * {@code contains}, and the functions of the {@link XPathFunctionDefinition}s
+ * that take only string literal arguments. Other expressions are not
+ * compiled, and are evaluated with Saxon.
+ *
+ * <p>Some cases depend on values that are only known during evaluation,
+ * eg the type of an attribute value, or whether a step reaches the
+ * document node. A compiled query throws a {@link FallbackException} in
+ * these cases, then the node is evaluated with Saxon, which is the
+ * reference for the result, and for error reporting.
+ */
+final class XPathCompiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(XPathCompiler.class);
+    private static final List<Object> TRUE = Collections.singletonList(Boolean.TRUE);
+    private static final List<Object> FALSE = Collections.singletonList(Boolean.FALSE);
+
+    private final DeprecatedAttrLogger attrCtx;
+
+    private XPathCompiler(DeprecatedAttrLogger attrCtx) {
+        this.attrCtx = attrCtx;
+    }
+
+    /**
+     * Compiles the given expression, which must return nodes. Returns
+     * null if the expression is not in the supported subset.
+     *
+     * @param expr    An expression of the query
+     * @param attrCtx Logger for the attributes used by the query
+     */
+    static @Nullable NodeQuery compile(Expression expr, DeprecatedAttrLogger attrCtx) {
+        try {
+            return new XPathCompiler(attrCtx).compileNodes(expr);
+        } catch (UnsupportedExpressionException e) {
+            LOG.debug("Expression {} is not compiled, unsupported: {}", expr, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A compiled expression that returns nodes. The nodes are distinct,
+     * but not necessarily in document order.
+     */
+    @FunctionalInterface
+    interface NodeQuery {
+
+        /**
+         * Evaluates the expression with the given context node.
+         *
+         * @throws FallbackException If the expression must be evaluated by Saxon for this node
+         */
+        NodeStream<? extends Node> evaluate(Node contextNode);
+    }
+
+    @FunctionalInterface
+    private interface BooleanQuery {
+
+        boolean test(Node contextNode);
+    }
+
+    /**
+     * Returns a sequence of atomic values, which are represented by
+     * {@link String}, {@link Boolean} and {@link Long}.
+     */
+    @FunctionalInterface
+    private interface ValueQuery {
+
+        List<Object> evaluate(Node contextNode);
+    }
+
+    private NodeQuery compileNodes(Expression expr) {
+        if (expr instanceof ContextItemExpression) {
+            return ctx -> NodeStream.of(ctx);
+        } else if (expr instanceof AxisExpression) {
+            return compileAxis((AxisExpression) expr);
+        } else if (expr instanceof SlashExpression) {
+            return compileSlash((SlashExpression) expr);
+        } else if (expr instanceof FilterExpression) {
+            FilterExpression filterExpr = (FilterExpression) expr;
+            Integer position = getLiteralPosition(filterExpr.getFilter());
+            if (position != null) {
+                return compileSubscript(filterExpr.getBase(), position);
+            }
+            NodeQuery base = compileNodes(filterExpr.getBase());
+            BooleanQuery filter = compileFilter(filterExpr.getFilter());
+            return ctx -> base.evaluate(ctx).filter(n -> filter.test(n));
+        } else if (expr instanceof FirstItemExpression) {
+            return compileSubscript(((FirstItemExpression) expr).getBaseExpression(), 1);
+        } else if (expr instanceof SubscriptExpression) {
+            Integer position = getLiteralPosition(((SubscriptExpression) expr).getSubscript());
+            if (position == null) {
+                throw unsupported(expr);
+            }
+            return compileSubscript(((SubscriptExpression) expr).getBaseExpression(), position);
+        } else if (expr instanceof DocumentSorter) {
+            // the order is restored on the results of the query
+            NodeQuery base = compileNodes(((DocumentSorter) expr).getBaseExpression());
+            return ctx -> base.evaluate(ctx).distinct();
+        } else if (expr instanceof VennExpression && ((VennExpression) expr).getOperator() == Token.UNION) {
+            NodeQuery lhs = compileNodes(((VennExpression) expr).getLhsExpression());
+            NodeQuery rhs = compileNodes(((VennExpression) expr).getRhsExpression());
+            return ctx -> NodeStream.union(lhs.evaluate(ctx), rhs.evaluate(ctx)).distinct();
+        } else if (expr instanceof ItemChecker && ((ItemChecker) expr).getRequiredType() instanceof NodeTest) {
+            NodeQuery base = compileNodes(((ItemChecker) expr).getBaseExpression());
+            KindTest test = compileNodeTest((NodeTest) ((ItemChecker) expr).getRequiredType());
+            return ctx -> base.evaluate(ctx).filter(n -> {
+                if (!test.test(n)) {
+                    throw FallbackException.INSTANCE;
+                }
+                return true;
+            });
+        } else if (expr instanceof CardinalityChecker) {
+            NodeQuery base = compileNodes(((CardinalityChecker) expr).getBaseExpression());
+            int cardinality = ((CardinalityChecker) expr).getRequiredCardinality();
+            return ctx -> {
+                List<? extends Node> nodes = base.evaluate(ctx).toList();
+                checkCardinality(cardinality, nodes.size());
+                return NodeStream.fromIterable(nodes);
+            };
+        }
+        throw unsupported(expr);
+    }
+
+    private NodeQuery compileAxis(AxisExpression axisExpr) {
+        KindTest test = compileNodeTest(axisExpr.getNodeTest());
+        switch (axisExpr.getAxis()) {
+        case AxisInfo.SELF:
+            return ctx -> test.test(ctx) ? NodeStream.of(ctx) : NodeStream.empty();
+        case AxisInfo.CHILD:
+            return ctx -> ctx.children().filter(test);
+        case AxisInfo.DESCENDANT:
+            return ctx -> ctx.descendants().crossFindBoundaries().filter(test);
+        case AxisInfo.DESCENDANT_OR_SELF:
+            return ctx -> ctx.descendantsOrSelf().crossFindBoundaries().filter(test);
+        case AxisInfo.PARENT:
+            return ctx -> {
+                Node parent = ctx.getParent();
+                if (parent == null && test.documents) {
+                    // this is the document node
+                    throw FallbackException.INSTANCE;
+                }
+                return NodeStream.of(parent).filter(test);
+            };
+        case AxisInfo.ANCESTOR:
+            if (test.documents) {
+                throw unsupported(axisExpr);
+            }
+            return ctx -> ctx.ancestors().filter(test);
+        case AxisInfo.ANCESTOR_OR_SELF:
+            if (test.documents) {
+                throw unsupported(axisExpr);
+            }
+            return ctx -> ctx.ancestorsOrSelf().filter(test);
+        case AxisInfo.FOLLOWING_SIBLING:
+            return ctx -> ctx.asStream().followingSiblings().filter(test);
+        case AxisInfo.PRECEDING_SIBLING:
+            return ctx -> ctx.asStream().precedingSiblings().filter(test);
+        default:
+            throw unsupported(axisExpr);
+        }
+    }
+
+    private NodeQuery compileSlash(SlashExpression slashExpr) {
+        Expression start = slashExpr.getStart();
+        Expression step = slashExpr.getStep();
+        if (start instanceof RootExpression) {
+            return compileRootStep(step);
+        } else if (start instanceof SlashExpression
+            && ((SlashExpression) start).getStart() instanceof RootExpression
+            && isAnyNodeStep(((SlashExpression) start).getStep(), AxisInfo.DESCENDANT_OR_SELF)) {
+            // this is the expansion of "//step". If the step is a child step,
+            // it is a descendant step from the document node.
+            return compileDescendantsFromRoot(step);
+        }
+
+        NodeQuery startQuery = compileNodes(start);
+        NodeQuery stepQuery = compileNodes(step);
+        if (isChildOrSelfStep(step)) {
+            // the steps from distinct nodes are disjoint
+            return ctx -> startQuery.evaluate(ctx).flatMap(stepQuery::evaluate);
+        }
+        return ctx -> startQuery.evaluate(ctx).flatMap(stepQuery::evaluate).distinct();
+    }
+
+    /**
+     * Compiles a step from the document node. There is no node for the
+     * document, the root node of the tree is the child of the document.
+     */
+    private NodeQuery compileRootStep(Expression step) {
+        if (!(step instanceof AxisExpression)) {
+            throw unsupported(step);
+        }
+        AxisExpression axisExpr = (AxisExpression) step;
+        KindTest test = compileNodeTest(axisExpr.getNodeTest());
+        switch (axisExpr.getAxis()) {
+        case AxisInfo.CHILD:
+            return ctx -> NodeStream.of(ctx.getRoot()).filter(test);
+        case AxisInfo.DESCENDANT:
+            return ctx -> ctx.getRoot().descendantsOrSelf().crossFindBoundaries().filter(test);
+        default:
+            throw unsupported(step);
+        }
+    }
+
+    private NodeQuery compileDescendantsFromRoot(Expression step) {
+        if (step instanceof AxisExpression && ((AxisExpression) step).getAxis() == AxisInfo.CHILD) {
+            KindTest test = compileNodeTest(((AxisExpression) step).getNodeTest());
+            return ctx -> ctx.getRoot().descendantsOrSelf().crossFindBoundaries().filter(test);
+        } else if (step instanceof FilterExpression && getLiteralPosition(((FilterExpression) step).getFilter()) == null) {
+            NodeQuery base = compileDescendantsFromRoot(((FilterExpression) step).getBase());
+            BooleanQuery filter = compileFilter(((FilterExpression) step).getFilter());
+            return ctx -> base.evaluate(ctx).filter(n -> filter.test(n));
+        }
+        throw unsupported(step);
+    }
+
+    /**
+     * Compiles a filter that is not positional. Numeric filters, and
+     * filters that use {@code position()} or {@code last()}, are not
+     * supported.
+     */
+    private BooleanQuery compileFilter(Expression filter) {
+        if (filter.getItemType().getUType().overlaps(UType.NUMERIC)) {
+            throw unsupported(filter);
+        }
+        return compileBoolean(filter);
+    }
+
+    private static @Nullable Integer getLiteralPosition(Expression filter) {
+        if (filter instanceof Literal && ((Literal) filter).getGroundedValue() instanceof Int64Value) {
+            long position = ((Int64Value) ((Literal) filter).getGroundedValue()).longValue();
+            if (position >= 1 && position <= Integer.MAX_VALUE) {
+                return (int) position;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a positional filter. The positions are in the order of
+     * the axis, so this is only supported for steps whose order in the
+     * node stream is the order of the axis.
+     */
+    private NodeQuery compileSubscript(Expression base, int position) {
+        if (!isInAxisOrder(base)) {
+            throw unsupported(base);
+        }
+        NodeQuery baseQuery = compileNodes(base);
+        return ctx -> NodeStream.of(baseQuery.evaluate(ctx).get(position - 1));
+    }
+
+    private static boolean isInAxisOrder(Expression expr) {
+        if (expr instanceof AxisExpression) {
+            // the preceding siblings are in document order in node streams
+            return ((AxisExpression) expr).getAxis() != AxisInfo.PRECEDING_SIBLING;
+        }
+        return expr instanceof FilterExpression && isInAxisOrder(((FilterExpression) expr).getBase());
+    }
+
+    private static boolean isAnyNodeStep(Expression expr, int axis) {
+        if (expr instanceof AxisExpression && ((AxisExpression) expr).getAxis() == axis) {
+            NodeTest test = ((AxisExpression) expr).getNodeTest();
+            return test == null || test instanceof AnyNodeTest;
+        }
+        return false;
+    }
+
+    private static boolean isChildOrSelfStep(Expression expr) {
+        if (expr instanceof AxisExpression) {
+            int axis = ((AxisExpression) expr).getAxis();
+            return axis == AxisInfo.CHILD || axis == AxisInfo.SELF;
+        }
+        return expr instanceof FilterExpression && isChildOrSelfStep(((FilterExpression) expr).getBase());
+    }
+
+    private KindTest compileNodeTest(@Nullable NodeTest test) {
+        if (test == null || test instanceof AnyNodeTest) {
+            return new KindTest(null, UType.ANY_NODE);
+        } else if (test instanceof NameTest) {
+            NameTest nameTest = (NameTest) test;
+            if (nameTest.getNodeKind() == Type.ELEMENT && nameTest.getNamespaceURI().equals(NamespaceUri.NULL)) {
+                return new KindTest(nameTest.getLocalPart(), UType.ELEMENT);
+            }
+        } else if (test instanceof NodeKindTest || test instanceof MultipleNodeKindTest) {
+            return new KindTest(null, test.getUType());
+        } else if (test instanceof CombinedNodeTest && ((CombinedNodeTest) test).getOperator() == Token.UNION) {
+            NodeTest[] operands = ((CombinedNodeTest) test).getComponentNodeTests();
+            KindTest union = compileNodeTest(operands[0]);
+            for (int i = 1; i < operands.length; i++) {
+                union = union.union(compileNodeTest(operands[i]));
+            }
+            return union;
+        }
+        throw new UnsupportedExpressionException(test.toString());
+    }
+
+    private BooleanQuery compileBoolean(Expression expr) {
+        BooleanQuery query = compileBooleanOperator(expr);
+        if (query != null) {
+            return query;
+        } else if (expr.getItemType() instanceof NodeTest) {
+            NodeQuery nodes = compileNodes(expr);
+            return ctx -> nodes.evaluate(ctx).nonEmpty();
+        }
+        ValueQuery values = compileValues(expr);
+        return ctx -> effectiveBooleanValue(values.evaluate(ctx));
+    }
+
+    /**
+     * Compiles the expressions that return a boolean, or returns null if
+     * this is not one of them.
+     */
+    private @Nullable BooleanQuery compileBooleanOperator(Expression expr) {
+        if (expr instanceof Literal && ((Literal) expr).getGroundedValue() instanceof BooleanValue) {
+            boolean value = ((BooleanValue) ((Literal) expr).getGroundedValue()).getBooleanValue();
+            return ctx -> value;
+        } else if (expr instanceof AndExpression) {
+            BooleanQuery lhs = compileBoolean(((AndExpression) expr).getLhsExpression());
+            BooleanQuery rhs = compileBoolean(((AndExpression) expr).getRhsExpression());
+            return ctx -> lhs.test(ctx) && rhs.test(ctx);
+        } else if (expr instanceof OrExpression) {
+            BooleanQuery lhs = compileBoolean(((OrExpression) expr).getLhsExpression());
+            BooleanQuery rhs = compileBoolean(((OrExpression) expr).getRhsExpression());
+            return ctx -> lhs.test(ctx) || rhs.test(ctx);
+        } else if (expr instanceof GeneralComparison20) {
+            GeneralComparison20 comparison = (GeneralComparison20) expr;
+            ValueQuery lhs = compileValues(comparison.getLhsExpression());
+            ValueQuery rhs = compileValues(comparison.getRhsExpression());
+            int op = toValueComparisonOperator(comparison.getOperator());
+            return ctx -> generalCompare(lhs.evaluate(ctx), op, rhs.evaluate(ctx));
+        } else if (expr instanceof ValueComparison) {
+            ValueComparison comparison = (ValueComparison) expr;
+            ValueQuery lhs = compileValues(comparison.getLhsExpression());
+            ValueQuery rhs = compileValues(comparison.getRhsExpression());
+            BooleanValue whenEmpty = comparison.getResultWhenEmpty();
+            boolean resultWhenEmpty = whenEmpty != null && whenEmpty.getBooleanValue();
+            int op = comparison.getOperator();
+            return ctx -> valueCompare(lhs.evaluate(ctx), op, rhs.evaluate(ctx), resultWhenEmpty);
+        } else if (expr instanceof CompareToIntegerConstant) {
+            CompareToIntegerConstant comparison = (CompareToIntegerConstant) expr;
+            ValueQuery lhs = compileValues(comparison.getLhsExpression());
+            List<Object> rhs = Collections.singletonList(comparison.getComparand());
+            int op = toValueComparisonOperator(comparison.getComparisonOperator());
+            return ctx -> valueCompare(lhs.evaluate(ctx), op, rhs, false);
+        } else if (expr instanceof CompareToStringConstant) {
+            CompareToStringConstant comparison = (CompareToStringConstant) expr;
+            ValueQuery lhs = compileValues(comparison.getLhsExpression());
+            List<Object> rhs = Collections.singletonList(comparison.getComparand().toString());
+            int op = toValueComparisonOperator(comparison.getComparisonOperator());
+            return ctx -> valueCompare(lhs.evaluate(ctx), op, rhs, false);
+        } else if (expr instanceof SystemFunctionCall) {
+            return compileBooleanFunction((SystemFunctionCall) expr);
+        }
+        return null;
+    }
+
+    private @Nullable BooleanQuery compileBooleanFunction(SystemFunctionCall call) {
+        if (!call.getFunctionName().getNamespaceUri().equals(NamespaceUri.FN)) {
+            return null;
+        }
+        Expression[] args = call.getArguments();
+        switch (call.getFunctionName().getLocalPart()) {
+        case "not": {
+            BooleanQuery arg = compileBoolean(args[0]);
+            return ctx -> !arg.test(ctx);
+        }
+        case "boolean":
+            return compileBoolean(args[0]);
+        case "exists":
+        case "empty": {
+            boolean exists = "exists".equals(call.getFunctionName().getLocalPart());
+            if (args[0].getItemType() instanceof NodeTest) {
+                NodeQuery arg = compileNodes(args[0]);
+                return ctx -> arg.evaluate(ctx).nonEmpty() == exists;
+            }
+            ValueQuery arg = compileValues(args[0]);
+            return ctx -> arg.evaluate(ctx).isEmpty() != exists;
+        }
+        case "starts-with":
+        case "ends-with":
+        case "contains": {
+            if (args.length != 2) {
+                // there is a collation argument
+                throw unsupported(call);
+            }
+            String name = call.getFunctionName().getLocalPart();
+            ValueQuery arg0 = compileValues(args[0]);
+            ValueQuery arg1 = compileValues(args[1]);
+            return ctx -> {
+                String str = stringArgument(arg0.evaluate(ctx));
+                String part = stringArgument(arg1.evaluate(ctx));
+                if ("starts-with".equals(name)) {
+                    return str.startsWith(part);
+                } else if ("ends-with".equals(name)) {
+                    return str.endsWith(part);
+                }
+                return str.contains(part);
+            };
+        }
+        default:
+            return null;
+        }
+    }
+
+    private ValueQuery compileValues(Expression expr) {
+        if (expr instanceof Literal) {
+            List<Object> values = convertLiteral(((Literal) expr).getGroundedValue());
+            return ctx -> values;
+        } else if (expr instanceof Atomizer) {
+            return compileAttributeValues(((Atomizer) expr).getBaseExpression());
+        } else if (expr instanceof SingletonAtomizer) {
+            ValueQuery base = compileAttributeValues(((SingletonAtomizer) expr).getBaseExpression());
+            boolean allowEmpty = ((SingletonAtomizer) expr).isAllowEmpty();
+            return ctx -> {
+                List<Object> values = base.evaluate(ctx);
+                if (values.size() > 1 || values.isEmpty() && !allowEmpty) {
+                    throw FallbackException.INSTANCE;
+                }
+                return values;
+            };
+        } else if (expr instanceof CardinalityChecker) {
+            ValueQuery base = compileValues(((CardinalityChecker) expr).getBaseExpression());
+            int cardinality = ((CardinalityChecker) expr).getRequiredCardinality();
+            return ctx -> {
+                List<Object> values = base.evaluate(ctx);
+                checkCardinality(cardinality, values.size());
+                return values;
+            };
+        } else if (expr instanceof AtomicSequenceConverter
+            && ((AtomicSequenceConverter) expr).getRequiredItemType() == BuiltInAtomicType.STRING) {
+            // converts untyped values to strings, there are none in this
+            // representation. Other types cannot be converted.
+            ValueQuery base = compileValues(((AtomicSequenceConverter) expr).getBaseExpression());
+            return ctx -> {
+                List<Object> values = base.evaluate(ctx);
+                for (Object value : values) {
+                    if (!(value instanceof String)) {
+                        throw FallbackException.INSTANCE;
+                    }
+                }
+                return values;
+            };
+        } else if (expr instanceof SystemFunctionCall
+            && ((SystemFunctionCall) expr).getFunctionName().getNamespaceUri().equals(NamespaceUri.FN)
+            && "count".equals(((SystemFunctionCall) expr).getFunctionName().getLocalPart())
+            && ((SystemFunctionCall) expr).getArg(0).getItemType() instanceof NodeTest) {
+            NodeQuery arg = compileNodes(((SystemFunctionCall) expr).getArg(0));
+            return ctx -> Collections.singletonList((long) arg.evaluate(ctx).count());
+        } else if (expr instanceof IntegratedFunctionCall) {
+            return compileFunctionCall((IntegratedFunctionCall) expr);
+        } else if (expr instanceof SystemFunctionCall
+            && ((SystemFunctionCall) expr).getFunctionName().getNamespaceUri().equals(NamespaceUri.FN)
+            && "string-length".equals(((SystemFunctionCall) expr).getFunctionName().getLocalPart())
+            && ((SystemFunctionCall) expr).getArity() == 1) {
+            ValueQuery arg = compileValues(((SystemFunctionCall) expr).getArg(0));
+            return ctx -> {
+                String str = stringArgument(arg.evaluate(ctx));
+                return Collections.singletonList((long) str.codePointCount(0, str.length()));
+            };
+        }
+
+        BooleanQuery query = compileBooleanOperator(expr);
+        if (query != null) {
+            return ctx -> Collections.singletonList(query.test(ctx));
+        }
+        throw unsupported(expr);
+    }
+
+    private ValueQuery compileAttributeValues(Expression expr) {
+        if (expr instanceof AxisExpression) {
+            AttributeAccessor accessor = new AttributeAccessor(getAttributeName((AxisExpression) expr));
+            return accessor::getValues;
+        } else if (expr instanceof SlashExpression && ((SlashExpression) expr).getStep() instanceof AxisExpression) {
+            NodeQuery nodes = compileNodes(((SlashExpression) expr).getStart());
+            AttributeAccessor accessor = new AttributeAccessor(getAttributeName((AxisExpression) ((SlashExpression) expr).getStep()));
+            return ctx -> {
+                List<Object> values = new ArrayList<>();
+                for (Node node : nodes.evaluate(ctx)) {
+                    values.addAll(accessor.getValues(node));
+                }
+                return values;
+            };
+        }
+        throw unsupported(expr);
+    }
+
+    private String getAttributeName(AxisExpression axisExpr) {
+        NodeTest test = axisExpr.getNodeTest();
+        if (axisExpr.getAxis() == AxisInfo.ATTRIBUTE
+            && test instanceof NameTest
+            && ((NameTest) test).getNamespaceURI().equals(NamespaceUri.NULL)) {
+            return ((NameTest) test).getLocalPart();
+        }
+        throw unsupported(axisExpr);
+    }
+
+    private ValueQuery compileFunctionCall(IntegratedFunctionCall call) {
+        ExtensionFunctionCall function = call.getFunction();
+        if (!(function instanceof SaxonExtensionFunctionDefinitionAdapter.PmdFunctionCall)) {
+            throw unsupported(call);
+        }
+        XPathFunctionDefinition definition = ((SaxonExtensionFunctionDefinitionAdapter.PmdFunctionCall) function).getFunctionDefinition();
+        XPathFunctionDefinition.FunctionCall functionCall = ((SaxonExtensionFunctionDefinitionAdapter.PmdFunctionCall) function).getCall();
+
+        XPathFunctionDefinition.Type[] argumentTypes = definition.getArgumentTypes();
+        if (argumentTypes.length != call.getArity()) {
+            throw unsupported(call);
+        }
+        Object[] arguments = new Object[argumentTypes.length];
+        for (int i = 0; i < arguments.length; i++) {
+            if (argumentTypes[i] != XPathFunctionDefinition.Type.SINGLE_STRING || !(call.getArg(i) instanceof StringLiteral)) {
+                throw unsupported(call);
+            }
+            arguments[i] = ((StringLiteral) call.getArg(i)).getString().toString();
+        }
+
+        XPathFunctionDefinition.Type resultType = definition.getResultType();
+        switch (resultType) {
+        case SINGLE_BOOLEAN:
+        case SINGLE_INTEGER:
+        case SINGLE_STRING:
+        case OPTIONAL_STRING:
+        case STRING_SEQUENCE:
+            break;
+        default:
+            throw unsupported(call);
+        }
+
+        boolean dependsOnContext = definition.dependsOnContext();
+        return ctx -> {
+            Object result;
+            try {
+                result = functionCall.call(dependsOnContext ? ctx : null, arguments);
+            } catch (XPathFunctionException e) {
+                // let Saxon report the error
+                throw FallbackException.INSTANCE;
+            }
+            return convertFunctionResult(resultType, result);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> convertFunctionResult(XPathFunctionDefinition.Type resultType, Object result) {
+        switch (resultType) {
+        case SINGLE_INTEGER:
+            return Collections.singletonList(((Integer) result).longValue());
+        case OPTIONAL_STRING:
+            return result instanceof Optional && ((Optional<String>) result).isPresent()
+                   ? Collections.singletonList(((Optional<String>) result).get())
+                   : Collections.emptyList();
+        case STRING_SEQUENCE:
+            return result instanceof List ? new ArrayList<>((List<String>) result) : Collections.emptyList();
+        default:
+            return Collections.singletonList(result);
+        }
+    }
+
+    /**
+     * Fetches the values of an attribute. The attribute table of the last
+     * node class and the index of the attribute in it are kept, as the
+     * nodes that a query reaches are often of the same class. Boolean and
+     * integer attributes are fetched without boxing their value.
+     */
+    private final class AttributeAccessor {
+
+        private final String name;
+        // replaced when a node of another class is seen, may be read
+        // and written by several threads, but is immutable
+        private @Nullable ClassIndex lastClass;
+
+        AttributeAccessor(String name) {
+            this.name = name;
+        }
+
+        List<Object> getValues(Node node) {
+            ClassIndex classIndex = lastClass;
+            if (classIndex == null || classIndex.nodeClass != node.getClass()) {
+                classIndex = new ClassIndex(node, name);
+                lastClass = classIndex;
+            }
+
+            AttributeTable table = classIndex.table;
+            if (table == null) {
+                // the node doesn't use the default attributes
+                Attribute attribute = findAttribute(node, name);
+                if (attribute == null) {
+                    return Collections.emptyList();
+                }
+                attrCtx.recordUsageOf(attribute);
+                return toValues(attribute.getValue());
+            }
+
+            int index = classIndex.index;
+            if (index < 0) {
+                return Collections.emptyList();
+            } else if (table.isDeprecated(index)) {
+                attrCtx.recordUsageOf(table.getAttribute(node, index));
+            }
+            try {
+                if (classIndex.isBoolean) {
+                    return table.getBooleanValue(node, index) ? TRUE : FALSE;
+                } else if (classIndex.isInteger) {
+                    return Collections.singletonList(table.getLongValue(node, index));
+                }
+            } catch (IllegalStateException e) {
+                // the getter failed, let Saxon handle it like for other attributes
+                throw FallbackException.INSTANCE;
+            }
+            return toValues(table.getValue(node, index));
+        }
+    }
+
+    /** The index of an attribute in the table of a node class. */
+    private static final class ClassIndex {
+
+        private final Class<?> nodeClass;
+        private final @Nullable AttributeTable table;
+        private final int index;
+        private final boolean isBoolean;
+        private final boolean isInteger;
+
+        ClassIndex(Node node, String name) {
+            this.nodeClass = node.getClass();
+            this.table = AttributeTable.forNode(node);
+            this.index = table == null ? -1 : table.indexOf(name);
+            Class<?> type = index < 0 ? null : table.getType(index);
+            this.isBoolean = type == boolean.class;
+            this.isInteger = type == int.class || type == long.class;
+        }
+    }
+
+    private static List<Object> toValues(@Nullable Object value) {
+        if (value instanceof Collection) {
+            List<Object> values = new ArrayList<>();
+            flattenInto((Collection<?>) value, values);
+            return values;
+        }
+        return Collections.singletonList(convertAttributeValue(value));
+    }
+
+    /** Finds an attribute of a node that doesn't use the default attributes. */
+    private static @Nullable Attribute findAttribute(Node node, String name) {
+        // like in AstElementNode, the last attribute with the name wins
+        Attribute found = null;
+        Iterator<Attribute> iterator = node.getXPathAttributesIterator();
+        while (iterator.hasNext()) {
+            Attribute attribute = iterator.next();
+            if (attribute.getName().equals(name)) {
+                found = attribute;
+            }
+        }
+        return found;
+    }
+
+    private static void flattenInto(Collection<?> collection, List<Object> values) {
+        for (Object o : collection) {
+            if (o instanceof Collection) {
+                flattenInto((Collection<?>) o, values);
+            } else {
+                values.add(convertAttributeValue(o));
+            }
+        }
+    }
+
+    /**
+     * Converts an attribute value like {@link DomainConversion#getAtomicRepresentation(Object)}.
+     * Floating point numbers are not supported.
+     */
+    private static Object convertAttributeValue(@Nullable Object value) {
+        if (value == null) {
+            // this is an untyped empty string, which compares like a string
+            return "";
+        } else if (value instanceof String || value instanceof Boolean || value instanceof Long) {
+            return value;
+        } else if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+        } else if (value instanceof Character || value instanceof Pattern || value instanceof Enum) {
+            return String.valueOf(value);
+        }
+        throw FallbackException.INSTANCE;
+    }
+
+    private List<Object> convertLiteral(GroundedValue value) {
+        List<Object> values = new ArrayList<>(value.getLength());
+        for (int i = 0; i < value.getLength(); i++) {
+            Item item = value.itemAt(i);
+            if (item instanceof StringValue && ((StringValue) item).getItemType() == BuiltInAtomicType.STRING) {
+                values.add(item.getStringValue());
+            } else if (item instanceof BooleanValue) {
+                values.add(((BooleanValue) item).getBooleanValue());
+            } else if (item instanceof Int64Value) {
+                values.add(((Int64Value) item).longValue());
+            } else {
+                throw new UnsupportedExpressionException(item.toShortString());
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static void checkCardinality(int cardinality, int size) {
+        if (size == 0 && !Cardinality.allowsZero(cardinality)
+            || size > 1 && !Cardinality.allowsMany(cardinality)) {
+            throw FallbackException.INSTANCE;
+        }
+    }
+
+    private static String stringArgument(List<Object> values) {
+        if (values.isEmpty()) {
+            return "";
+        } else if (values.size() == 1 && values.get(0) instanceof String) {
+            return (String) values.get(0);
+        }
+        throw FallbackException.INSTANCE;
+    }
+
+    private static boolean effectiveBooleanValue(List<Object> values) {
+        if (values.isEmpty()) {
+            return false;
+        } else if (values.size() == 1) {
+            Object value = values.get(0);
+            if (value instanceof Boolean) {
+                return (Boolean) value;
+            } else if (value instanceof String) {
+                return !((String) value).isEmpty();
+            }
+        }
+        // numbers are positional in filters
+        throw FallbackException.INSTANCE;
+    }
+
+    private static boolean generalCompare(List<Object> lhs, int op, List<Object> rhs) {
+        // all pairs are compared, as some may be a type error in Saxon
+        boolean result = false;
+        for (Object l : lhs) {
+            for (Object r : rhs) {
+                result |= compare(l, op, r);
+            }
+        }
+        return result;
+    }
+
+    private static boolean valueCompare(List<Object> lhs, int op, List<Object> rhs, boolean resultWhenEmpty) {
+        if (lhs.isEmpty() || rhs.isEmpty()) {
+            return resultWhenEmpty;
+        } else if (lhs.size() > 1 || rhs.size() > 1) {
+            throw FallbackException.INSTANCE;
+        }
+        return compare(lhs.get(0), op, rhs.get(0));
+    }
+
+    private static boolean compare(Object lhs, int op, Object rhs) {
+        if (lhs instanceof Long && rhs instanceof Long) {
+            int cmp = Long.compare((Long) lhs, (Long) rhs);
+            switch (op) {
+            case Token.FEQ: return cmp == 0;
+            case Token.FNE: return cmp != 0;
+            case Token.FLT: return cmp < 0;
+            case Token.FLE: return cmp <= 0;
+            case Token.FGT: return cmp > 0;
+            case Token.FGE: return cmp >= 0;
+            default: throw FallbackException.INSTANCE;
+            }
+        } else if (lhs instanceof String && rhs instanceof String
+            || lhs instanceof Boolean && rhs instanceof Boolean) {
+            // strings are compared with the codepoint collation
+            if (op == Token.FEQ) {
+                return lhs.equals(rhs);
+            } else if (op == Token.FNE) {
+                return !lhs.equals(rhs);
+            }
+        }
+        throw FallbackException.INSTANCE;
+    }
+
+    private static int toValueComparisonOperator(int op) {
+        switch (op) {
+        case Token.EQUALS: return Token.FEQ;
+        case Token.NE: return Token.FNE;
+        case Token.LT: return Token.FLT;
+        case Token.LE: return Token.FLE;
+        case Token.GT: return Token.FGT;
+        case Token.GE: return Token.FGE;
+        default: return op;
+        }
+    }
+
+    private static UnsupportedExpressionException unsupported(Expression expr) {
+        return new UnsupportedExpressionException(expr.toShortString());
+    }
+
+    /**
+     * Tests the kind and name of nodes. Text and comment nodes are
+     * mapped like in {@link AstElementNode}.
+     */
+    private static final class KindTest implements Predicate<Node> {
+
+        /** The names of the elements, null if all elements match. */
+        private final @Nullable Set<String> localNames;
+        private final boolean elements;
+        private final boolean texts;
+        private final boolean comments;
+        private final boolean documents;
+
+        KindTest(@Nullable String localName, UType kinds) {
+            this(localName == null ? null : Collections.singleton(localName),
+                 kinds.overlaps(UType.ELEMENT),
+                 kinds.overlaps(UType.TEXT),
+                 kinds.overlaps(UType.COMMENT),
+                 kinds.overlaps(UType.DOCUMENT));
+        }
+
+        private KindTest(@Nullable Set<String> localNames, boolean elements, boolean texts, boolean comments, boolean documents) {
+            this.localNames = localNames;
+            this.elements = elements;
+            this.texts = texts;
+            this.comments = comments;
+            this.documents = documents;
+        }
+
+        KindTest union(KindTest other) {
+            Set<String> names = null;
+            if (!this.matchesAnyElement() && !other.matchesAnyElement()) {
+                names = new HashSet<>();
+                if (this.elements) {
+                    names.addAll(this.localNames);
+                }
+                if (other.elements) {
+                    names.addAll(other.localNames);
+                }
+            }
+            return new KindTest(names,
+                                elements || other.elements,
+                                texts || other.texts,
+                                comments || other.comments,
+                                documents || other.documents);
+        }
+
+        private boolean matchesAnyElement() {
+            return elements && localNames == null;
+        }
+
+        @Override
+        public boolean test(Node node) {
+            if (node instanceof TextNode) {
+                return texts;
+            } else if (node instanceof CommentNode) {
+                return comments;
+            }
+            return elements && (localNames == null || localNames.contains(node.getXPathNodeName()));
+        }
+    }
+
+    /**
+     * Thrown when the expression is not in the supported subset.
+     */
+    private static final class UnsupportedExpressionException extends RuntimeException {
+
+        UnsupportedExpressionException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Thrown by a compiled query if it cannot evaluate the expression for
+     * a node, the node must then be evaluated by Saxon.
+     */
+    static final class FallbackException extends RuntimeException {
+
+        static final FallbackException INSTANCE = new FallbackException();
+
+        private FallbackException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -22,6 +22,7 @@ public abstract class AbstractRenderer extends AbstractPropertySource implements
     protected String description;
 
     protected boolean showSuppressedViolations = true;
+    private boolean reportInFileOrder;
     protected PrintWriter writer;
     private FileNameRenderer fileNameRenderer = fileId -> fileId.getOriginalPath();
 
@@ -65,6 +66,16 @@ public abstract class AbstractRenderer extends AbstractPropertySource implements
         this.showSuppressedViolations = showSuppressedViolations;
     }
 
+    @Override
+    public boolean isReportInFileOrder() {
+        return reportInFileOrder;
+    }
+
+    @Override
+    public void setReportInFileOrder(boolean reportInFileOrder) {
+        this.reportInFileOrder = reportInFileOrder;
+    }
+
     @Override
     public void setFileNameRenderer(FileNameRenderer fileNameRenderer) {
         this.fileNameRenderer = Objects.requireNonNull(fileNameRenderer);
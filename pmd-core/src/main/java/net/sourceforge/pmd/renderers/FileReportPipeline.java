@@ -0,0 +1,256 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.renderers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.reporting.Report;
+
+/**
+ * Renders the reports of files on a dedicated thread. Analysis threads
+ * hand over their finished report and continue with the next file,
+ * instead of waiting for each other to call {@link Renderer#renderFileReport(Report)},
+ * which is not thread-safe.
+ *
+ * <p>The queue between the analysis threads and the writer is bounded,
+ * so that a slow writer blocks the analysis instead of making reports
+ * pile up in memory. The writer thread is started when the first report
+ * is submitted.
+ *
+ * <p>If a file order is set, reports are rendered in that order, whatever
+ * the order in which the analysis of files finishes. Reports that arrive
+ * early wait until the reports of all previous files are rendered. At
+ * most {@value #MAX_WAITING_REPORTS} reports wait this way: when more
+ * arrive, the files that hold them back are skipped, and their reports
+ * are rendered as soon as they arrive. Reports of files that are not in
+ * the order are rendered last.
+ */
+final class FileReportPipeline {
+
+    private static final int QUEUE_CAPACITY = 64;
+    static final int MAX_WAITING_REPORTS = 256;
+    private static final long SUBMIT_POLL_MILLIS = 100;
+    private static final Entry END = new Entry(null, null);
+
+    private final Renderer renderer;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    // null if reports are rendered as they come
+    private final AtomicReference<List<FileId>> fileOrder = new AtomicReference<>();
+    private boolean started;
+    // written by the writer thread, read by submitters to fail fast
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    FileReportPipeline(Renderer renderer) {
+        this.renderer = renderer;
+        this.writer = new Thread(this::writeReports, "PmdRenderer-" + renderer.getName());
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Sets the order in which reports are rendered. This must be called
+     * before the first report is submitted.
+     */
+    void setFileOrder(List<FileId> files) {
+        this.fileOrder.set(new ArrayList<>(files));
+    }
+
+    private synchronized void ensureStarted() {
+        if (!started) {
+            started = true;
+            writer.start();
+        }
+    }
+
+    /**
+     * Queues the report of a file for rendering. This blocks while the
+     * queue is full.
+     *
+     * @throws IllegalStateException If the writer thread has stopped, so
+     *                               that the report cannot be rendered
+     */
+    void submit(FileId fileId, Report report) throws InterruptedException {
+        ensureStarted();
+        put(new Entry(fileId, report));
+    }
+
+    private void put(Entry entry) throws InterruptedException {
+        while (!queue.offer(entry, SUBMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                throw new IllegalStateException("The renderer thread has stopped", failure.get());
+            }
+        }
+    }
+
+    /**
+     * Renders all the submitted reports and stops the writer thread.
+     *
+     * @throws Exception The first exception thrown by the renderer, if any
+     */
+    void finish() throws Exception {
+        synchronized (this) {
+            if (!started) {
+                // nothing was submitted
+                return;
+            }
+        }
+        try {
+            put(END);
+        } catch (IllegalStateException e) {
+            // the writer stopped, this is reported if it didn't record why
+            recordFailure(e);
+        }
+        writer.join();
+        Throwable t = failure.get();
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    private void writeReports() {
+        TimeTracker.initThread();
+        try {
+            Entry entry = queue.take();
+            // the order is set before the first report is submitted
+            List<FileId> order = fileOrder.get();
+            ReportSink sink = order == null ? new ReportSink() : new OrderedReportSink(order);
+            while (!entry.isEnd()) {
+                sink.accept(entry.fileId, entry.report);
+                entry = queue.take();
+            }
+            sink.finish();
+        } catch (InterruptedException e) {
+            // submitters notice that the thread stopped and fail
+            recordFailure(e);
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) { // NOPMD AvoidCatchingThrowable
+            // same, rethrown by finish
+            recordFailure(t);
+        } finally {
+            TimeTracker.finishThread();
+        }
+    }
+
+    private void render(Report report) {
+        if (failure.get() != null) {
+            // keep draining the queue so that analysis threads don't block
+            return;
+        }
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
+            renderer.renderFileReport(report);
+        } catch (Throwable e) { // NOPMD AvoidCatchingThrowable
+            // rethrown by finish
+            recordFailure(e);
+        }
+    }
+
+    private void recordFailure(Throwable t) {
+        failure.compareAndSet(null, t);
+    }
+
+    private static final class Entry {
+
+        final FileId fileId;
+        final Report report;
+
+        Entry(FileId fileId, Report report) {
+            this.fileId = fileId;
+            this.report = report;
+        }
+
+        boolean isEnd() {
+            return fileId == null;
+        }
+    }
+
+    /** Renders reports as they come. */
+    private class ReportSink {
+
+        void accept(FileId fileId, Report report) {
+            render(report);
+        }
+
+        void finish() {
+            // nothing is buffered
+        }
+    }
+
+    /** Renders reports in the order of a list of files. */
+    private final class OrderedReportSink extends ReportSink {
+
+        private final Iterator<FileId> order;
+        private final Map<FileId, Report> waiting = new HashMap<>();
+        // files that were skipped because too many reports were waiting for them
+        private final Set<FileId> skipped = new HashSet<>();
+        private @Nullable FileId next;
+
+        OrderedReportSink(List<FileId> order) {
+            this.order = order.iterator();
+            this.next = this.order.hasNext() ? this.order.next() : null;
+        }
+
+        @Override
+        void accept(FileId fileId, Report report) {
+            if (skipped.remove(fileId)) {
+                render(report);
+                return;
+            }
+            waiting.put(fileId, report);
+            renderReady();
+            while (waiting.size() > MAX_WAITING_REPORTS && next != null) {
+                skipped.add(next);
+                advance();
+                renderReady();
+            }
+        }
+
+        private void renderReady() {
+            while (next != null && waiting.containsKey(next)) {
+                render(waiting.remove(next));
+                advance();
+            }
+        }
+
+        private void advance() {
+            next = order.hasNext() ? order.next() : null;
+        }
+
+        @Override
+        void finish() {
+            // files that were not analysed, eg because the analysis was interrupted
+            while (next != null) {
+                Report report = waiting.remove(next);
+                if (report != null) {
+                    render(report);
+                }
+                advance();
+            }
+            List<FileId> unknownFiles = new ArrayList<>(waiting.keySet());
+            Collections.sort(unknownFiles);
+            for (FileId fileId : unknownFiles) {
+                render(waiting.get(fileId));
+            }
+        }
+    }
+}
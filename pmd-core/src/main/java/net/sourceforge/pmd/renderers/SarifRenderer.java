@@ -10,13 +10,23 @@ import java.util.Iterator;
 
 import net.sourceforge.pmd.internal.util.IOUtil;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLog;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Invocation;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Result;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Tool;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLogBuilder;
 import net.sourceforge.pmd.reporting.Report;
 import net.sourceforge.pmd.reporting.RuleViolation;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
+/**
+ * Renders the report in the SARIF format. Results are written as soon
+ * as the violations of a file are rendered, so that memory usage does not
+ * grow with the number of violations. The rules that the results refer to,
+ * and the errors, are written after the results, at the end of the run.
+ */
 public class SarifRenderer extends AbstractIncrementingRenderer {
     public static final String NAME = "sarif";
     private static final String DEFAULT_DESCRIPTION = "Static Analysis Results Interchange Format (SARIF)";
@@ -28,6 +38,7 @@ public class SarifRenderer extends AbstractIncrementingRenderer {
             .create();
 
     private SarifLogBuilder sarifLogBuilder;
+    private JsonWriter jsonWriter;
 
     public SarifRenderer() {
         super(NAME, DEFAULT_DESCRIPTION);
@@ -41,20 +52,29 @@ public class SarifRenderer extends AbstractIncrementingRenderer {
     @Override
     public void start() throws IOException {
         sarifLogBuilder = SarifLogBuilder.sarifLogBuilder();
+        jsonWriter = gson.newJsonWriter(writer);
+
+        final SarifLog header = SarifLog.builder().build();
+        jsonWriter.beginObject()
+                .name("$schema").value(header.getSchema())
+                .name("version").value(header.getVersion())
+                .name("runs").beginArray()
+                .beginObject()
+                .name("results").beginArray();
     }
 
     @Override
     public void renderFileViolations(Iterator<RuleViolation> violations) throws IOException {
         while (violations.hasNext()) {
             final RuleViolation violation = violations.next();
-            sarifLogBuilder.add(violation);
+            gson.toJson(sarifLogBuilder.toResult(violation), Result.class, jsonWriter);
         }
     }
 
     @Override
     public void end() throws IOException {
         addErrors();
-        writeLog();
+        writeRunEnd();
     }
 
     private void addErrors() {
@@ -67,10 +87,18 @@ public class SarifRenderer extends AbstractIncrementingRenderer {
         }
     }
 
-    private void writeLog() throws IOException {
-        final SarifLog sarifLog = sarifLogBuilder.build();
-        final String json = gson.toJson(sarifLog);
-        writer.write(json);
+    private void writeRunEnd() throws IOException {
+        jsonWriter.endArray();
+        jsonWriter.name("tool");
+        gson.toJson(sarifLogBuilder.buildTool(), Tool.class, jsonWriter);
+        jsonWriter.name("invocations").beginArray();
+        gson.toJson(sarifLogBuilder.buildInvocation(), Invocation.class, jsonWriter);
+        jsonWriter.endArray()
+                .endObject() // run
+                .endArray()
+                .endObject();
+        // don't close the json writer, this would close the report writer
+        jsonWriter.flush();
         writer.println();
     }
 
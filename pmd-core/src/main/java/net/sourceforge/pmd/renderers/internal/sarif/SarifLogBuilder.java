@@ -7,8 +7,10 @@ package net.sourceforge.pmd.renderers.internal.sarif;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ArtifactLocation;
@@ -33,6 +35,7 @@ import net.sourceforge.pmd.reporting.RuleViolation;
 
 public class SarifLogBuilder {
     private final List<ReportingDescriptor> rules = new ArrayList<>();
+    private final Map<ReportingDescriptor, Integer> ruleIndices = new HashMap<>();
     private final List<Result> results = new ArrayList<>();
     private final List<ToolConfigurationNotification> toolConfigurationNotifications = new ArrayList<>();
     private final List<ToolExecutionNotification> toolExecutionNotifications = new ArrayList<>();
@@ -42,18 +45,25 @@ public class SarifLogBuilder {
     }
 
     public SarifLogBuilder add(RuleViolation violation) {
+        results.add(toResult(violation));
+        return this;
+    }
+
+    /**
+     * Converts the violation to a result, without adding the result to
+     * the log. This allows writing results as they come. The rule of the
+     * violation is added to the rules of the log though, as results refer
+     * to their rule by index.
+     */
+    public Result toResult(RuleViolation violation) {
         final ReportingDescriptor ruleDescriptor = getReportingDescriptor(violation);
-        int ruleIndex = rules.indexOf(ruleDescriptor);
-        if (ruleIndex == -1) {
-            rules.add(ruleDescriptor);
-            ruleIndex = rules.size() - 1;
-        }
+        final int ruleIndex = ruleIndices.computeIfAbsent(ruleDescriptor, descriptor -> {
+            rules.add(descriptor);
+            return rules.size() - 1;
+        });
 
         final Location location = getRuleViolationLocation(violation);
-        final Result result = resultFrom(ruleDescriptor, ruleIndex, location);
-        results.add(result);
-
-        return this;
+        return resultFrom(ruleDescriptor, ruleIndex, location);
     }
 
     public SarifLogBuilder addRunTimeError(Report.ProcessingError error) {
@@ -107,17 +117,10 @@ public class SarifLogBuilder {
     }
 
     public SarifLog build() {
-        final Component driver = getDriverComponent().toBuilder().rules(rules).build();
-        final Tool tool = Tool.builder().driver(driver).build();
-        final Invocation invocation = Invocation.builder()
-                .toolExecutionNotifications(toolExecutionNotifications)
-                .toolConfigurationNotifications(toolConfigurationNotifications)
-                .executionSuccessful(isExecutionSuccessful())
-                .build();
         final Run run = Run.builder()
-                .tool(tool)
+                .tool(buildTool())
                 .results(results)
-                .invocations(Collections.singletonList(invocation))
+                .invocations(Collections.singletonList(buildInvocation()))
                 .build();
 
         List<Run> runs = Collections.singletonList(run);
@@ -125,6 +128,26 @@ public class SarifLogBuilder {
         return SarifLog.builder().runs(runs).build();
     }
 
+    /**
+     * Builds the tool of the run, with the rules of all the results
+     * that were created so far.
+     */
+    public Tool buildTool() {
+        final Component driver = getDriverComponent().toBuilder().rules(rules).build();
+        return Tool.builder().driver(driver).build();
+    }
+
+    /**
+     * Builds the invocation of the run, with the errors added so far.
+     */
+    public Invocation buildInvocation() {
+        return Invocation.builder()
+                .toolExecutionNotifications(toolExecutionNotifications)
+                .toolConfigurationNotifications(toolConfigurationNotifications)
+                .executionSuccessful(isExecutionSuccessful())
+                .build();
+    }
+
     private boolean isExecutionSuccessful() {
         return toolExecutionNotifications.isEmpty() && toolConfigurationNotifications.isEmpty();
     }
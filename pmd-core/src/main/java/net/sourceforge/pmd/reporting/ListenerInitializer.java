@@ -9,6 +9,7 @@ import java.util.Collection;
 import java.util.List;
 
 import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.util.AssertionUtil;
@@ -32,6 +33,20 @@ public interface ListenerInitializer extends AutoCloseable {
         // noop
     }
 
+    /**
+     * Notifies the files collected for analysis, in the order in which
+     * they are submitted for analysis. For the files collected by a
+     * {@link net.sourceforge.pmd.PmdAnalysis}, this is sorted by {@link FileId}.
+     * With several threads, the analysis of files may finish in another order.
+     *
+     * @param files The files to analyze
+     *
+     * @since 7.3.0
+     */
+    default void setFilesToAnalyze(List<FileId> files) {
+        // noop
+    }
+
     /**
      * Notify this listener that the given {@link FileNameRenderer} will
      * be used by default for this analysis. This is mostly only relevant
@@ -97,6 +112,13 @@ public interface ListenerInitializer extends AutoCloseable {
                 }
             }
 
+            @Override
+            public void setFilesToAnalyze(List<FileId> files) {
+                for (ListenerInitializer initializer : list) {
+                    initializer.setFilesToAnalyze(files);
+                }
+            }
+
             @Override
             public void setFileNameRenderer(FileNameRenderer fileNameRenderer) {
                 for (ListenerInitializer initializer : list) {
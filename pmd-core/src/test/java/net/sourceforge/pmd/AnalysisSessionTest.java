@@ -0,0 +1,218 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.AnalysisSession.FileResult;
+import net.sourceforge.pmd.lang.Dummy2LanguageModule;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageProcessor;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyCommentNode;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyTextNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.SimpleTestTextFile;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRegion;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.CollectionUtil;
+
+class AnalysisSessionTest {
+
+    private static final String TEXT = "test content foo";
+
+    @Test
+    void testReanalyzeAfterEdit() throws IOException {
+        try (PmdAnalysis pmd = newAnalysis();
+             AnalysisSession session = pmd.newSession()) {
+            FileResult first = session.analyze(textFile());
+            assertNotNull(first.getRootNode());
+            assertEquals(0, first.getReport().getProcessingErrors().size());
+            assertEquals(1, first.getReport().getViolations().size());
+
+            int foo = TEXT.indexOf("foo");
+            FileResult second = session.reanalyze(first, TextRegion.fromBothOffsets(foo, foo + 3), "bar");
+            assertEquals("test content bar", second.getText().toString());
+            assertEquals(first.getFileId(), second.getFileId());
+            assertEquals(0, second.getReport().getViolations().size());
+
+            FileResult third = session.reanalyze(second, TextRegion.fromOffsetLength(TEXT.length(), 0), " foo");
+            assertEquals("test content bar foo", third.getText().toString());
+            assertEquals(1, third.getReport().getViolations().size());
+        }
+    }
+
+    @Test
+    void testReanalyzeOnlyAppliesRulesOnEditedLines() throws IOException {
+        String text = "(#comment foo)\n(#text bar)\n(#comment foo)\n";
+        try (PmdAnalysis pmd = newAnalysis(new NodeFooRule(DummyCommentNode.class), new NodeFooRule(DummyTextNode.class));
+             AnalysisSession session = pmd.newSession()) {
+            FileResult first = session.analyze(dummyFile(text));
+            assertEquals(listOf(1, 3), beginLines(first.getReport()));
+
+            int commentVisits = NodeFooRule.VISITS.get(DummyCommentNode.class).get();
+            int bar = text.indexOf("bar");
+            FileResult second = session.reanalyze(first, TextRegion.fromOffsetLength(bar, 3), "foo\n");
+            // the comment rule visits no node on the edited lines, its violations are moved
+            assertEquals(commentVisits, NodeFooRule.VISITS.get(DummyCommentNode.class).get());
+            assertEquals(listOf(1, 2, 4), beginLines(second.getReport()));
+            assertEquals(beginLines(session.analyze(dummyFile(second.getText().toString())).getReport()),
+                         beginLines(second.getReport()));
+        }
+    }
+
+    @Test
+    void testReanalyzeWithoutChange() throws IOException {
+        try (PmdAnalysis pmd = newAnalysis();
+             AnalysisSession session = pmd.newSession()) {
+            FileResult first = session.analyze(textFile());
+            assertSame(first, session.reanalyze(first, TextRegion.fromOffsetLength(0, 4), "test"));
+            assertThrows(IndexOutOfBoundsException.class,
+                () -> session.reanalyze(first, TextRegion.fromOffsetLength(TEXT.length(), 1), "x"));
+        }
+    }
+
+    @Test
+    void testClosedSession() throws IOException {
+        try (PmdAnalysis pmd = newAnalysis()) {
+            AnalysisSession session = pmd.newSession();
+            session.close();
+            assertThrows(IllegalStateException.class, () -> session.analyze(textFile()));
+        }
+    }
+
+    @Test
+    void testSessionsDontShareRules() throws IOException {
+        try (PmdAnalysis pmd = newAnalysis(new ProcessorCheckingRule());
+             AnalysisSession session1 = pmd.newSession();
+             AnalysisSession session2 = pmd.newSession()) {
+            assertAnalyzed(session1.analyze(textFile()).getReport());
+            assertAnalyzed(session2.analyze(textFile()).getReport());
+
+            pmd.files().addFile(textFile());
+            assertAnalyzed(pmd.performAnalysisAndCollectReport());
+
+            assertAnalyzed(session1.analyze(textFile()).getReport());
+            assertAnalyzed(session2.analyze(textFile()).getReport());
+        }
+    }
+
+    private static void assertAnalyzed(Report report) {
+        assertEquals(0, report.getProcessingErrors().size());
+        assertEquals(1, report.getViolations().size());
+    }
+
+    private static PmdAnalysis newAnalysis() {
+        return newAnalysis(new FooRule());
+    }
+
+    private static PmdAnalysis newAnalysis(Rule... rules) {
+        PMDConfiguration config = new PMDConfiguration();
+        config.setIgnoreIncrementalAnalysis(true);
+        PmdAnalysis pmd = PmdAnalysis.create(config);
+        for (Rule rule : rules) {
+            pmd.addRuleSet(RuleSet.forSingleRule(rule));
+        }
+        return pmd;
+    }
+
+    private static List<Integer> beginLines(Report report) {
+        return CollectionUtil.map(report.getViolations(), RuleViolation::getBeginLine);
+    }
+
+    private static TextFile dummyFile(String text) {
+        return new SimpleTestTextFile(text, FileId.fromPathLikeString("foo.dummy"), DummyLanguageModule.getInstance().getDefaultVersion());
+    }
+
+    private static TextFile textFile() {
+        return new SimpleTestTextFile(TEXT, FileId.fromPathLikeString("foo.txt"), Dummy2LanguageModule.getInstance().getDefaultVersion());
+    }
+
+    private static class FooRule extends AbstractRule {
+        FooRule() {
+            setLanguage(Dummy2LanguageModule.getInstance());
+            setMessage("contains foo");
+        }
+
+        @Override
+        public void apply(Node node, RuleContext ctx) {
+            if (node.getTextDocument().getText().toString().contains("foo")) {
+                ctx.addViolation(node);
+            }
+        }
+    }
+
+    /** Reports the nodes of a type whose image contains foo, and counts the visited nodes. */
+    private static class NodeFooRule extends AbstractRule {
+
+        static final Map<Class<?>, AtomicInteger> VISITS = new ConcurrentHashMap<>();
+
+        private final Class<? extends Node> nodeType;
+
+        NodeFooRule(Class<? extends Node> nodeType) {
+            this.nodeType = nodeType;
+            setName(nodeType.getSimpleName() + "Foo");
+            setLanguage(DummyLanguageModule.getInstance());
+            setMessage("contains foo");
+        }
+
+        @Override
+        public Rule deepCopy() {
+            return new NodeFooRule(nodeType);
+        }
+
+        @Override
+        protected @NonNull RuleTargetSelector buildTargetSelector() {
+            return RuleTargetSelector.forTypes(nodeType);
+        }
+
+        @Override
+        public void apply(Node node, RuleContext ctx) {
+            VISITS.computeIfAbsent(nodeType, k -> new AtomicInteger()).incrementAndGet();
+            if (node.getImage().contains("foo")) {
+                ctx.addViolation(node);
+            }
+        }
+    }
+
+    /** Fails if the rule was initialized by another session after this one. */
+    private static class ProcessorCheckingRule extends FooRule {
+
+        private LanguageProcessor processor;
+
+        @Override
+        public void initialize(LanguageProcessor languageProcessor) {
+            this.processor = languageProcessor;
+        }
+
+        @Override
+        public void apply(Node node, RuleContext ctx) {
+            if (node.getAstInfo().getLanguageProcessor() != processor) {
+                throw new IllegalStateException("Rule initialized by another analysis");
+            }
+            super.apply(node, ctx);
+        }
+    }
+}
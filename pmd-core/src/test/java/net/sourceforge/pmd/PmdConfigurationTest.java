@@ -28,6 +28,7 @@ import java.util.Properties;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import net.sourceforge.pmd.cache.internal.DirectoryAnalysisCache;
 import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
 import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
@@ -217,6 +218,15 @@ class PmdConfigurationTest {
                 "File cache location doesn't produce a file cache");
     }
 
+    @Test
+    void testAnalysisCacheDirectory(@TempDir Path folder) {
+        final PMDConfiguration configuration = new PMDConfiguration();
+
+        configuration.setAnalysisCacheLocation(folder.toString());
+        assertTrue(configuration.getAnalysisCache() instanceof DirectoryAnalysisCache,
+                "Directory cache location doesn't produce a directory cache");
+    }
+
 
     @Test
     void testIgnoreIncrementalAnalysis(@TempDir Path folder) throws IOException {
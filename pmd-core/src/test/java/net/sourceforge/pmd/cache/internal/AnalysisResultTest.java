@@ -0,0 +1,47 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+class AnalysisResultTest {
+
+    @Test
+    void testUnreadableViolationsAreReported() {
+        final IOException failure = new IOException("truncated");
+        final AnalysisResult result = new AnalysisResult(0, () -> {
+            throw failure;
+        });
+        final PmdReporter reporter = mock(PmdReporter.class);
+
+        assertTrue(result.getViolations(reporter).isEmpty());
+        verify(reporter).errorEx(anyString(), any(IOException.class));
+
+        // the result can still be updated, but the cached violations stay unusable
+        final RuleViolation violation = mock(RuleViolation.class);
+        result.addViolation(violation, reporter);
+        final List<RuleViolation> violations = result.getViolations(reporter);
+        assertEquals(1, violations.size());
+        assertSame(violation, violations.get(0));
+        assertSame(failure, assertThrows(IOException.class, result::loadViolations));
+        verify(reporter, times(3)).errorEx(anyString(), any(IOException.class));
+    }
+}
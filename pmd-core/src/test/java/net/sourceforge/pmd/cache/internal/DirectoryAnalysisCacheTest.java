@@ -0,0 +1,185 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.PmdCoreTestUtils;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.InternalApiBridge;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+class DirectoryAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private File cacheDir;
+
+    private final LanguageVersion dummyVersion = PmdCoreTestUtils.dummyVersion();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cacheDir = Files.createDirectory(tempFolder.resolve("cache")).toFile();
+    }
+
+    @Test
+    void testSameContentIsSharedBetweenCheckouts() {
+        TextDocument main = document("main/src/Foo.java", "class Foo {}");
+        persistWithViolation(new DirectoryAnalysisCache(cacheDir), main);
+
+        TextDocument branch = document("branch/src/Foo.java", "class Foo {}");
+        DirectoryAnalysisCache cache = newCache(ruleSets());
+        assertTrue(cache.isUpToDate(branch), "Same content in another checkout should hit the cache");
+
+        List<RuleViolation> violations = cache.getCachedViolations(branch);
+        assertEquals(1, violations.size(), "Cached rule violations count mismatch");
+        // the violation is reported on the file of this analysis
+        assertEquals(branch.getFileId(), violations.get(0).getFileId());
+        assertEquals(2, violations.get(0).getBeginColumn());
+    }
+
+    @Test
+    void testChangedContentIsNotUpToDate() {
+        persistWithViolation(new DirectoryAnalysisCache(cacheDir), document("src/Foo.java", "class Foo {}"));
+
+        DirectoryAnalysisCache cache = newCache(ruleSets());
+        assertFalse(cache.isUpToDate(document("src/Foo.java", "class Foo { }")),
+                    "Cache believes a changed file is up to date");
+    }
+
+    @Test
+    void testRulesetChangeIsNotUpToDate() {
+        persistWithViolation(new DirectoryAnalysisCache(cacheDir), document("src/Foo.java", "class Foo {}"));
+
+        RuleSets rs = ruleSets();
+        when(rs.getChecksum()).thenReturn(1L);
+        DirectoryAnalysisCache cache = newCache(rs);
+        assertFalse(cache.isUpToDate(document("src/Foo.java", "class Foo {}")),
+                    "Cache believes an unmodified file is up to date after the ruleset changed");
+
+        // entries of both rulesets are kept side by side
+        DirectoryAnalysisCache previousRuleset = newCache(ruleSets());
+        assertTrue(previousRuleset.isUpToDate(document("src/Foo.java", "class Foo {}")));
+    }
+
+    @Test
+    void testPathDependentResultsAreNotShared() {
+        persistWithViolation(new DirectoryAnalysisCache(cacheDir), document("src/Foo.java", "class Foo {}"));
+
+        DirectoryAnalysisCache cache = newCache(ruleSets());
+        assertFalse(cache.isUpToDate(document("src/Bar.java", "class Foo {}")),
+                    "Cache believes a file with another name is up to date");
+
+        RuleSet excludingGenerated = RuleSet.create("excluding", "", "", listOf(Pattern.compile(".*/generated/.*")),
+                                                    Collections.emptyList(), Collections.emptyList());
+        RuleSets rs = ruleSets(excludingGenerated);
+        persistWithViolation(new DirectoryAnalysisCache(cacheDir), rs, document("src/Foo.java", "class Foo {}"));
+        assertFalse(newCache(rs).isUpToDate(document("generated/Foo.java", "class Foo {}")),
+                    "Cache believes a file is up to date, although other rule sets apply to it");
+        assertTrue(newCache(rs).isUpToDate(document("branch/src/Foo.java", "class Foo {}")));
+    }
+
+    @Test
+    void testFailedAnalysisIsNotStored() {
+        TextDocument doc = document("src/Foo.java", "class Foo {}");
+        DirectoryAnalysisCache cache = newCache(ruleSets());
+        cache.isUpToDate(doc);
+        cache.startFileAnalysis(doc).onError(new Report.ProcessingError(new RuntimeException("some rule failed"), doc.getFileId()));
+        cache.persist();
+
+        assertFalse(newCache(ruleSets()).isUpToDate(doc),
+                    "Cache believes file is up to date although processing errors happened earlier");
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        DirectoryAnalysisCache cache = newCache(ruleSets());
+        for (int i = 0; i < 20; i++) {
+            TextDocument doc = document("src/Foo" + i + ".java", "class Foo" + i + " {}");
+            cache.isUpToDate(doc);
+            cache.startFileAnalysis(doc).onRuleViolation(violation(doc));
+        }
+        cache.persist();
+        long entrySize = cacheSize() / 20;
+
+        DirectoryAnalysisCache smallCache = new DirectoryAnalysisCache(cacheDir, 10 * entrySize);
+        smallCache.checkValidity(ruleSets(), mock(ClassLoader.class), Collections.emptySet());
+        smallCache.persist();
+
+        assertTrue(cacheSize() <= 10 * entrySize, "Cache directory was not shrunk");
+    }
+
+    private long cacheSize() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDir.toPath())) {
+            return files.filter(Files::isRegularFile).mapToLong(it -> it.toFile().length()).sum();
+        }
+    }
+
+    private DirectoryAnalysisCache newCache(RuleSets ruleSets) {
+        DirectoryAnalysisCache cache = new DirectoryAnalysisCache(cacheDir);
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        return cache;
+    }
+
+    private static RuleSets ruleSets(RuleSet... ruleSets) {
+        RuleSets rs = mock(RuleSets.class);
+        when(rs.getAllRuleSets()).thenReturn(ruleSets);
+        return rs;
+    }
+
+    private void persistWithViolation(DirectoryAnalysisCache cache, TextDocument doc) {
+        persistWithViolation(cache, ruleSets(), doc);
+    }
+
+    private void persistWithViolation(DirectoryAnalysisCache cache, RuleSets ruleSets, TextDocument doc) {
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        assertFalse(cache.isUpToDate(doc), "Cache believes an unknown file is up to date");
+        FileAnalysisListener listener = cache.startFileAnalysis(doc);
+        listener.onRuleViolation(violation(doc));
+        cache.persist();
+    }
+
+    private RuleViolation violation(TextDocument doc) {
+        final Rule rule = mock(Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rule.getLanguage()).thenReturn(mock(Language.class));
+        return InternalApiBridge.createRuleViolation(rule,
+                FileLocation.range(doc.getFileId(), TextRange2d.range2d(1, 2, 3, 4)), "message",
+                Collections.emptyMap());
+    }
+
+    private TextDocument document(String path, String text) {
+        return TextDocument.readOnlyString(text, FileId.fromPathLikeString(tempFolder.resolve(path).toString()), dummyVersion);
+    }
+}
@@ -16,8 +16,11 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -25,6 +28,9 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -225,6 +231,186 @@ class FileAnalysisCacheTest {
     }
 
 
+    @Test
+    void testUnchangedViolationsAreNotRewritten() throws IOException {
+        setupCacheWithViolation(newCacheFile);
+        final long initialSize = newCacheFile.length();
+
+        // only the index is appended
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        reloadedCache.persist();
+        assertTrue(newCacheFile.length() > initialSize, "Cache file should have been appended to");
+        assertTrue(newCacheFile.length() < 2 * initialSize, "Violations should not have been written again");
+
+        assertEquals(1, reloadAndGetViolations().size(), "Cached rule violations count mismatch");
+    }
+
+    @Test
+    void testCacheFileIsCompacted() throws IOException {
+        setupCacheWithViolation(newCacheFile);
+        final long initialSize = newCacheFile.length();
+
+        for (int i = 0; i < 10; i++) {
+            final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+            reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+            assertTrue(reloadedCache.isUpToDate(sourceFile));
+            reloadedCache.persist();
+            assertTrue(newCacheFile.length() <= 3 * initialSize, "Cache file was not compacted");
+        }
+
+        assertEquals(1, reloadAndGetViolations().size(), "Cached rule violations count mismatch");
+    }
+
+    @Test
+    void testUnreadableViolationsAreNotUpToDate() throws IOException {
+        setupCacheWithViolation(newCacheFile);
+
+        // the violations of the only file come right after the header
+        try (RandomAccessFile file = new RandomAccessFile(newCacheFile, "rw")) {
+            file.seek(20);
+            file.writeShort(0xFFFF);
+        }
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is up to date although its violations can't be read");
+    }
+
+    @Test
+    void testLegacyCacheFileIsLoaded() throws IOException {
+        // the cached violations are written again, so their rule must be found
+        final Rule rule = mock(Rule.class, Mockito.RETURNS_SMART_NULLS);
+        final RuleSets rs = mock(RuleSets.class);
+        when(rs.getAllRules()).thenReturn(Collections.singleton(rule));
+        final RuleViolation violation = mockViolation(rule);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(rs, mock(ClassLoader.class), setOf(sourceFileBackend));
+
+        // the format of PMD 7.2.0 and earlier
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(newCacheFile.toPath()))) {
+            out.writeUTF(cache.pmdVersion);
+            out.writeLong(cache.rulesetChecksum);
+            out.writeLong(cache.auxClassPathChecksum);
+            out.writeLong(cache.executionClassPathChecksum);
+            out.writeUTF(sourceFile.getFileId().getUriString());
+            out.writeLong(sourceFile.getCheckSum());
+            out.writeInt(1);
+            CachedRuleViolation.storeToStream(out, violation);
+        }
+
+        final List<RuleViolation> cachedViolations = reloadAndGetViolations();
+        assertEquals(1, cachedViolations.size(), "Cached rule violations count mismatch");
+        assertEquals(2, cachedViolations.get(0).getBeginColumn());
+
+        // persisting converts the cache file to the new format
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        reloadedCache.persist();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(newCacheFile.toPath()))) {
+            assertEquals(0x504D_4443, in.readInt());
+        }
+        assertEquals(1, reloadAndGetViolations().size(), "Cached rule violations count mismatch");
+    }
+
+    @Test
+    void testUnchangedFileStampIsUnmodified() throws IOException {
+        setupCacheWithFileStamp();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUnmodified(sourceFileBackend),
+                "Cache believes file with unchanged metadata is modified");
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFileBackend);
+        assertEquals(1, cachedViolations.size(), "Cached rule violations count mismatch");
+
+        // the stamp and the violations are kept when persisting again
+        reloadedCache.persist();
+        final FileAnalysisCache secondCache = new FileAnalysisCache(newCacheFile);
+        secondCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(secondCache.isUnmodified(sourceFileBackend));
+        assertEquals(1, secondCache.getCachedViolations(sourceFileBackend).size());
+    }
+
+    @Test
+    void testChangedFileStampIsModified() throws IOException {
+        setupCacheWithFileStamp();
+        final Path path = tempFolder.resolve("Source.java");
+        Files.write(path, listOf("other dummy text"));
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUnmodified(sourceFileBackend),
+                "Cache believes file with changed metadata is unmodified");
+    }
+
+    @Test
+    void testRecentlyModifiedFileIsNotTrusted() throws IOException {
+        setupCacheWithViolation(newCacheFile);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUnmodified(sourceFileBackend),
+                "The stamp of a file that was just written should not be trusted");
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    void testFileStampsAreIgnoredWhenVerifyingChecksums() throws IOException {
+        setupCacheWithFileStamp();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.setUseFileStamps(false);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUnmodified(sourceFileBackend),
+                "File stamps should not be used when checksums are verified");
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+    }
+
+    private void setupCacheWithFileStamp() throws IOException {
+        Files.setLastModifiedTime(tempFolder.resolve("Source.java"), FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(cache.isUnmodified(sourceFileBackend), "Cache believes an unknown file is unmodified");
+        cache.isUpToDate(sourceFile);
+        cache.startFileAnalysis(sourceFile).onRuleViolation(mockViolation());
+        cache.persist();
+    }
+
+    private void setupCacheWithViolation(final File cacheFile) throws IOException {
+        final FileAnalysisCache cache = new FileAnalysisCache(cacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.startFileAnalysis(sourceFile).onRuleViolation(mockViolation());
+        cache.persist();
+    }
+
+    private List<RuleViolation> reloadAndGetViolations() {
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes unmodified file with violations is not up to date");
+        return reloadedCache.getCachedViolations(sourceFile);
+    }
+
+    private RuleViolation mockViolation() {
+        return mockViolation(mock(Rule.class, Mockito.RETURNS_SMART_NULLS));
+    }
+
+    private RuleViolation mockViolation(Rule rule) {
+        final Language language = mock(Language.class);
+        when(language.getId()).thenReturn("dummy");
+        when(rule.getLanguage()).thenReturn(language);
+        return InternalApiBridge.createRuleViolation(rule,
+                FileLocation.range(sourceFile.getFileId(), TextRange2d.range2d(1, 2, 3, 4)), "message",
+                Collections.emptyMap());
+    }
+
     @Test
     void testCacheValidityWithNoChanges() throws IOException {
         final RuleSets rs = mock(RuleSets.class);
@@ -228,6 +228,41 @@ class CpdAnalysisTest {
         verifyNoMoreInteractions(reporter);
     }
 
+    @Test
+    void testReportDoesNotDependOnThreads() throws IOException {
+        config.setThreads(1);
+        String singleThreaded = describeMatchesOfGeneratedFiles();
+        assertFalse(singleThreaded.isEmpty());
+
+        config.setThreads(4);
+        assertEquals(singleThreaded, describeMatchesOfGeneratedFiles());
+    }
+
+    private String describeMatchesOfGeneratedFiles() throws IOException {
+        StringBuilder result = new StringBuilder();
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            for (int i = 0; i < 20; i++) {
+                StringBuilder source = new StringBuilder();
+                for (int line = 0; line < 30; line++) {
+                    // every line is repeated in other files
+                    source.append("int a").append((i + line) % 7).append(" = b").append(line % 5).append(" + c ;\n");
+                }
+                cpd.files().addSourceFile(FileId.fromPathLikeString("file" + i + ".dummy"), source.toString());
+            }
+            cpd.performAnalysis(report -> {
+                for (Match match : report.getMatches()) {
+                    result.append(match.getTokenCount());
+                    for (Mark mark : match) {
+                        result.append(' ').append(mark.getLocation().getFileId().getFileName())
+                              .append(':').append(mark.getLocation().getStartLine());
+                    }
+                    result.append('\n');
+                }
+            });
+        }
+        return result.toString();
+    }
+
     @Test
     void duplicatedFilesShouldBeSkipped() throws IOException {
         String filename = "file1.dummy";
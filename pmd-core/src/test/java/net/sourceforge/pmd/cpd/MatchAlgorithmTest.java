@@ -110,4 +110,32 @@ class MatchAlgorithmTest {
         assertEquals(6, mark3.getLocation().getStartLine());
         assertEquals(fileName, mark3.getLocation().getFileId());
     }
+
+    @Test
+    void testMatchesAcrossFiles() throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        CpdLexer cpdLexer = dummy.createCpdLexer(dummy.newPropertyBundle());
+        FileId fooId = FileId.fromPathLikeString("Foo.dummy");
+        FileId barId = FileId.fromPathLikeString("Bar.dummy");
+        TextFile foo = TextFile.forCharSeq(getSampleCode(), fooId, dummy.getDefaultVersion());
+        TextFile bar = TextFile.forCharSeq("int j = 1\n" + LINE_3 + "\n", barId, dummy.getDefaultVersion());
+        SourceManager sourceManager = new SourceManager(listOf(foo, bar));
+        Tokens tokens = new Tokens();
+        CpdLexer.tokenize(cpdLexer, sourceManager.get(foo), tokens);
+        CpdLexer.tokenize(cpdLexer, sourceManager.get(bar), tokens);
+
+        MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, 5);
+        List<Match> matches = matchAlgorithm.findMatches(new CPDNullListener(), sourceManager);
+        assertEquals(1, matches.size());
+        Match match = matches.get(0);
+        assertEquals(3, match.getMarkCount());
+
+        Iterator<Mark> marks = match.iterator();
+        assertEquals(fooId, marks.next().getLocation().getFileId());
+        assertEquals(fooId, marks.next().getLocation().getFileId());
+        Mark barMark = marks.next();
+        assertEquals(barId, barMark.getLocation().getFileId());
+        assertEquals(2, barMark.getLocation().getStartLine());
+        assertEquals(LINE_3 + "\n", sourceManager.getSlice(barMark).toString());
+    }
 }
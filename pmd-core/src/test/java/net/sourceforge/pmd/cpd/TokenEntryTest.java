@@ -21,4 +21,20 @@ class TokenEntryTest {
         assertEquals(4, mark.getEndColumn());
     }
 
+    @Test
+    void testSavePointRestore() {
+        Tokens tokens = new Tokens();
+        tokens.addToken("public", CpdTestUtils.FOO_FILE_ID, 1, 1, 1, 7);
+        Tokens.State state = tokens.savePoint();
+        tokens.addToken("class", CpdTestUtils.BAR_FILE_ID, 1, 1, 1, 6);
+        state.restore(tokens);
+
+        assertEquals(1, tokens.size());
+        TokenEntry next = tokens.addToken("static", CpdTestUtils.BAR_FILE_ID, 2, 1, 2, 7);
+        assertEquals(1, next.getIndex());
+        assertEquals(CpdTestUtils.BAR_FILE_ID, next.getFileId());
+        assertEquals("static", next.getImage(tokens));
+        assertEquals(next, tokens.getTokens().get(1));
+    }
+
 }
@@ -11,8 +11,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -94,6 +96,84 @@ class ClasspathClassLoaderTest {
         }
     }
 
+    @Test
+    void loadMissingResourceFromJar() throws IOException {
+        Path jarPath = prepareCustomJar();
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(jarPath.toString(), null)) {
+            // package in the jar, and unknown package
+            assertNull(loader.getResourceAsStream("net/sourceforge/pmd/Missing.txt"));
+            assertNull(loader.getResourceAsStream("com/example/Missing.txt"));
+            assertNull(loader.getResource("com/example/Missing.txt"));
+        }
+    }
+
+    @Test
+    void loadResourceUrlFromJar() throws IOException {
+        Path jarPath = prepareCustomJar();
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(jarPath.toString(), null)) {
+            URL url = loader.getResource(CUSTOM_JAR_RESOURCE2);
+            assertNotNull(url);
+            assertEquals("jar", url.getProtocol());
+            try (InputStream in = url.openStream()) {
+                assertEquals(CUSTOM_JAR_RESOURCE_CONTENT, IOUtil.readToString(in, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void loadInClasspathOrder() throws IOException {
+        Path jarPath = prepareCustomJar();
+        Path directory = tempDir.resolve("classes");
+        Files.createDirectories(directory.resolve(CUSTOM_JAR_RESOURCE).getParent());
+        Files.write(directory.resolve(CUSTOM_JAR_RESOURCE), "Directory\n".getBytes(StandardCharsets.UTF_8));
+
+        String directoryFirst = directory + File.pathSeparator + jarPath;
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(directoryFirst, null)) {
+            assertEquals("Directory\n", readResource(loader, CUSTOM_JAR_RESOURCE));
+            // only in the jar
+            assertEquals(CUSTOM_JAR_RESOURCE_CONTENT, readResource(loader, CUSTOM_JAR_RESOURCE2));
+        }
+
+        String jarFirst = jarPath + File.pathSeparator + directory;
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(jarFirst, null)) {
+            assertEquals(CUSTOM_JAR_RESOURCE_CONTENT, readResource(loader, CUSTOM_JAR_RESOURCE));
+        }
+    }
+
+    @Test
+    void loadFromMultiReleaseJar() throws IOException {
+        int runtimeVersion = Integer.parseInt(System.getProperty("java.specification.version").replaceFirst("^1\\.", ""));
+        assumeTrue(runtimeVersion >= 9, "Multi-release jars need Java 9");
+
+        Path jarPath = tempDir.resolve("multi-release.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarPath))) {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write("Manifest-Version: 1.0\nMulti-Release: true\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry(CUSTOM_JAR_RESOURCE));
+            out.write("Base\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("META-INF/versions/9/" + CUSTOM_JAR_RESOURCE));
+            out.write("Java 9\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("META-INF/versions/" + (runtimeVersion + 1) + "/" + CUSTOM_JAR_RESOURCE));
+            out.write("Future\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("META-INF/versions/9/com/example/Versioned.txt"));
+            out.write("Versioned\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(jarPath.toString(), null)) {
+            assertEquals("Java 9\n", readResource(loader, CUSTOM_JAR_RESOURCE));
+            assertEquals("Versioned\n", readResource(loader, "com/example/Versioned.txt"));
+        }
+    }
+
+    private static String readResource(ClassLoader loader, String name) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(name)) {
+            assertNotNull(in, name);
+            return IOUtil.readToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * @see <a href="https://github.com/pmd/pmd/issues/4899">[java] Parsing failed in ParseLock#doParse() java.io.IOException: Stream closed #4899</a>
      */
@@ -16,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import net.sourceforge.pmd.lang.DummyLanguageModule;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.impl.javacc.JavaccTokenDocument.TokenDocumentBehavior;
+import net.sourceforge.pmd.lang.document.Chars;
 import net.sourceforge.pmd.lang.document.TextDocument;
 
 class CharStreamTest {
@@ -105,6 +106,25 @@ class CharStreamTest {
         assertThrows(EOFException.class, stream::readChar);
     }
 
+    @Test
+    void testTokenImageIsCutFromTranslatedText() throws IOException {
+
+        CharStream stream = javaCharStream("a \\u00a0_ b");
+
+        assertEquals('a', stream.markTokenStart());
+        assertEquals(' ', stream.readChar());
+        assertEquals('\u00a0', stream.markTokenStart());
+        assertEquals('_', stream.readChar());
+
+        JavaccToken token = stream.getTokenDocument().createToken(1, stream, null);
+        assertEquals("\u00a0_", token.getImage());
+        assertEquals(Chars.wrap("\u00a0_"), token.getImageCs());
+
+        JavaccToken withImage = stream.getTokenDocument().createToken(1, stream, "x");
+        assertEquals("x", withImage.getImage());
+        assertEquals(token.getRegion(), withImage.getRegion());
+    }
+
     @Test
     void testBacktrackTooMuch() throws IOException {
 
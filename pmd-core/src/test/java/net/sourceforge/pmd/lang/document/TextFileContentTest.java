@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.lang.document;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -17,6 +18,7 @@ import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class TextFileContentTest {
 
@@ -132,6 +134,27 @@ class TextFileContentTest {
         assertEquals("\r", content.getLineTerminator());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"a\r\nb\r\n", "a\rb\r", "\ufeffa\nb", "a\u00e9\r\nb", "\ufeffa\u00e9\nb", "a\r\n\nb\r", ""})
+    void testBytesAreReadLikeInputStream(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        TextFileContent expected = TextFileContent.fromInputStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, LINESEP_SENTINEL);
+        TextFileContent actual = TextFileContent.fromBytes(bytes.clone(), StandardCharsets.UTF_8, LINESEP_SENTINEL);
+
+        assertEquals(expected.getNormalizedText(), actual.getNormalizedText());
+        assertEquals(expected.getLineTerminator(), actual.getLineTerminator());
+        assertEquals(expected.getCheckSum(), actual.getCheckSum());
+        assertArrayEquals(expected.getPositioner().getLineOffsets(), actual.getPositioner().getLineOffsets());
+    }
+
+    @Test
+    void testAsciiBomIsNotRemoved() throws IOException {
+        byte[] bytes = "\ufeffabc".getBytes(StandardCharsets.UTF_8);
+        TextFileContent content = TextFileContent.fromBytes(bytes, StandardCharsets.US_ASCII, LINESEP_SENTINEL);
+        // the BOM is not ASCII, so this uses the decoder, which replaces each byte
+        assertEquals(Chars.wrap("\ufffd\ufffd\ufffdabc"), content.getNormalizedText());
+    }
+
     enum TextContentOrigin {
         INPUT_STREAM {
             @Override
@@ -145,6 +168,12 @@ class TextFileContentTest {
                 return content;
             }
         },
+        BYTES {
+            @Override
+            TextFileContent normalize(String text) throws IOException {
+                return TextFileContent.fromBytes(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, LINESEP_SENTINEL);
+            }
+        },
         READER {
             @Override
             TextFileContent normalize(String input) throws IOException {
@@ -40,6 +40,10 @@ abstract class AbstractPMDProcessorTest {
 
     protected abstract Class<? extends AbstractPMDProcessor> getExpectedImplementation();
 
+    protected boolean useVirtualThreads() {
+        return false;
+    }
+
     @Test
     void shouldUseCorrectProcessorImpl() {
         try (AbstractPMDProcessor processor = AbstractPMDProcessor.newFileProcessor(createTask(getThreads()))) {
@@ -67,6 +71,7 @@ abstract class AbstractPMDProcessorTest {
     protected PmdAnalysis createPmdAnalysis() {
         PMDConfiguration configuration = new PMDConfiguration();
         configuration.setThreads(getThreads());
+        configuration.setUseVirtualThreads(useVirtualThreads());
         configuration.setIgnoreIncrementalAnalysis(true);
         reporter = Mockito.spy(configuration.getReporter());
         configuration.setReporter(reporter);
@@ -0,0 +1,129 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class AnalysisSchedulerTest {
+
+    @Test
+    void lanesAreInterleaved() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(1)) {
+            AnalysisScheduler.Lane java = scheduler.newLane();
+            // block the only thread until everything is submitted
+            java.execute(() -> {
+                order.add("java1");
+                started.countDown();
+                awaitUninterruptibly(release);
+            });
+            started.await();
+
+            java.execute(() -> order.add("java2"));
+            java.execute(() -> order.add("java3"));
+            AnalysisScheduler.Lane xml = scheduler.newLane();
+            xml.execute(() -> order.add("xml1"));
+            xml.execute(() -> order.add("xml2"));
+
+            release.countDown();
+        }
+
+        assertEquals(listOf("java1", "xml1", "java2", "xml2", "java3"), order);
+    }
+
+    @Test
+    void threadCountIsSharedByAllLanes() {
+        Object lock = new Object();
+        int[] running = {0};
+        int[] maxRunning = {0};
+
+        try (AnalysisScheduler scheduler = new AnalysisScheduler(2)) {
+            for (int i = 0; i < 3; i++) {
+                AnalysisScheduler.Lane lane = scheduler.newLane();
+                for (int j = 0; j < 20; j++) {
+                    lane.execute(() -> {
+                        synchronized (lock) {
+                            running[0]++;
+                            maxRunning[0] = Math.max(maxRunning[0], running[0]);
+                        }
+                        Thread.yield();
+                        synchronized (lock) {
+                            running[0]--;
+                        }
+                    });
+                }
+            }
+        }
+
+        synchronized (lock) {
+            assertEquals(0, running[0]);
+            assertTrue(maxRunning[0] <= 2, "at most 2 tasks should run at once, got " + maxRunning[0]);
+        }
+    }
+
+    @Test
+    void virtualThreadsFallBackToPlatformThreads() {
+        try (AnalysisScheduler scheduler = AnalysisScheduler.withVirtualThreads(2)) {
+            assertEquals(AnalysisScheduler.supportsVirtualThreads(), scheduler.usesVirtualThreads());
+        }
+    }
+
+    @Test
+    void cpuPhaseIsBoundedWithVirtualThreads() {
+        assumeTrue(AnalysisScheduler.supportsVirtualThreads(), "Virtual threads need Java 21");
+        Object lock = new Object();
+        int[] running = {0};
+        int[] maxRunning = {0};
+        int[] done = {0};
+
+        try (AnalysisScheduler scheduler = AnalysisScheduler.withVirtualThreads(2)) {
+            AnalysisScheduler.Lane lane = scheduler.newLane();
+            for (int i = 0; i < 50; i++) {
+                lane.execute(() -> {
+                    scheduler.acquireCpu();
+                    try {
+                        synchronized (lock) {
+                            running[0]++;
+                            maxRunning[0] = Math.max(maxRunning[0], running[0]);
+                        }
+                        Thread.yield();
+                        synchronized (lock) {
+                            running[0]--;
+                            done[0]++;
+                        }
+                    } finally {
+                        scheduler.releaseCpu();
+                    }
+                });
+            }
+        }
+
+        synchronized (lock) {
+            assertEquals(50, done[0]);
+            assertTrue(maxRunning[0] <= 2, "at most 2 tasks should hold the CPU at once, got " + maxRunning[0]);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,16 +8,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.util.CollectionUtil;
 
 class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
 
@@ -59,6 +66,24 @@ class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
                 Mockito.any(Error.class));
     }
 
+    @Test
+    void filesAreScheduledLargestFirst() {
+        LanguageVersion lv = DummyLanguageModule.getInstance().getDefaultVersion();
+        List<TextFile> files = CollectionUtil.listOf(
+            TextFile.forCharSeq("a", FileId.fromPathLikeString("small1"), lv),
+            TextFile.forCharSeq("abcdef", FileId.fromPathLikeString("big"), lv),
+            TextFile.forCharSeq("b", FileId.fromPathLikeString("small2"), lv),
+            TextFile.forCharSeq("abc", FileId.fromPathLikeString("medium"), lv)
+        );
+
+        List<String> order = MultiThreadProcessor.largestFirst(files)
+                                                 .stream()
+                                                 .map(it -> it.getFileId().getOriginalPath())
+                                                 .collect(Collectors.toList());
+
+        assertEquals(CollectionUtil.listOf("big", "medium", "small1", "small2"), order);
+    }
+
     // TODO: Dysfunctional rules are pruned upstream of the processor.
     //
     //    @Test
@@ -81,6 +106,7 @@ class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
 
     @Test
     void testRulesThreadSafety() throws Exception {
+        NotThreadSafeRule.count.set(0);
         try (PmdAnalysis pmd = createPmdAnalysis("rulesets/MultiThreadProcessorTest/basic.xml")) {
             pmd.performAnalysis();
         }
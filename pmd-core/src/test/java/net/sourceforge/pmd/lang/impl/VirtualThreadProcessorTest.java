@@ -0,0 +1,26 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+
+/**
+ * Runs the tests of {@link MultiThreadProcessorTest} on virtual threads.
+ * Those are skipped on runtimes without virtual threads.
+ */
+class VirtualThreadProcessorTest extends MultiThreadProcessorTest {
+
+    @BeforeEach
+    void assumeVirtualThreads() {
+        assumeTrue(AnalysisScheduler.supportsVirtualThreads(), "Virtual threads need Java 21");
+    }
+
+    @Override
+    protected boolean useVirtualThreads() {
+        return true;
+    }
+}
@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -42,6 +43,7 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 
 import net.sourceforge.pmd.DummyParsingHelper;
 import net.sourceforge.pmd.FooRule;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
 import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
@@ -49,10 +51,13 @@ import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.RuleSet.RuleSetBuilder;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
 import net.sourceforge.pmd.reporting.Report;
 import net.sourceforge.pmd.reporting.Report.ProcessingError;
 import net.sourceforge.pmd.reporting.RuleContext;
 import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
 
 class RuleSetTest {
 
@@ -466,6 +471,32 @@ class RuleSetTest {
         assertNotSame(rule, ruleSet2.getRuleByName("FooRule1"));
     }
 
+    @Test
+    void forkSharesThreadSafeRules() {
+        Rule fooRule = new FooRule();
+        fooRule.setName("FooRule1");
+        fooRule.setLanguage(dummyLanguage());
+        Rule xpathRule = new XPathRule(XPathVersion.DEFAULT, "//dummyRootNode");
+        xpathRule.setName("XPathRule1");
+        xpathRule.setMessage("xpath");
+        xpathRule.setLanguage(dummyLanguage());
+        RuleSets ruleSets = new RuleSets(createRuleSetBuilder("RuleSet1").addRule(fooRule).addRule(xpathRule).build());
+
+        RootNode root = helper.parse("abc");
+        LanguageProcessorRegistry registry = LanguageProcessorRegistry.singleton(root.getAstInfo().getLanguageProcessor());
+        ruleSets.initializeRules(registry, PmdReporter.quiet());
+        RuleSets fork = ruleSets.forkForConcurrentUse(registry, PmdReporter.quiet());
+
+        assertFalse(fooRule.isThreadSafe());
+        assertNotSame(fooRule, fork.getRuleByName("FooRule1"));
+        assertEquals(fooRule, fork.getRuleByName("FooRule1"));
+        assertTrue(xpathRule.isThreadSafe());
+        assertSame(xpathRule, fork.getRuleByName("XPathRule1"));
+
+        Report report = Report.buildReport(listener -> fork.apply(root, listener));
+        assertEquals(1, report.getViolations().size());
+    }
+
     private void verifyRuleSet(RuleSet ruleset, Set<RuleViolation> expected) throws Exception {
 
         Report report = getReportForRuleSetApply(ruleset, makeCompilationUnits());
@@ -0,0 +1,105 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.internal;
+
+import static net.sourceforge.pmd.PmdCoreTestUtils.setDummyLanguage;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.benchmark.TimingReport;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.TestMessageReporter;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.reporting.RuleContext;
+
+class RuleApplicatorTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    @Test
+    void testXPathRulesWithSameTargetsAreFused() {
+        DummyRootNode root = helper.parse("(a(b)(c(b)))");
+
+        List<String> violations = applyRules(root);
+
+        // the nodes are visited once, by both rules, but the violations
+        // are reported in the order of the rules
+        assertEquals(listOf("ImageB@b", "ImageB@b", "Plain@plain", "Children@a", "Children@c", "Root@"), violations);
+    }
+
+    @Test
+    void testFusedRulesAreTimedTogether() {
+        DummyRootNode root = helper.parse("(a(b)(c(b)))");
+
+        TimeTracker.startGlobalTracking();
+        List<String> violations;
+        TimingReport timingReport;
+        try {
+            violations = applyRules(root);
+        } finally {
+            timingReport = TimeTracker.stopGlobalTracking();
+        }
+
+        assertEquals(listOf("ImageB@b", "ImageB@b", "Plain@plain", "Children@a", "Children@c", "Root@"), violations);
+        assertEquals(setOf("ImageB, Children", "Plain", "Root"),
+                     timingReport.getLabeledMeasurements(TimedOperationCategory.RULE).keySet());
+    }
+
+    private List<String> applyRules(DummyRootNode root) {
+        Rule imageB = makeXPath("ImageB", "//dummyNode[@Image = 'b']");
+        // references to XPath rules are fused too
+        Rule children = new RuleReference(makeXPath("Children", "//dummyNode[dummyNode]"), null);
+        Rule onRoot = makeXPath("Root", "/");
+        // a rule between the fused rules, which is applied between them
+        Rule plain = new PlainRule();
+        setDummyLanguage(plain);
+        plain.setName("Plain");
+        RuleSet ruleSet = RuleSet.create("set", "", "set.xml", Collections.emptyList(), Collections.emptyList(),
+                                         listOf(imageB, plain, children, onRoot));
+
+        RuleSets ruleSets = new RuleSets(ruleSet);
+        LanguageProcessorRegistry registry = LanguageProcessorRegistry.singleton(root.getAstInfo().getLanguageProcessor());
+        ruleSets.initializeRules(registry, new TestMessageReporter());
+
+        List<String> violations = new ArrayList<>();
+        ruleSets.apply(root, violation -> violations.add(violation.getRule().getName() + "@" + violation.getDescription()));
+        return violations;
+    }
+
+    private static class PlainRule extends AbstractRule {
+
+        @Override
+        public void apply(Node target, RuleContext ctx) {
+            ctx.addViolationWithMessage(target, "plain");
+        }
+    }
+
+    private XPathRule makeXPath(String name, String xpath) {
+        XPathRule rule = new XPathRule(XPathVersion.DEFAULT, xpath);
+        setDummyLanguage(rule);
+        rule.setName(name);
+        rule.setMessage("{0}");
+        return rule;
+    }
+}
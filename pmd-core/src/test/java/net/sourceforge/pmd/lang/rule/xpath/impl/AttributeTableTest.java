@@ -0,0 +1,114 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.impl.AbstractNode;
+import net.sourceforge.pmd.lang.document.TextRegion;
+import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.util.IteratorUtil;
+
+class AttributeTableTest {
+
+    @Test
+    void testTableMatchesIterator() {
+        TableNode node = new TableNode();
+        AttributeTable table = AttributeTable.forNode(node);
+        assertNotNull(table);
+
+        List<Attribute> expected = IteratorUtil.toList(node.getXPathAttributesIterator());
+        List<Attribute> actual = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            actual.add(table.getAttribute(node, i));
+            assertEquals(i, table.indexOf(table.getName(i)));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testLookupByName() {
+        TableNode node = new TableNode();
+        AttributeTable table = AttributeTable.forNode(node);
+        assertNotNull(table);
+
+        int index = table.indexOf("Value");
+        assertEquals("Value", table.getName(index));
+        assertEquals(42, table.getAttribute(node, index).getValue());
+        assertSame(node, table.getAttribute(node, index).getParent());
+        assertEquals(-1, table.indexOf("NotAnAttribute"));
+    }
+
+    @Test
+    void testTypedValues() {
+        TableNode node = new TableNode();
+        AttributeTable table = AttributeTable.forNode(node);
+        assertNotNull(table);
+
+        int value = table.indexOf("Value");
+        assertEquals(int.class, table.getType(value));
+        assertEquals(42, table.getValue(node, value));
+        assertEquals(42L, table.getLongValue(node, value));
+        assertThrows(IllegalArgumentException.class, () -> table.getBooleanValue(node, value));
+
+        int old = table.indexOf("Old");
+        assertTrue(table.getBooleanValue(node, old));
+        assertTrue(table.isDeprecated(old));
+        assertFalse(table.isDeprecated(value));
+
+        int failing = table.indexOf("Failing");
+        assertNull(table.getValue(node, failing));
+        assertThrows(IllegalStateException.class, () -> table.getBooleanValue(node, failing));
+    }
+
+    @Test
+    void testTableIsShared() {
+        assertSame(AttributeTable.forNode(new TableNode()), AttributeTable.forNode(new TableNode()));
+    }
+
+    @Test
+    void testNoTableForCustomAttributes() {
+        // DummyNode overrides getXPathAttributesIterator
+        assertNull(AttributeTable.forNode(new DummyNode()));
+    }
+
+    public static class TableNode extends AbstractNode<TableNode, TableNode> {
+
+        public int getValue() {
+            return 42;
+        }
+
+        @Deprecated
+        public boolean isOld() {
+            return true;
+        }
+
+        public boolean isFailing() {
+            throw new IllegalStateException("failing getter");
+        }
+
+        @Override
+        public TextRegion getTextRegion() {
+            return TextRegion.caretAt(0);
+        }
+
+        @Override
+        public String getXPathNodeName() {
+            return "tableNode";
+        }
+    }
+}
@@ -7,17 +7,23 @@ package net.sourceforge.pmd.lang.rule.xpath.internal;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import org.apache.commons.lang3.mutable.MutableInt;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
 import net.sourceforge.pmd.DummyParsingHelper;
 import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.impl.AbstractNode;
+import net.sourceforge.pmd.lang.document.TextRegion;
 
 import net.sf.saxon.Configuration;
+import net.sf.saxon.om.NamespaceUri;
 import net.sf.saxon.type.Type;
 
 class ElementNodeTest {
@@ -26,6 +32,22 @@ class ElementNodeTest {
     @RegisterExtension
     private final DummyParsingHelper helper = new DummyParsingHelper();
 
+    @Test
+    void testFindWrapperForDeepNodes() {
+        DummyRootNode root = helper.parse("(a(b(c(d)))(e))");
+        AstTreeInfo treeInfo = new AstTreeInfo(root, Configuration.newConfiguration());
+
+        for (DummyNode node : root.descendantsOrSelf().filterIs(DummyNode.class)) {
+            assertSame(node, treeInfo.findWrapperFor(node).getUnderlyingNode());
+        }
+        DummyNode deepest = root.descendants(DummyNode.class).crossFindBoundaries()
+                                .filter(it -> it.getNumChildren() == 0).first();
+        assertSame(treeInfo.findWrapperFor(deepest.getParent()), treeInfo.findWrapperFor(deepest).getParent());
+
+        DummyRootNode otherTree = helper.parse("(a)");
+        assertThrows(IllegalArgumentException.class, () -> treeInfo.findWrapperFor(otherTree.getChild(0)));
+    }
+
     @Test
     void testCompareOrder() {
         DummyRootNode root = helper.parse(
@@ -107,4 +129,37 @@ class ElementNodeTest {
         assertSame(elementComment, treeInfo.findWrapperFor(c1));
     }
 
+    @Test
+    void testAttributeGetterIsCalledOnce() {
+        Configuration configuration = Configuration.newConfiguration();
+        AstTreeInfo treeInfo = new AstTreeInfo(helper.parse("(a)"), configuration);
+        CountingNode node = new CountingNode();
+        AstElementNode element = new AstElementNode(treeInfo, new MutableInt(), treeInfo.getRootNode(), node, configuration);
+
+        assertEquals("value", element.getAttributeValue(NamespaceUri.NULL, "Value"));
+        assertEquals("value", element.getAttributeValue(NamespaceUri.NULL, "Value"));
+        assertNull(element.getAttributeValue(NamespaceUri.NULL, "NotAnAttribute"));
+        assertEquals(1, node.calls);
+    }
+
+    public static class CountingNode extends AbstractNode<CountingNode, CountingNode> {
+
+        int calls;
+
+        public String getValue() {
+            calls++;
+            return "value";
+        }
+
+        @Override
+        public TextRegion getTextRegion() {
+            return TextRegion.caretAt(0);
+        }
+
+        @Override
+        public String getXPathNodeName() {
+            return "countingNode";
+        }
+    }
+
 }
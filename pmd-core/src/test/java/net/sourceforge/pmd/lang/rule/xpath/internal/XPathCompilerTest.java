@@ -0,0 +1,168 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.DummyNodeWithDeprecatedAttribute;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.lang.rule.xpath.PmdXPathException;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathFunctionDefinition;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
+
+class XPathCompilerTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "//dummyNode[@Image = 'b']",
+        "//dummyNode[@Image != 'b']",
+        "//dummyNode[@Image = ('b', 'c')]",
+        "//dummyNode[@Image eq 'b']",
+        "//dummyNode[@Lines = 'c']",
+        "//dummyNode[not(ancestor::dummyNode)]",
+        "//dummyNode[ancestor::dummyNode[@Image = 'a']]",
+        "//dummyNode[ancestor::dummyNode[1][@Image = 'b']]",
+        "//dummyNode[count(dummyNode) > 1]",
+        "//dummyNode[count(descendant::dummyNode) = 3]",
+        "//dummyNode[exists(dummyNode/dummyNode)]",
+        "//dummyNode[empty(*)]",
+        "//dummyNode[../../dummyNode]",
+        "//dummyNode[following-sibling::dummyNode]",
+        "//dummyNode[starts-with(@Image, 'b')]",
+        "//dummyNode[string-length(@Image) = 1]",
+        "//dummyNode[pmd-dummy:imageIs('c')]",
+        "//dummyNode[pmd-dummy:imageIs('c') or @Image = 'd']",
+        "//dummyNode[@Image = 'a']/dummyNode",
+        "//dummyNode[@Image = 'a']//dummyNode",
+        "//dummyNode[@Image = 'b']/..",
+        "//dummyNode[@Image = 'b'] | //dummyNode[@Image = 'c']",
+        "/dummyRootNode/dummyNode"
+    })
+    void testCompiledQueryMatchesSaxon(String xpath) {
+        DummyRootNode tree = helper.parse("(a(b(d))(c(e)(f)))");
+        SaxonXPathRuleQuery query = createQuery(xpath, DeprecatedAttrLogger.noop());
+        assertFalse(query.nodeNameToCompiledXPaths.isEmpty(), "Query should be compiled");
+
+        for (Node node : tree.descendantsOrSelf()) {
+            if (query.getRuleChainVisits().contains(node.getXPathNodeName())
+                || query.getRuleChainVisits().isEmpty() && node == tree) {
+                assertEquals(query.evaluateWithSaxon(node), query.evaluate(node), "Result for " + node);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "//dummyNode[matches(@Image, '[bc]')]",
+        "//dummyNode[position() = 2]",
+        "//dummyNode[let $i := @Image return ../dummyNode[@Image = $i]]",
+        "(//dummyNode)[1]",
+        "/"
+    })
+    void testUnsupportedExpressionsUseSaxon(String xpath) {
+        DummyRootNode tree = helper.parse("(a(b)(c))");
+        SaxonXPathRuleQuery query = createQuery(xpath, DeprecatedAttrLogger.noop());
+        assertTrue(query.nodeNameToCompiledXPaths.isEmpty(), "Query should not be compiled");
+
+        Node root = query.getRuleChainVisits().isEmpty() ? tree : tree.getChild(0);
+        assertEquals(query.evaluateWithSaxon(root), query.evaluate(root));
+    }
+
+    @Test
+    void testTypeErrorIsReportedBySaxon() {
+        DummyRootNode tree = helper.parse("(a(b))");
+        SaxonXPathRuleQuery query = createQuery("//dummyNode[@Image = 1]", DeprecatedAttrLogger.noop());
+        assertFalse(query.nodeNameToCompiledXPaths.isEmpty(), "Query should be compiled");
+
+        PmdXPathException exception = assertThrows(PmdXPathException.class, () -> query.evaluate(tree.getChild(0)));
+        assertTrue(exception.getMessage().contains("Cannot compare xs:string to xs:integer"), exception.getMessage());
+    }
+
+    @Test
+    void testDocumentNodeFallsBackToSaxon() {
+        DummyRootNode tree = helper.parse("(a(b))");
+        // the parent of the root node is the document node
+        SaxonXPathRuleQuery query = createQuery("//dummyRootNode[..]", DeprecatedAttrLogger.noop());
+        assertFalse(query.nodeNameToCompiledXPaths.isEmpty(), "Query should be compiled");
+
+        assertEquals(Collections.singletonList(tree), query.evaluate(tree));
+    }
+
+    @Test
+    void testDeprecatedAttributesAreRecorded() {
+        DummyRootNode tree = helper.parse("");
+        DummyNodeWithDeprecatedAttribute node = new DummyNodeWithDeprecatedAttribute();
+        node.setParent(tree);
+        tree.addChild(node, 0);
+
+        List<String> recorded = new ArrayList<>();
+        SaxonXPathRuleQuery query = createQuery("//dummyNode[@Size = 2 and @Name = 'foo']", new DeprecatedAttrLogger() {
+            @Override
+            public void recordUsageOf(Attribute attribute) {
+                recorded.add(attribute.getName());
+            }
+        });
+        assertFalse(query.nodeNameToCompiledXPaths.isEmpty(), "Query should be compiled");
+
+        assertEquals(Collections.singletonList(node), query.evaluate(node));
+        assertEquals(listOf("Size", "Name"), recorded);
+    }
+
+    private static SaxonXPathRuleQuery createQuery(String xpath, DeprecatedAttrLogger logger) {
+        return new SaxonXPathRuleQuery(
+            xpath,
+            XPathVersion.DEFAULT,
+            Collections.emptyMap(),
+            XPathHandler.getHandlerForFunctionDefs(imageIsFunction()),
+            logger
+        );
+    }
+
+    private static XPathFunctionDefinition imageIsFunction() {
+        return new XPathFunctionDefinition("imageIs", DummyLanguageModule.getInstance()) {
+            @Override
+            public Type[] getArgumentTypes() {
+                return new Type[] {Type.SINGLE_STRING};
+            }
+
+            @Override
+            public Type getResultType() {
+                return Type.SINGLE_BOOLEAN;
+            }
+
+            @Override
+            public boolean dependsOnContext() {
+                return true;
+            }
+
+            @Override
+            public FunctionCall makeCallExpression() {
+                return (contextNode, arguments) -> StringUtils.equals(arguments[0].toString(), contextNode.getImage());
+            }
+        };
+    }
+}
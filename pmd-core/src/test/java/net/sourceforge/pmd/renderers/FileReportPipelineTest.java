@@ -0,0 +1,160 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.renderers;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.FooRule;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
+import net.sourceforge.pmd.reporting.InternalApiBridge;
+import net.sourceforge.pmd.reporting.ListenerInitializer;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+class FileReportPipelineTest {
+
+    private static final List<FileId> FILES = listOf(FileId.fromPathLikeString("a.dummy"),
+                                                     FileId.fromPathLikeString("b.dummy"),
+                                                     FileId.fromPathLikeString("c.dummy"));
+
+    @Test
+    void testReportsAreRenderedInFileOrder() throws Exception {
+        List<FileId> rendered = renderInReverseOrder(true);
+        assertEquals(FILES, rendered);
+    }
+
+    @Test
+    void testReportsAreRenderedWhenTheyAreDone() throws Exception {
+        List<FileId> rendered = renderInReverseOrder(false);
+        List<FileId> expected = new ArrayList<>(FILES);
+        Collections.reverse(expected);
+        assertEquals(expected, rendered);
+    }
+
+    @Test
+    void testRendererExceptionIsRethrown() throws Exception {
+        IOException failure = new IOException("cannot write");
+        RecordingRenderer renderer = new RecordingRenderer() {
+            @Override
+            public void renderFileReport(Report report) throws IOException {
+                throw failure;
+            }
+        };
+        GlobalAnalysisListener listener = renderer.newListener();
+        for (FileId file : FILES) {
+            analyze(listener, file);
+        }
+        assertSame(failure, assertThrows(IOException.class, listener::close));
+    }
+
+    @Test
+    void testRendererErrorDoesNotBlockAnalysis() throws Exception {
+        AssertionError failure = new AssertionError("broken renderer");
+        RecordingRenderer renderer = new RecordingRenderer() {
+            @Override
+            public void renderFileReport(Report report) {
+                throw failure;
+            }
+        };
+        GlobalAnalysisListener listener = renderer.newListener();
+        // more reports than the queue holds
+        for (int i = 0; i < 200; i++) {
+            analyze(listener, FileId.fromPathLikeString("f" + i + ".dummy"));
+        }
+        assertSame(failure, assertThrows(AssertionError.class, listener::close));
+    }
+
+    @Test
+    void testWaitingReportsAreBounded() throws Exception {
+        int numFiles = FileReportPipeline.MAX_WAITING_REPORTS + 10;
+        List<FileId> files = new ArrayList<>();
+        for (int i = 0; i < numFiles; i++) {
+            files.add(FileId.fromPathLikeString(String.format("f%04d.dummy", i)));
+        }
+        RecordingRenderer renderer = new RecordingRenderer();
+        renderer.setReportInFileOrder(true);
+        try (GlobalAnalysisListener listener = renderer.newListener()) {
+            try (ListenerInitializer initializer = listener.initializer()) {
+                initializer.setFilesToAnalyze(files);
+            }
+            // the first file is analysed last
+            for (int i = 1; i < numFiles; i++) {
+                analyze(listener, files.get(i));
+            }
+            analyze(listener, files.get(0));
+        }
+        List<FileId> rendered = renderer.renderedFiles;
+        assertEquals(numFiles, rendered.size());
+        assertEquals(files.get(1), rendered.get(0));
+        assertEquals(files.get(0), rendered.get(numFiles - 1));
+    }
+
+    private List<FileId> renderInReverseOrder(boolean inFileOrder) throws Exception {
+        RecordingRenderer renderer = new RecordingRenderer();
+        renderer.setReportInFileOrder(inFileOrder);
+        try (GlobalAnalysisListener listener = renderer.newListener()) {
+            try (ListenerInitializer initializer = listener.initializer()) {
+                initializer.setFilesToAnalyze(FILES);
+            }
+            for (int i = FILES.size() - 1; i >= 0; i--) {
+                analyze(listener, FILES.get(i));
+            }
+        }
+        return renderer.renderedFiles;
+    }
+
+    private static void analyze(GlobalAnalysisListener listener, FileId fileId) throws Exception {
+        TextFile file = TextFile.forCharSeq("text", fileId, DummyLanguageModule.getInstance().getDefaultVersion());
+        try (FileAnalysisListener fileListener = listener.startFileAnalysis(file)) {
+            FileLocation location = FileLocation.range(fileId, TextRange2d.range2d(1, 1, 1, 1));
+            fileListener.onRuleViolation(InternalApiBridge.createRuleViolation(new FooRule(), location, "blah", Collections.emptyMap()));
+        }
+    }
+
+    private static class RecordingRenderer extends AbstractIncrementingRenderer {
+
+        final List<FileId> renderedFiles = new ArrayList<>();
+
+        RecordingRenderer() {
+            super("recording", "Records the order of files");
+            setWriter(new StringWriter());
+        }
+
+        @Override
+        public String defaultFileExtension() {
+            return "txt";
+        }
+
+        @Override
+        public void renderFileReport(Report report) throws IOException {
+            if (!report.getViolations().isEmpty()) {
+                renderedFiles.add(report.getViolations().get(0).getFileId());
+            }
+        }
+
+        @Override
+        public void renderFileViolations(Iterator<RuleViolation> violations) {
+            // not used
+        }
+    }
+}
@@ -5,7 +5,9 @@
 package net.sourceforge.pmd.renderers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
@@ -98,6 +100,23 @@ class SarifRendererTest extends AbstractRendererTest {
         assertEquals(filter(readFile("expected-multiple-locations.sarif.json")), filter(actual));
     }
 
+    @Test
+    void testResultsAreWrittenBeforeEnd() throws Exception {
+        StringWriter writer = new StringWriter();
+        Renderer renderer = getRenderer();
+        renderer.setWriter(writer);
+        renderer.start();
+        renderer.renderFileReport(Report.buildReport(reportThreeViolationsTwoRules()));
+        assertTrue(writer.toString().contains("\"startLine\": 5"));
+
+        renderer.end();
+        renderer.flush();
+        JsonObject run = new Gson().fromJson(writer.toString(), JsonObject.class)
+                                   .getAsJsonArray("runs").get(0).getAsJsonObject();
+        assertEquals(3, run.getAsJsonArray("results").size());
+        assertEquals(2, run.getAsJsonObject("tool").getAsJsonObject("driver").getAsJsonArray("rules").size());
+    }
+
     private Consumer<FileAnalysisListener> reportThreeViolationsTwoRules() {
         Rule fooRule = createFooRule();
         Rule booRule = createBooRule();
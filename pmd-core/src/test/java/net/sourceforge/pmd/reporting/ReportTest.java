@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.StringWriter;
 import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -102,6 +103,45 @@ class ReportTest {
         assertEquals(2, union.getViolations().size());
     }
 
+    @Test
+    void testViolationsOfSeveralFilesAreSorted() throws Exception {
+        Rule rule = new MockRule("name", "desc", "msg", "rulesetname");
+        LanguageVersion dummyVersion = DummyLanguageModule.getInstance().getDefaultVersion();
+        Report.GlobalReportBuilderListener global = new Report.GlobalReportBuilderListener();
+
+        FileAnalysisListener fileB = global.startFileAnalysis(TextFile.forCharSeq("b", FileId.fromPathLikeString("fileB"), dummyVersion));
+        FileAnalysisListener fileA = global.startFileAnalysis(TextFile.forCharSeq("a", FileId.fromPathLikeString("fileA"), dummyVersion));
+        fileB.onRuleViolation(violation(rule, getNode(3, 1, "fileB")));
+        fileA.onRuleViolation(violation(rule, getNode(2, 1, "fileA")));
+        fileB.onRuleViolation(violation(rule, getNode(1, 1, "fileB")));
+        fileA.onRuleViolation(violation(rule, getNode(1, 1, "fileA")));
+        fileB.close();
+        fileA.close();
+        global.close();
+
+        List<RuleViolation> violations = global.getResult().getViolations();
+        assertEquals(4, violations.size());
+        for (int i = 1; i < violations.size(); i++) {
+            assertTrue(RuleViolation.DEFAULT_COMPARATOR.compare(violations.get(i - 1), violations.get(i)) <= 0,
+                       "sort order wrong at " + i);
+        }
+        assertEquals("fileA", violations.get(0).getFileId().getOriginalPath());
+        assertEquals(1, violations.get(0).getBeginLine());
+    }
+
+    @Test
+    void testViolationAfterCloseIsAccepted() throws Exception {
+        Rule rule = new MockRule("name", "desc", "msg", "rulesetname");
+        Report.ReportBuilderListener listener = new Report.ReportBuilderListener();
+        listener.onRuleViolation(violation(rule, getNode(2, 1, "file1")));
+        listener.close();
+        listener.onRuleViolation(violation(rule, getNode(1, 1, "file1")));
+
+        List<RuleViolation> violations = listener.getResult().getViolations();
+        assertEquals(2, violations.size());
+        assertEquals(1, violations.get(0).getBeginLine());
+    }
+
     public static @NonNull RuleViolation violation(Rule rule, FileLocation loc2) {
         return violation(rule, loc2, rule.getMessage());
     }
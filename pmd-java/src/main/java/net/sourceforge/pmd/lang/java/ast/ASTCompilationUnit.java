@@ -13,6 +13,7 @@ import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.lang.ast.AstInfo;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor.LazyPass;
 import net.sourceforge.pmd.lang.java.symbols.table.JSymbolTable;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
 import net.sourceforge.pmd.lang.java.types.ast.internal.LazyTypeResolver;
@@ -60,6 +61,12 @@ public final class ASTCompilationUnit extends AbstractJavaNode implements RootNo
     }
 
     public List<JavaComment> getComments() {
+        ensurePassDone(LazyPass.COMMENTS);
+        return comments;
+    }
+
+    /** Comments without their owner, for the comment assignment pass. */
+    List<JavaComment> getCommentsInternal() {
         return comments;
     }
 
@@ -132,6 +139,16 @@ public final class ASTCompilationUnit extends AbstractJavaNode implements RootNo
         this.lazyTypeResolver = typeResolver;
     }
 
+    /**
+     * Runs the given pass on this file if needed. Does nothing if the
+     * file was parsed without semantic analysis.
+     */
+    void ensurePassDone(LazyPass pass) {
+        if (lazyTypeResolver != null) {
+            lazyTypeResolver.getProcessor().ensurePassDone(pass);
+        }
+    }
+
     @NonNull LazyTypeResolver getLazyTypeResolver() {
         assert lazyTypeResolver != null : "Type resolution not initialized";
         return lazyTypeResolver;
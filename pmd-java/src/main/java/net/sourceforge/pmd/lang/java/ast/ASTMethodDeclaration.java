@@ -9,6 +9,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.lang.ast.impl.javacc.JavaccToken;
 import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor.LazyPass;
 import net.sourceforge.pmd.lang.java.symbols.JMethodSymbol;
 import net.sourceforge.pmd.lang.java.types.JMethodSig;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
@@ -46,7 +47,7 @@ public final class ASTMethodDeclaration extends AbstractExecutableDeclaration<JM
     private String name;
 
     /**
-     * Populated by {@link OverrideResolutionPass}.
+     * Populated by {@link OverrideResolutionPass}, when it is first needed.
      */
     private JMethodSig overriddenMethod = null;
 
@@ -63,7 +64,7 @@ public final class ASTMethodDeclaration extends AbstractExecutableDeclaration<JM
      * Returns true if this method is overridden.
      */
     public boolean isOverridden() {
-        return overriddenMethod != null;
+        return getOverriddenMethod() != null;
     }
 
     /**
@@ -76,6 +77,7 @@ public final class ASTMethodDeclaration extends AbstractExecutableDeclaration<JM
      * {@link TypeSystem#UNRESOLVED_METHOD}.
      */
     public JMethodSig getOverriddenMethod() {
+        getRoot().ensurePassDone(LazyPass.OVERRIDES);
         return overriddenMethod;
     }
 
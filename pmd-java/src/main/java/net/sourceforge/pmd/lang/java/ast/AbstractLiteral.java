@@ -43,8 +43,9 @@ abstract class AbstractLiteral extends AbstractJavaExpr implements ASTLiteral {
 
     @Override
     public final Chars getLiteralText() {
-        assert literalToken.getImageCs() != null;
-        return literalToken.getImageCs();
+        Chars image = literalToken.getImageCs();
+        assert image != null;
+        return image;
     }
 
 
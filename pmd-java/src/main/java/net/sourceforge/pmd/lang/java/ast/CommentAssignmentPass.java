@@ -35,7 +35,7 @@ final class CommentAssignmentPass {
     }
 
     public static void assignCommentsToDeclarations(ASTCompilationUnit root) {
-        final List<JavaComment> comments = root.getComments();
+        final List<JavaComment> comments = root.getCommentsInternal();
         if (comments.isEmpty()) {
             return;
         }
@@ -6,6 +6,8 @@ package net.sourceforge.pmd.lang.java.ast;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor.LazyPass;
+
 /**
  * A node that may own a javadoc comment.
  */
@@ -17,6 +19,7 @@ public interface JavadocCommentOwner extends JavaNode {
      * there is none, returns null.
      */
     default @Nullable JavadocComment getJavadocComment() {
+        getRoot().ensurePassDone(LazyPass.COMMENTS);
         return CommentAssignmentPass.getComment(this);
     }
 
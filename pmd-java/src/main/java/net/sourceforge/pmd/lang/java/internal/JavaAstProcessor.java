@@ -6,6 +6,10 @@ package net.sourceforge.pmd.lang.java.internal;
 
 import static net.sourceforge.pmd.lang.java.symbols.table.internal.JavaSemanticErrors.CANNOT_RESOLVE_SYMBOL;
 
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -13,6 +17,7 @@ import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableId;
 import net.sourceforge.pmd.lang.java.ast.InternalApiBridge;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
@@ -27,7 +32,9 @@ import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger;
 
 /**
  * Processes the output of the parser before rules get access to the AST.
- * This performs all semantic analyses in layered passes.
+ * This performs the semantic analyses that the AST depends on in layered
+ * passes. Other analyses are {@linkplain LazyPass deferred} until a rule
+ * needs their results.
  *
  * <p>This is the root context object for file-specific context. Instances
  * do not need to be thread-safe. Global information about eg the classpath
@@ -46,6 +53,9 @@ public final class JavaAstProcessor {
     private final UnresolvedClassStore unresolvedTypes;
     private final ASTCompilationUnit acu;
 
+    private boolean processed;
+    private final Set<LazyPass> donePasses = EnumSet.noneOf(LazyPass.class);
+
 
     private JavaAstProcessor(JavaLanguageProcessor globalProc,
                              SemanticErrorReporter logger,
@@ -131,10 +141,27 @@ public final class JavaAstProcessor {
 
         TimeTracker.bench("Symbol table resolution", () -> SymbolTableResolver.traverse(this, acu));
         TimeTracker.bench("AST disambiguation", () -> InternalApiBridge.disambigWithCtx(NodeStream.of(acu), ReferenceCtx.root(this, acu)));
+        // This reports the errors of type resolution as semantic errors of
+        // the file, instead of letting them occur later, in the first rule
+        // that asks for a type.
         TimeTracker.bench("Force type resolution", () -> InternalApiBridge.forceTypeResolutionPhase(this, acu));
-        TimeTracker.bench("Comment assignment", () -> InternalApiBridge.assignComments(acu));
-        TimeTracker.bench("Usage resolution", () -> InternalApiBridge.usageResolution(this, acu));
-        TimeTracker.bench("Override resolution", () -> InternalApiBridge.overrideResolution(this, acu));
+        processed = true;
+    }
+
+    /**
+     * Runs the given pass if it has not run yet. This does nothing while
+     * the eager passes of {@link #process()} are running, the results of
+     * the lazy passes are not available at that point.
+     */
+    public void ensurePassDone(LazyPass pass) {
+        if (processed && donePasses.add(pass)) {
+            TimeTracker.bench(pass.displayName, () -> pass.action.accept(this, acu));
+        }
+    }
+
+    // test only
+    boolean isPassDone(LazyPass pass) {
+        return donePasses.contains(pass);
     }
 
     public TypeSystem getTypeSystem() {
@@ -163,4 +190,27 @@ public final class JavaAstProcessor {
 
         astProc.process();
     }
+
+    /**
+     * A semantic analysis that is only needed by some rules. It runs the
+     * first time a rule asks for its results, e.g. by calling
+     * {@link ASTVariableId#getLocalUsages()}, so that files analysed only
+     * by rules that don't need it don't pay for it.
+     */
+    public enum LazyPass {
+        /** Sets the javadoc comment of declarations. */
+        COMMENTS("Comment assignment", (proc, acu) -> InternalApiBridge.assignComments(acu)),
+        /** Sets the usages of local variables. */
+        USAGES("Usage resolution", InternalApiBridge::usageResolution),
+        /** Sets the overridden method of method declarations. */
+        OVERRIDES("Override resolution", InternalApiBridge::overrideResolution);
+
+        private final String displayName;
+        private final BiConsumer<JavaAstProcessor, ASTCompilationUnit> action;
+
+        LazyPass(String displayName, BiConsumer<JavaAstProcessor, ASTCompilationUnit> action) {
+            this.displayName = displayName;
+            this.action = action;
+        }
+    }
 }
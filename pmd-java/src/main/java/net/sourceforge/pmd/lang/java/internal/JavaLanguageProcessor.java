@@ -4,10 +4,13 @@
 
 package net.sourceforge.pmd.lang.java.internal;
 
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Objects;
 
+import org.apache.commons.lang3.StringUtils;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +25,7 @@ import net.sourceforge.pmd.lang.java.rule.xpath.internal.GetModifiersFun;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.MatchesSignatureFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.MetricFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.NodeIsFunction;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.ClassFileIndex;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger.SimpleLogger;
@@ -44,10 +48,16 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     private final JavaParser parser;
     private final JavaParser parserWithoutProcessing;
     private TypeSystem typeSystem;
+    private final @Nullable ClassFileIndex classFileIndex;
 
     public JavaLanguageProcessor(JavaLanguageProperties properties, TypeSystem typeSystem) {
+        this(properties, typeSystem, null);
+    }
+
+    private JavaLanguageProcessor(JavaLanguageProperties properties, TypeSystem typeSystem, @Nullable ClassFileIndex classFileIndex) {
         super(properties);
         this.typeSystem = typeSystem;
+        this.classFileIndex = classFileIndex;
 
         String suppressMarker = properties.getSuppressMarker();
         this.parser = new JavaParser(suppressMarker, this, true);
@@ -55,10 +65,25 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     }
 
     public JavaLanguageProcessor(JavaLanguageProperties properties) {
-        this(properties, TypeSystem.usingClassLoaderClasspath(properties.getAnalysisClassLoader()));
+        this(properties, openClassFileIndex(properties));
         LOG.debug("Using analysis classloader: {}", properties.getAnalysisClassLoader());
     }
 
+    private JavaLanguageProcessor(JavaLanguageProperties properties, @Nullable ClassFileIndex classFileIndex) {
+        this(properties,
+             classFileIndex != null ? TypeSystem.usingClasspath(classFileIndex)
+                                    : TypeSystem.usingClassLoaderClasspath(properties.getAnalysisClassLoader()),
+             classFileIndex);
+    }
+
+    private static @Nullable ClassFileIndex openClassFileIndex(JavaLanguageProperties properties) {
+        String indexFile = properties.getProperty(JavaLanguageProperties.AUX_CLASSPATH_INDEX);
+        if (StringUtils.isBlank(indexFile)) {
+            return null;
+        }
+        return ClassFileIndex.forClassLoader(Paths.get(indexFile), properties.getAnalysisClassLoader());
+    }
+
     @Override
     public @NonNull LanguageVersionHandler services() {
         return this;
@@ -133,6 +158,9 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     @Override
     public void close() throws Exception {
         this.typeSystem.logStats();
+        if (classFileIndex != null) {
+            classFileIndex.persist();
+        }
         super.close();
     }
 }
@@ -25,9 +25,18 @@ public class JavaLanguageProperties extends JvmLanguagePropertyBundle {
                        .defaultValue(InferenceLoggingVerbosity.DISABLED)
                        .build();
 
+    static final PropertyDescriptor<String> AUX_CLASSPATH_INDEX =
+        PropertyFactory.stringProperty("auxClasspathIndex")
+                       .desc("Path of a file in which the class files found on the auxclasspath are stored, "
+                                 + "so that later runs with the same auxclasspath don't need to search the jars again. "
+                                 + "Disabled if empty.")
+                       .defaultValue("")
+                       .build();
+
     public JavaLanguageProperties() {
         super(JavaLanguageModule.getInstance());
         definePropertyDescriptor(INTERNAL_INFERENCE_LOGGING_VERBOSITY);
+        definePropertyDescriptor(AUX_CLASSPATH_INDEX);
         definePropertyDescriptor(CpdLanguageProperties.CPD_IGNORE_METADATA);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_IDENTIFIERS);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_LITERALS);
@@ -0,0 +1,557 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
+import net.sourceforge.pmd.internal.util.IOUtil;
+
+/**
+ * A classpath that remembers the class files found by another classpath
+ * in a file, so that later analyses with the same classpath don't need to
+ * open the jars again. Lookups that failed are remembered as well.
+ *
+ * <p>The index file is only used if its fingerprint matches the fingerprint
+ * of the current classpath, which covers the contents of the jars, the
+ * runtime image and the PMD version. Directories on the classpath typically
+ * contain the compiled classes of the analysed project, which change between
+ * runs. They are not fingerprinted, and the classes found there are never
+ * recorded. Instead, the index remembers in which entry of the classpath
+ * each class was found, and the directories that come before that entry
+ * are searched first, so that the order of the classpath is respected.
+ *
+ * <p>The index file is memory-mapped. Classes found in the delegate
+ * classpath are written to a temporary file as they are found, only their
+ * offset is kept in memory. {@link #persist()} appends them to the index
+ * file.
+ */
+public final class ClassFileIndex implements Classpath {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassFileIndex.class);
+
+    private static final int MAGIC = 0x504D_4458; // "PMDX"
+    private static final int FORMAT_VERSION = 2;
+    /** Length of a record whose class file was not found. */
+    private static final int MISSING = -1;
+    /** Entry of a class file found in the runtime image or in a parent class loader. */
+    private static final int BEFORE_ENTRIES = -1;
+
+    /** See FileAnalysisCache, a mapped file cannot be replaced on Windows. */
+    private static final boolean CAN_MAP_FILES = !System.getProperty("os.name", "").startsWith("Windows");
+
+    private static final ClasspathFingerprinter FINGERPRINTER = new ClasspathFingerprinter();
+
+    private final Path indexFile;
+    private final String fingerprint;
+    private final List<URL> entries;
+    // the directories among the entries, at the same index, null for other entries
+    private final Path[] directories;
+    private final Classpath delegate;
+    private final Function<String, @Nullable URL> locator;
+
+    // The records of the index file, by resource path. A record is the
+    // resource path, the entry of the class file, its length and its bytes.
+    // The offsets point to the entry.
+    private ByteBuffer loadedFile;
+    private final Map<String, Integer> loadedOffsets = new HashMap<>();
+    private int loadedRecordsStart;
+    // end of the last complete record, the file is longer if the last
+    // record was not completely written
+    private int loadedRecordsEnd;
+
+    // The records found since the index was loaded, in the same format
+    private FileChannel newRecordsFile;
+    private long newRecordsLength;
+    private final ConcurrentMap<String, Long> newOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new index. The index file is loaded immediately if it exists.
+     *
+     * @param indexFile   File that contains the index
+     * @param fingerprint Fingerprint of the delegate classpath
+     * @param entries     Entries of the delegate classpath, in order. Directories
+     *                    among them are never recorded in the index
+     * @param delegate    Classpath used to find classes missing from the index
+     * @param locator     Returns the URL of a resource of the delegate classpath,
+     *                    from which the entry that contains it is determined
+     */
+    ClassFileIndex(Path indexFile, String fingerprint, List<URL> entries, Classpath delegate, Function<String, @Nullable URL> locator) {
+        this.indexFile = indexFile.toAbsolutePath();
+        this.fingerprint = fingerprint;
+        this.entries = new ArrayList<>(entries);
+        this.directories = new Path[entries.size()];
+        for (int i = 0; i < directories.length; i++) {
+            Path path = toPath(entries.get(i));
+            if (path != null && Files.isDirectory(path)) {
+                directories[i] = path;
+            }
+        }
+        this.delegate = delegate;
+        this.locator = locator;
+        load();
+    }
+
+    /**
+     * Creates an index for the classes found by the given class loader.
+     * Only {@link URLClassLoader}s are supported, as their classpath can
+     * be fingerprinted. Returns null for other class loaders.
+     *
+     * @param indexFile File that contains the index
+     * @param loader    Class loader used to find classes
+     */
+    public static @Nullable ClassFileIndex forClassLoader(Path indexFile, ClassLoader loader) {
+        if (!(loader instanceof URLClassLoader)) {
+            LOG.debug("Class file index is not supported for class loader {}", loader);
+            return null;
+        }
+        URL[] urls = ((URLClassLoader) loader).getURLs();
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(PMDVersion.VERSION).append('\n')
+                   .append(System.getProperty("java.version")).append('\n')
+                   .append(System.getProperty("java.home")).append('\n')
+                   .append(System.getProperty("java.class.path")).append('\n')
+                   .append(Long.toHexString(FINGERPRINTER.fingerprint(urls))).append('\n');
+        for (URL url : urls) {
+            fingerprint.append(url).append('\n');
+        }
+        if (loader instanceof ClasspathClassLoader) {
+            String javaHome = ((ClasspathClassLoader) loader).getJavaHome();
+            if (javaHome != null) {
+                fingerprint.append(javaHome).append('\n');
+                appendFileStamp(fingerprint, Paths.get(javaHome, "lib", "modules"));
+            }
+        }
+        return new ClassFileIndex(indexFile, fingerprint.toString(), Arrays.asList(urls),
+                                  Classpath.forClassLoader(loader), loader::getResource);
+    }
+
+    private static @Nullable Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    private static void appendFileStamp(StringBuilder fingerprint, Path file) {
+        try {
+            fingerprint.append(Files.size(file)).append('@').append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+        } catch (IOException ignored) {
+            fingerprint.append("?\n");
+        }
+    }
+
+    @Override
+    public @Nullable InputStream findResource(String resourcePath) {
+        Record record = findRecord(resourcePath);
+        if (record == null) {
+            return findInDelegate(resourcePath);
+        }
+        // a directory that comes before the entry of the record may
+        // contain the class file now
+        InputStream inDirectory = findInDirectories(resourcePath, record.entry);
+        if (inDirectory != null) {
+            return inDirectory;
+        }
+        return record.bytes == null ? null : new ByteArrayInputStream(record.bytes);
+    }
+
+    private @Nullable Record findRecord(String resourcePath) {
+        Integer loadedOffset = loadedOffsets.get(resourcePath);
+        if (loadedOffset != null) {
+            return readLoadedRecord(loadedOffset);
+        }
+        Long newOffset = newOffsets.get(resourcePath);
+        if (newOffset != null) {
+            try {
+                return readNewRecord(newOffset);
+            } catch (IOException e) {
+                LOG.debug("Cannot read {} from the new records of the class file index", resourcePath, e);
+            }
+        }
+        return null;
+    }
+
+    private Record readLoadedRecord(int offset) {
+        ByteBuffer file = loadedFile.duplicate();
+        int entry = file.getInt(offset);
+        int length = file.getInt(offset + 4);
+        if (length == MISSING) {
+            return new Record(entry, null);
+        }
+        byte[] bytes = new byte[length];
+        file.position(offset + 8);
+        file.get(bytes);
+        return new Record(entry, bytes);
+    }
+
+    private Record readNewRecord(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(newRecordsFile, header, offset);
+        int entry = header.getInt(0);
+        int length = header.getInt(4);
+        if (length == MISSING) {
+            return new Record(entry, null);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(newRecordsFile, bytes, offset + 8);
+        return new Record(entry, bytes.array());
+    }
+
+    private @Nullable InputStream findInDirectories(String resourcePath, int entry) {
+        for (int i = 0; i < Math.min(entry, directories.length); i++) {
+            if (directories[i] == null) {
+                continue;
+            }
+            Path file = directories[i].resolve(resourcePath);
+            if (Files.isRegularFile(file)) {
+                try {
+                    return Files.newInputStream(file);
+                } catch (IOException e) {
+                    LOG.debug("Cannot read {}", file, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private @Nullable InputStream findInDelegate(String resourcePath) {
+        byte[] bytes = readFromDelegate(resourcePath);
+        // a missing class file may appear in any directory
+        int entry = entries.size();
+        if (bytes != null) {
+            entry = entryOf(locator.apply(resourcePath));
+            if (entry >= 0 && directories[entry] != null) {
+                // the class files of directories are never recorded
+                return new ByteArrayInputStream(bytes);
+            }
+        }
+        // two threads may record the same class, the last record wins
+        addRecord(resourcePath, entry, bytes);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    private byte @Nullable [] readFromDelegate(String resourcePath) {
+        try (InputStream stream = delegate.findResource(resourcePath)) {
+            if (stream == null) {
+                return null;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            IOUtil.copy(stream, bytes);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            LOG.debug("Cannot read {}", resourcePath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of the entry that contains the resource with the
+     * given URL, or {@link #BEFORE_ENTRIES} if it is not in an entry.
+     */
+    private int entryOf(@Nullable URL url) {
+        if (url == null) {
+            return BEFORE_ENTRIES;
+        }
+        if ("jar".equals(url.getProtocol())) {
+            String location = url.toString();
+            int separator = location.indexOf("!/");
+            String jar = location.substring("jar:".length(), separator < 0 ? location.length() : separator);
+            for (int i = 0; i < entries.size(); i++) {
+                if (jar.equals(entries.get(i).toString())) {
+                    return i;
+                }
+            }
+        } else {
+            Path file = toPath(url);
+            for (int i = 0; file != null && i < directories.length; i++) {
+                if (directories[i] != null && file.startsWith(directories[i])) {
+                    return i;
+                }
+            }
+        }
+        return BEFORE_ENTRIES;
+    }
+
+    private synchronized void addRecord(String resourcePath, int entry, byte @Nullable [] bytes) {
+        try {
+            if (newRecordsFile == null) {
+                Path parent = indexFile.getParent();
+                Files.createDirectories(parent);
+                Path file = Files.createTempFile(parent, indexFile.getFileName().toString(), ".new");
+                newRecordsFile = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                  StandardOpenOption.DELETE_ON_CLOSE);
+                newRecordsLength = 0;
+            }
+            byte[] name = resourcePath.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(12 + name.length + (bytes == null ? 0 : bytes.length));
+            record.putInt(name.length).put(name).putInt(entry);
+            if (bytes == null) {
+                record.putInt(MISSING);
+            } else {
+                record.putInt(bytes.length).put(bytes);
+            }
+            record.flip();
+            writeFully(newRecordsFile, record, newRecordsLength);
+            newOffsets.put(resourcePath, newRecordsLength + 4 + name.length);
+            newRecordsLength += record.limit();
+        } catch (IOException e) {
+            LOG.debug("Cannot add {} to the class file index", resourcePath, e);
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                LOG.debug("Class file index {} is too large, it will be rebuilt", indexFile);
+                return;
+            }
+            ByteBuffer file = CAN_MAP_FILES ? channel.map(MapMode.READ_ONLY, 0, size) : readFully(channel, (int) size);
+            if (size < 12 || file.getInt(0) != MAGIC || file.getInt(4) != FORMAT_VERSION) {
+                LOG.debug("Class file index {} has an unknown format, it will be rebuilt", indexFile);
+                return;
+            }
+            int fingerprintLength = file.getInt(8);
+            if (fingerprintLength < 0 || 12L + fingerprintLength > size) {
+                throw new EOFException();
+            }
+            byte[] storedFingerprint = new byte[fingerprintLength];
+            file.position(12);
+            file.get(storedFingerprint);
+            if (!fingerprint.equals(new String(storedFingerprint, StandardCharsets.UTF_8))) {
+                LOG.debug("Class file index {} invalidated, classpath changed", indexFile);
+                return;
+            }
+
+            Map<String, Integer> offsets = new HashMap<>();
+            int recordsEnd = file.position();
+            try {
+                while (file.hasRemaining()) {
+                    String name = readString(file);
+                    int offset = file.position();
+                    readInt(file); // entry
+                    int length = readInt(file);
+                    if (length != MISSING) {
+                        if (length < 0 || length > file.remaining()) {
+                            throw new EOFException();
+                        }
+                        file.position(file.position() + length);
+                    }
+                    offsets.put(name, offset);
+                    recordsEnd = file.position();
+                }
+            } catch (EOFException e) {
+                // the complete records are still usable
+                LOG.debug("Class file index {} ends with an incomplete record, it will be rewritten", indexFile);
+            }
+            loadedOffsets.putAll(offsets);
+            loadedFile = file;
+            loadedRecordsStart = 12 + fingerprintLength;
+            loadedRecordsEnd = recordsEnd;
+            LOG.debug("Class file index loaded from {}, {} entries", indexFile, offsets.size());
+        } catch (IOException e) {
+            LOG.debug("Class file index {} could not be loaded, it will be rebuilt", indexFile, e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int readInt(ByteBuffer file) throws EOFException {
+        if (file.remaining() < 4) {
+            throw new EOFException();
+        }
+        return file.getInt();
+    }
+
+    private static String readString(ByteBuffer file) throws EOFException {
+        int length = readInt(file);
+        if (length < 0 || length > file.remaining()) {
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[length];
+        file.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private byte[] header() {
+        byte[] fingerprintBytes = fingerprint.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(12 + fingerprintBytes.length);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(fingerprintBytes.length).put(fingerprintBytes);
+        return header.array();
+    }
+
+    /**
+     * Appends the classes that were found since the index was loaded to
+     * the index file. The file is only rewritten if it was not usable.
+     * Errors are logged and otherwise ignored, the index is only an
+     * optimization.
+     */
+    public synchronized void persist() {
+        if (newRecordsFile == null) {
+            return;
+        }
+        try {
+            // a file lock is held by the whole JVM, so it only keeps other
+            // processes out, and cannot be taken twice by this process
+            synchronized (ClassFileIndex.class) {
+                if (loadedFile != null && loadedRecordsEnd == loadedFile.capacity()) {
+                    appendToIndex();
+                } else {
+                    writeNewIndex();
+                }
+            }
+            LOG.debug("Class file index {} updated, {} new entries", indexFile, newOffsets.size());
+        } catch (IOException e) {
+            LOG.debug("Could not persist class file index to {}", indexFile, e);
+        } finally {
+            // the temporary file is deleted on close
+            IOUtil.closeQuietly(newRecordsFile);
+            newRecordsFile = null;
+            newOffsets.clear();
+        }
+    }
+
+    private void appendToIndex() throws IOException {
+        byte[] header = header();
+        try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = index.lock()) {
+            // other analyses may have appended records since the index was
+            // loaded, but the index may also have been replaced
+            ByteBuffer currentHeader = ByteBuffer.allocate(header.length);
+            readFully(index, currentHeader, 0);
+            if (!Arrays.equals(header, currentHeader.array())) {
+                LOG.debug("Class file index {} was replaced by another analysis", indexFile);
+                return;
+            }
+            transferNewRecords(index, index.size());
+        }
+    }
+
+    private void writeNewIndex() throws IOException {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.wrap(header());
+                writeFully(channel, header, 0);
+                long position = header.limit();
+                if (loadedFile != null) {
+                    // the complete records of the loaded file
+                    ByteBuffer loadedRecords = loadedFile.duplicate();
+                    loadedRecords.limit(loadedRecordsEnd).position(loadedRecordsStart);
+                    writeFully(channel, loadedRecords.slice(), position);
+                    position += loadedRecordsEnd - loadedRecordsStart;
+                }
+                transferNewRecords(channel, position);
+            }
+            try {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    private void transferNewRecords(FileChannel target, long position) throws IOException {
+        target.position(position);
+        long transferred = 0;
+        while (transferred < newRecordsLength) {
+            transferred += newRecordsFile.transferTo(transferred, newRecordsLength - transferred, target);
+        }
+    }
+
+    private static void deleteQuietly(@Nullable Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // ignored
+            }
+        }
+    }
+
+    private static final class Record {
+
+        /** Index of the classpath entry that contains the class file. */
+        final int entry;
+        /** Contents of the class file, null if it was not found. */
+        final byte @Nullable [] bytes;
+
+        Record(int entry, byte @Nullable [] bytes) {
+            this.entry = entry;
+            this.bytes = bytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClassFileIndex[" + indexFile + ", " + loadedOffsets.size() + " loaded, " + newOffsets.size() + " new]";
+    }
+}
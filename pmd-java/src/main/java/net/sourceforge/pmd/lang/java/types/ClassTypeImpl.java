@@ -263,6 +263,8 @@ class ClassTypeImpl implements JClassType {
     public JClassType getErasure() {
         if ((!isGeneric() || isRaw()) && enclosingType == null) {
             return this;
+        } else if (typeAnnotations.isEmpty()) {
+            return ts.erasedType(symbol);
         }
 
         return new ErasedClassType(ts, symbol, typeAnnotations);
@@ -658,6 +658,15 @@ public final class TypeOps {
                 return subtypesAll(t, asList(s));
             }
 
+            if (TypeRelationCache.isShareable(t) && TypeRelationCache.isShareable(s)) {
+                // no inference vars, so the result is the same whether pure or not
+                JTypeMirror tt = t;
+                return t.getTypeSystem().getRelationCache().isConvertible(t, s, capture, () -> convertibleByVisitor(tt, s, capture));
+            }
+            return convertibleByVisitor(t, s, capture);
+        }
+
+        private Convertibility convertibleByVisitor(JTypeMirror t, JTypeMirror s, boolean capture) {
             if (capture) {
                 t = capture(t);
             }
@@ -1647,6 +1656,9 @@ public final class TypeOps {
             return t.getTypeSystem().OBJECT;
         }
 
+        if (TypeRelationCache.isShareable(t) && TypeRelationCache.isShareable(s)) {
+            return t.getTypeSystem().getRelationCache().asSuper(t, s, () -> t.acceptVisitor(AsSuperVisitor.INSTANCE, s));
+        }
         return t.acceptVisitor(AsSuperVisitor.INSTANCE, s);
     }
 
@@ -1897,6 +1909,8 @@ public final class TypeOps {
             // static methods, start on interface
             // static interface methods are not inherited
             return type.streamDeclaredMethods(staticMethodFilter(name, true, enclosing)).collect(Collectors.toList());
+        } else if (TypeRelationCache.isShareable(type)) {
+            return getMethodsOfShareable(type, name, staticOnly, enclosing);
         } else if (staticOnly) {
             // static methods, doesn't start on interface
             // -> ignore non-static, ignore any that are interfaces
@@ -1907,6 +1921,42 @@ public final class TypeOps {
         }
     }
 
+    /**
+     * Same as the last cases of {@link #getMethodsOf(JTypeMirror, String, boolean, JClassSymbol)},
+     * but the methods that don't depend on the enclosing class are shared
+     * by all lookups. If they're all public, then so is the result.
+     */
+    private static List<JMethodSig> getMethodsOfShareable(JTypeMirror type, String name, boolean staticOnly, @NonNull JClassSymbol enclosing) {
+        MethodLookup lookup = type.getTypeSystem().getRelationCache().methodLookup(type, name, staticOnly, () -> {
+            List<JMethodSig> candidates =
+                type.streamMethods(it -> it.nameEquals(name)
+                    && (!staticOnly || Modifier.isStatic(it.getModifiers()) && !it.getEnclosingClass().isInterface()))
+                    .collect(Collectors.toList());
+            boolean allPublic = candidates.stream().allMatch(m -> Modifier.isPublic(m.getSymbol().getModifiers()));
+            return new MethodLookup(candidates, allPublic ? candidates.stream().collect(OverloadSet.collectMostSpecific(type)) : null);
+        });
+        if (lookup.allAccessible != null) {
+            return lookup.allAccessible;
+        }
+        return lookup.candidates.stream()
+                                .filter(m -> isAccessible(m.getSymbol(), enclosing))
+                                .collect(OverloadSet.collectMostSpecific(type));
+    }
+
+    /** The result of a method lookup that doesn't depend on the enclosing class. */
+    static final class MethodLookup {
+
+        /** Methods with the name, in the order they are found. */
+        final List<JMethodSig> candidates;
+        /** The most specific candidates, if they're all accessible from anywhere. */
+        final @Nullable List<JMethodSig> allAccessible;
+
+        MethodLookup(List<JMethodSig> candidates, @Nullable List<JMethodSig> allAccessible) {
+            this.candidates = candidates;
+            this.allAccessible = allAccessible;
+        }
+    }
+
     private static @NonNull Predicate<JMethodSymbol> methodFilter(String name, @NonNull JClassSymbol enclosing) {
         return it -> isAccessibleWithName(name, enclosing, it);
     }
@@ -0,0 +1,224 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+
+import net.sourceforge.pmd.lang.java.symbols.JElementSymbol;
+import net.sourceforge.pmd.lang.java.symbols.JTypeDeclSymbol;
+import net.sourceforge.pmd.lang.java.types.TypeOps.Convertibility;
+import net.sourceforge.pmd.lang.java.types.TypeOps.MethodLookup;
+
+/**
+ * Caches the relations between types that are computed again and again
+ * for different files, like subtyping between library types. The cache is
+ * owned by a {@link TypeSystem} and shared by all the threads that use it.
+ *
+ * <p>Only relations between {@linkplain #isShareable(JTypeMirror) shareable}
+ * types are cached. Those types are made of symbols loaded from class files,
+ * and don't contain inference variables or captured type variables, so that
+ * relations between them don't depend on the file being analysed. Types
+ * declared in source files are never cached, so that the cache doesn't retain
+ * the AST of a file.
+ *
+ * <p>Each cache is bounded, it forgets the entries that were not used recently.
+ */
+final class TypeRelationCache {
+
+    /** Maximum number of entries of each cache. */
+    private static final int MAX_SIZE = 16_384;
+
+    private static final Object NO_VALUE = new Object();
+
+    private final BoundedCache<Relation, Convertibility> subtyping = new BoundedCache<>("subtyping");
+    private final BoundedCache<Relation, Object> asSuper = new BoundedCache<>("asSuper");
+    private final BoundedCache<JTypeDeclSymbol, JClassType> erasure = new BoundedCache<>("erasure");
+    private final BoundedCache<Relation, MethodLookup> methods = new BoundedCache<>("method lookup");
+
+    /**
+     * Returns true if the relations of the given type may be cached.
+     */
+    static boolean isShareable(@Nullable JTypeMirror t) {
+        if (t instanceof JPrimitiveType) {
+            return true;
+        } else if (t instanceof JClassType) {
+            JClassType ct = (JClassType) t;
+            if (!isShareable(ct.getSymbol())
+                || ct.getEnclosingType() != null && !isShareable(ct.getEnclosingType())) {
+                return false;
+            }
+            for (JTypeMirror arg : ct.getTypeArgs()) {
+                if (!isShareable(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (t instanceof JArrayType) {
+            return isShareable(((JArrayType) t).getComponentType());
+        } else if (t instanceof JWildcardType) {
+            return isShareable(((JWildcardType) t).getBound());
+        } else if (t instanceof JTypeVar) {
+            JTypeVar tv = (JTypeVar) t;
+            return !tv.isCaptured() && tv.getSymbol() != null && tv.getSymbol().tryGetNode() == null;
+        } else if (t instanceof JIntersectionType) {
+            for (JTypeMirror component : ((JIntersectionType) t).getComponents()) {
+                if (!isShareable(component)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // inference vars, the null type, sentinel types
+        return false;
+    }
+
+    static boolean isShareable(@Nullable JElementSymbol sym) {
+        return sym != null && !sym.isUnresolved() && sym.tryGetNode() == null;
+    }
+
+    Convertibility isConvertible(JTypeMirror t, JTypeMirror s, boolean capture, Supplier<Convertibility> compute) {
+        return subtyping.get(new Relation(t, s, capture), compute);
+    }
+
+    @Nullable JTypeMirror asSuper(JTypeMirror t, JTypeDeclSymbol sym, Supplier<@Nullable JTypeMirror> compute) {
+        Object result = asSuper.get(new Relation(t, sym, false), () -> {
+            JTypeMirror sup = compute.get();
+            return sup == null ? NO_VALUE : sup;
+        });
+        return result == NO_VALUE ? null : (JTypeMirror) result; // NOPMD CompareObjectsWithEquals
+    }
+
+    JClassType erasure(JTypeDeclSymbol sym, Supplier<JClassType> compute) {
+        return erasure.get(sym, compute);
+    }
+
+    MethodLookup methodLookup(JTypeMirror t, String name, boolean staticOnly, Supplier<MethodLookup> compute) {
+        return methods.get(new Relation(t, name, staticOnly), compute);
+    }
+
+    void logStats(Logger log) {
+        subtyping.logStats(log);
+        asSuper.logStats(log);
+        erasure.logStats(log);
+        methods.logStats(log);
+    }
+
+    /**
+     * Key of a cache entry. Types are compared with their annotations,
+     * as the cached value may contain them.
+     */
+    private static final class Relation {
+
+        private final Object left;
+        private final Object right;
+        private final boolean flag;
+        private final int hash;
+
+        Relation(Object left, Object right, boolean flag) {
+            this.left = left;
+            this.right = right;
+            this.flag = flag;
+            this.hash = (left.hashCode() * 31 + right.hashCode()) * 31 + Boolean.hashCode(flag);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Relation)) {
+                return false;
+            }
+            Relation that = (Relation) o;
+            return hash == that.hash
+                && flag == that.flag
+                && sameComponent(left, that.left)
+                && sameComponent(right, that.right);
+        }
+
+        private static boolean sameComponent(Object a, Object b) {
+            if (a instanceof JTypeMirror && b instanceof JTypeMirror) {
+                return TypeOps.isSameTypeWithSameAnnotations((JTypeMirror) a, (JTypeMirror) b);
+            }
+            return Objects.equals(a, b);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A concurrent cache with a bounded size. Entries are added to a young
+     * generation. When it is full, it becomes the old generation, and the
+     * previous old generation is dropped. Entries of the old generation
+     * that are used again are moved back to the young generation.
+     */
+    private static final class BoundedCache<K, V> {
+
+        private final String name;
+        private final AtomicReference<Generations<K, V>> generations = new AtomicReference<>(new Generations<>(null));
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        BoundedCache(String name) {
+            this.name = name;
+        }
+
+        @NonNull V get(K key, Supplier<? extends @NonNull V> compute) {
+            Generations<K, V> gen = generations.get();
+            V value = gen.young.get(key);
+            if (value == null && gen.old != null) {
+                value = gen.old.get(key);
+                if (value != null) {
+                    gen.put(key, value);
+                }
+            }
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+
+            misses.increment();
+            // The value is computed outside of the map, as computing it
+            // may query the same cache recursively.
+            value = compute.get();
+            if (gen.put(key, value) > MAX_SIZE / 2) {
+                generations.compareAndSet(gen, new Generations<>(gen.young));
+            }
+            return value;
+        }
+
+        void logStats(Logger log) {
+            long numHits = hits.sum();
+            long total = numHits + misses.sum();
+            log.debug("Type relation cache ({}): {} queries, {} hits ({}%)",
+                      name, total, numHits, total == 0 ? 0 : numHits * 100 / total);
+        }
+    }
+
+    private static final class Generations<K, V> {
+
+        private final ConcurrentHashMap<K, V> young = new ConcurrentHashMap<>();
+        private final @Nullable ConcurrentHashMap<K, V> old;
+        private final AtomicInteger youngSize = new AtomicInteger();
+
+        Generations(@Nullable ConcurrentHashMap<K, V> old) {
+            this.old = old;
+        }
+
+        /** Adds an entry to the young generation and returns its size. */
+        int put(K key, V value) {
+            return young.putIfAbsent(key, value) == null ? youngSize.incrementAndGet() : youngSize.get();
+        }
+    }
+}
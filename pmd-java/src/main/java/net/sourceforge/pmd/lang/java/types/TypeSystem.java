@@ -22,6 +22,8 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.pcollections.HashTreePSet;
 import org.pcollections.PSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
@@ -65,6 +67,8 @@ import net.sourceforge.pmd.util.CollectionUtil;
 @SuppressWarnings("PMD.CompareObjectsWithEquals")
 public final class TypeSystem {
 
+    private static final Logger LOG = LoggerFactory.getLogger(TypeSystem.class);
+
     /**
      * Top type of the reference type system. This is the type for the
      * {@link Object} class. Note that even interfaces have this type
@@ -172,6 +176,8 @@ public final class TypeSystem {
 
     /** Contains special types, that must be shared to be comparable by reference. */
     private final Map<JTypeDeclSymbol, JTypeMirror> sharedTypes;
+    /** Relations between library types, shared by all files. */
+    private final TypeRelationCache relationCache = new TypeRelationCache();
     // test only
     final SymbolResolver resolver;
 
@@ -728,11 +734,18 @@ public final class TypeSystem {
         JTypeMirror t = specialCache(symbol);
         if (t != null) {
             return (JClassType) t.getErasure();
+        } else if (TypeRelationCache.isShareable(symbol)) {
+            return relationCache.erasure(symbol, () -> new ErasedClassType(this, symbol, HashTreePSet.empty()));
         } else {
             return new ErasedClassType(this, symbol, HashTreePSet.empty());
         }
     }
 
+    // package-private
+    TypeRelationCache getRelationCache() {
+        return relationCache;
+    }
+
 
     /**
      * Returns a new type variable for the given symbol. This is only
@@ -750,6 +763,7 @@ public final class TypeSystem {
      */
     public void logStats() {
         resolver.logStats();
+        relationCache.logStats(LOG);
     }
 
     private static final class NullType implements JTypeMirror {
@@ -0,0 +1,128 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.java.JavaParsingHelper;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableId;
+import net.sourceforge.pmd.lang.java.ast.InternalApiBridge;
+import net.sourceforge.pmd.lang.java.ast.JavadocComment;
+import net.sourceforge.pmd.lang.java.ast.JavadocCommentOwner;
+import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor.LazyPass;
+
+class JavaAstProcessorTest {
+
+    private static final String CODE =
+        "/** The class. */\n"
+            + "class Foo implements Comparable<Foo> {\n"
+            + "    /** A field. */\n"
+            + "    int f;\n"
+            + "    /** Compares. */\n"
+            + "    public int compareTo(Foo o) {\n"
+            + "        int x = o.f;\n"
+            + "        x = x + f;\n"
+            + "        return x;\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        String s = \"foo\";\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    void other(int p) { p++; }\n"
+            + "}\n";
+
+    @Test
+    void testLazyPassesDontRunWithoutAccess() {
+        JavaAstProcessor proc = InternalApiBridge.getProcessor(parse());
+        for (LazyPass pass : LazyPass.values()) {
+            assertFalse(proc.isPassDone(pass), pass + " should not have run");
+        }
+    }
+
+    @Test
+    void testCommentsAreAssignedOnDemand() {
+        ASTCompilationUnit acu = parse();
+        List<String> comments = comments(acu);
+        assertOnlyDone(acu, LazyPass.COMMENTS);
+        assertEquals(comments(eagerlyProcessed()), comments);
+    }
+
+    @Test
+    void testUsagesAreResolvedOnDemand() {
+        ASTCompilationUnit acu = parse();
+        List<String> usages = usages(acu);
+        assertOnlyDone(acu, LazyPass.USAGES);
+        assertEquals(usages(eagerlyProcessed()), usages);
+    }
+
+    @Test
+    void testOverridesAreResolvedOnDemand() {
+        ASTCompilationUnit acu = parse();
+        List<String> overrides = overrides(acu);
+        assertOnlyDone(acu, LazyPass.OVERRIDES);
+        assertEquals(overrides(eagerlyProcessed()), overrides);
+    }
+
+    private static ASTCompilationUnit parse() {
+        return JavaParsingHelper.DEFAULT.parse(CODE);
+    }
+
+    /** Runs all the lazy passes before any of their results is used. */
+    private static ASTCompilationUnit eagerlyProcessed() {
+        ASTCompilationUnit acu = parse();
+        JavaAstProcessor proc = InternalApiBridge.getProcessor(acu);
+        for (LazyPass pass : LazyPass.values()) {
+            proc.ensurePassDone(pass);
+        }
+        return acu;
+    }
+
+    private static void assertOnlyDone(ASTCompilationUnit acu, LazyPass expected) {
+        JavaAstProcessor proc = InternalApiBridge.getProcessor(acu);
+        for (LazyPass pass : LazyPass.values()) {
+            assertEquals(pass == expected, proc.isPassDone(pass), "Unexpected state of " + pass);
+        }
+    }
+
+    private static List<String> comments(ASTCompilationUnit acu) {
+        List<String> result = new ArrayList<>();
+        for (JavadocCommentOwner owner : acu.descendants(JavadocCommentOwner.class)) {
+            JavadocComment comment = owner.getJavadocComment();
+            result.add(owner.getXPathNodeName() + ": " + (comment == null ? null : comment.getText()));
+        }
+        assertTrue(result.contains("ClassDeclaration: /** The class. */"));
+        return result;
+    }
+
+    private static List<String> usages(ASTCompilationUnit acu) {
+        List<String> result = new ArrayList<>();
+        for (ASTVariableId id : acu.descendants(ASTVariableId.class)) {
+            List<String> usages = new ArrayList<>();
+            id.getLocalUsages().forEach(usage -> usages.add(usage.getText() + "@" + usage.getBeginLine()));
+            result.add(id.getName() + ": " + usages);
+        }
+        assertTrue(result.contains("x: [x@8, x@8, x@9]"));
+        return result;
+    }
+
+    private static List<String> overrides(ASTCompilationUnit acu) {
+        List<String> result = new ArrayList<>();
+        for (ASTMethodDeclaration method : acu.descendants(ASTMethodDeclaration.class)) {
+            result.add(method.getName() + ": " + method.isOverridden() + " " + method.getOverriddenMethod());
+        }
+        assertTrue(result.get(0).startsWith("compareTo: true"));
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.xml.sax.InputSource;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.internal.SystemProps;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.RuleSetLoader;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
+import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.test.schema.RuleTestCollection;
+import net.sourceforge.pmd.test.schema.RuleTestDescriptor;
+import net.sourceforge.pmd.test.schema.TestSchemaParser;
+
+/**
+ * Runs the test cases of all the built-in XPath rules once with the queries
+ * that are evaluated directly on the AST, and once with Saxon only (see
+ * {@link SystemProps#isXPathSaxonOnly()}), and checks that the violations
+ * are the same. The rule tests themselves only check the first way.
+ */
+class CompiledXPathRulesTest {
+
+    private static final String[] CATEGORIES = {
+        "bestpractices", "codestyle", "design", "documentation", "errorprone",
+        "multithreading", "performance", "security",
+    };
+
+    @TestFactory
+    Collection<DynamicTest> testSameViolationsAsSaxon() throws Exception {
+        List<DynamicTest> tests = new ArrayList<>();
+        RuleSetLoader loader = new RuleSetLoader().warnDeprecated(false);
+        for (String category : CATEGORIES) {
+            RuleSet ruleSet = loader.loadFromResource("category/java/" + category + ".xml");
+            for (Rule rule : ruleSet.getRules()) {
+                if (rule instanceof XPathRule) {
+                    for (RuleTestDescriptor test : parseTests(category, rule).getTests()) {
+                        if (!test.isDisabled()) {
+                            tests.add(DynamicTest.dynamicTest(rule.getName() + ": " + test.getDescription(),
+                                                              () -> assertSameViolations(test)));
+                        }
+                    }
+                }
+            }
+        }
+        return tests;
+    }
+
+    private static RuleTestCollection parseTests(String category, Rule rule) throws Exception {
+        String testXml = category + "/xml/" + rule.getName() + ".xml";
+        try (InputStream stream = CompiledXPathRulesTest.class.getResourceAsStream(testXml)) {
+            if (stream == null) {
+                return new RuleTestCollection();
+            }
+            InputSource source = new InputSource(stream);
+            source.setSystemId(testXml);
+            return new TestSchemaParser().parse(rule, source);
+        }
+    }
+
+    private static void assertSameViolations(RuleTestDescriptor test) {
+        List<String> compiled = violations(test);
+        List<String> saxonOnly;
+        System.setProperty(SystemProps.PMD_XPATH_SAXON_ONLY, "true");
+        try {
+            saxonOnly = violations(test);
+        } finally {
+            System.clearProperty(SystemProps.PMD_XPATH_SAXON_ONLY);
+        }
+        assertEquals(saxonOnly, compiled);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static List<String> violations(RuleTestDescriptor test) {
+        // the query is created when the copy is initialized by the analysis
+        Rule rule = test.getRule().deepCopy();
+        for (Map.Entry<Object, Object> entry : test.getProperties().entrySet()) {
+            PropertyDescriptor descriptor = rule.getPropertyDescriptor((String) entry.getKey());
+            rule.setProperty(descriptor, descriptor.serializer().fromString((String) entry.getValue()));
+        }
+
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setIgnoreIncrementalAnalysis(true);
+        configuration.setDefaultLanguageVersion(test.getLanguageVersion());
+        configuration.setThreads(0);
+
+        List<String> result = new ArrayList<>();
+        try (PmdAnalysis pmd = PmdAnalysis.create(configuration)) {
+            pmd.files().addFile(TextFile.forCharSeq(test.getCode(), FileId.fromPathLikeString("file"), test.getLanguageVersion()));
+            pmd.addRuleSet(RuleSet.forSingleRule(rule));
+            pmd.addListener(GlobalAnalysisListener.exceptionThrower());
+            for (RuleViolation violation : pmd.performAnalysisAndCollectReport().getViolations()) {
+                result.add(violation.getLocation().startPosToString() + " " + violation.getDescription());
+            }
+        }
+        return result;
+    }
+}
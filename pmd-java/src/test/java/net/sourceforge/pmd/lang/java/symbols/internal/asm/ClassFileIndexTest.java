@@ -0,0 +1,274 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+
+class ClassFileIndexTest {
+
+    @TempDir
+    private Path tempDir;
+    private Path indexFile;
+    private Path classes;
+    private URL jar;
+
+    @BeforeEach
+    void setup() throws IOException {
+        indexFile = tempDir.resolve("index.bin");
+        classes = Files.createDirectories(tempDir.resolve("classes"));
+        jar = tempDir.resolve("lib.jar").toUri().toURL();
+    }
+
+    @Test
+    void testIndexIsReusedWithSameFingerprint() throws IOException {
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "A");
+
+        ClassFileIndex index = newIndex("fp", listOf(jar), delegate);
+        assertEquals("A", read(index.findResource("a/A.class")));
+        assertNull(index.findResource("a/B.class"));
+        index.persist();
+        assertTrue(Files.isRegularFile(indexFile));
+
+        // hits and misses are both served from the index
+        FakeClasspath secondDelegate = new FakeClasspath();
+        ClassFileIndex reloaded = newIndex("fp", listOf(jar), secondDelegate);
+        assertEquals("A", read(reloaded.findResource("a/A.class")));
+        assertNull(reloaded.findResource("a/B.class"));
+        assertEquals(Collections.emptyList(), secondDelegate.queries);
+
+        // new classes are appended to the existing ones
+        secondDelegate.jarContents.put("a/C.class", "C");
+        assertEquals("C", read(reloaded.findResource("a/C.class")));
+        // and served without the delegate before they are persisted
+        assertEquals("C", read(reloaded.findResource("a/C.class")));
+        assertEquals(listOf("a/C.class"), secondDelegate.queries);
+        reloaded.persist();
+
+        ClassFileIndex third = newIndex("fp", listOf(jar), new FakeClasspath());
+        assertEquals("A", read(third.findResource("a/A.class")));
+        assertEquals("C", read(third.findResource("a/C.class")));
+    }
+
+    @Test
+    void testNewRecordsAreAppended() throws IOException {
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "A");
+        delegate.jarContents.put("a/B.class", "B");
+
+        ClassFileIndex index = newIndex("fp", listOf(jar), delegate);
+        assertNotNull(index.findResource("a/A.class"));
+        index.persist();
+        byte[] firstContents = Files.readAllBytes(indexFile);
+
+        ClassFileIndex reloaded = newIndex("fp", listOf(jar), delegate);
+        assertNotNull(reloaded.findResource("a/B.class"));
+        reloaded.persist();
+        byte[] secondContents = Files.readAllBytes(indexFile);
+
+        assertTrue(secondContents.length > firstContents.length);
+        assertArrayEquals(firstContents, Arrays.copyOf(secondContents, firstContents.length));
+    }
+
+    @Test
+    void testIndexIsInvalidatedWhenFingerprintChanges() {
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "A");
+        ClassFileIndex index = newIndex("fp", listOf(jar), delegate);
+        assertNotNull(index.findResource("a/A.class"));
+        index.persist();
+
+        FakeClasspath secondDelegate = new FakeClasspath();
+        ClassFileIndex reloaded = newIndex("other", listOf(jar), secondDelegate);
+        assertNull(reloaded.findResource("a/A.class"));
+        assertEquals(listOf("a/A.class"), secondDelegate.queries);
+    }
+
+    @Test
+    void testClassesOfDirectoriesAreNotRecorded() throws IOException {
+        writeClass("a/A.class", "from dir");
+
+        FakeClasspath delegate = new FakeClasspath();
+        ClassFileIndex index = newIndex("fp", listOf(classes.toUri().toURL(), jar), delegate);
+        assertEquals("from dir", read(index.findResource("a/A.class")));
+        index.persist();
+        // nothing was recorded
+        assertTrue(Files.notExists(indexFile));
+    }
+
+    @Test
+    void testDirectoryBeforeJarShadowsIndexedClass() throws IOException {
+        List<URL> entries = listOf(classes.toUri().toURL(), jar);
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "from jar");
+        ClassFileIndex index = newIndex("fp", entries, delegate);
+        assertEquals("from jar", read(index.findResource("a/A.class")));
+        index.persist();
+
+        // the class was since compiled into the directory
+        writeClass("a/A.class", "from dir");
+        ClassFileIndex reloaded = newIndex("fp", entries, new FakeClasspath());
+        assertEquals("from dir", read(reloaded.findResource("a/A.class")));
+    }
+
+    @Test
+    void testJarBeforeDirectoryShadowsDirectory() throws IOException {
+        List<URL> entries = listOf(jar, classes.toUri().toURL());
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "from jar");
+        ClassFileIndex index = newIndex("fp", entries, delegate);
+        assertEquals("from jar", read(index.findResource("a/A.class")));
+        index.persist();
+
+        writeClass("a/A.class", "from dir");
+        ClassFileIndex reloaded = newIndex("fp", entries, new FakeClasspath());
+        assertEquals("from jar", read(reloaded.findResource("a/A.class")));
+    }
+
+    @Test
+    void testMissingClassIsFoundInNewDirectoryClass() throws IOException {
+        List<URL> entries = listOf(jar, classes.toUri().toURL());
+        ClassFileIndex index = newIndex("fp", entries, new FakeClasspath());
+        assertNull(index.findResource("a/A.class"));
+        index.persist();
+
+        writeClass("a/A.class", "from dir");
+        ClassFileIndex reloaded = newIndex("fp", entries, new FakeClasspath());
+        assertEquals("from dir", read(reloaded.findResource("a/A.class")));
+    }
+
+    @Test
+    void testMalformedIndexIsIgnored() throws IOException {
+        Files.write(indexFile, new byte[] {1, 2, 3});
+
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "A");
+        ClassFileIndex index = newIndex("fp", listOf(jar), delegate);
+        assertEquals("A", read(index.findResource("a/A.class")));
+    }
+
+    @Test
+    void testIncompleteRecordIsDropped() throws IOException {
+        FakeClasspath delegate = new FakeClasspath();
+        delegate.jarContents.put("a/A.class", "A");
+        delegate.jarContents.put("a/B.class", "B");
+        ClassFileIndex index = newIndex("fp", listOf(jar), delegate);
+        assertNotNull(index.findResource("a/A.class"));
+        assertNotNull(index.findResource("a/B.class"));
+        index.persist();
+
+        // as if the analysis had been killed while appending B
+        byte[] contents = Files.readAllBytes(indexFile);
+        Files.write(indexFile, Arrays.copyOf(contents, contents.length - 1));
+
+        FakeClasspath secondDelegate = new FakeClasspath();
+        secondDelegate.jarContents.put("a/B.class", "B");
+        ClassFileIndex reloaded = newIndex("fp", listOf(jar), secondDelegate);
+        assertEquals("A", read(reloaded.findResource("a/A.class")));
+        assertEquals("B", read(reloaded.findResource("a/B.class")));
+        assertEquals(listOf("a/B.class"), secondDelegate.queries);
+        reloaded.persist();
+
+        ClassFileIndex third = newIndex("fp", listOf(jar), new FakeClasspath());
+        assertEquals("A", read(third.findResource("a/A.class")));
+        assertEquals("B", read(third.findResource("a/B.class")));
+    }
+
+    @Test
+    void testResolveSymbolsThroughIndex() throws IOException {
+        ClassLoader loader = ClassFileIndexTest.class.getClassLoader();
+        Classpath classpath = Classpath.forClassLoader(loader);
+        ClassFileIndex index = new ClassFileIndex(indexFile, "fp", Collections.emptyList(), classpath, loader::getResource);
+        TypeSystem.usingClasspath(index).getClassSymbol("java.util.ArrayList").getSuperclass();
+        index.persist();
+
+        ClassFileIndex reloaded = new ClassFileIndex(indexFile, "fp", Collections.emptyList(), path -> null, path -> null);
+        JClassSymbol symbol = TypeSystem.usingClasspath(reloaded).getClassSymbol("java.util.ArrayList");
+        assertNotNull(symbol);
+        assertEquals("java.util.AbstractList", symbol.getSuperclass().getBinaryName());
+        assertArrayEquals(IOUtil.toByteArray(classpath.findResource("java/util/ArrayList.class")),
+                          IOUtil.toByteArray(reloaded.findResource("java/util/ArrayList.class")));
+    }
+
+    private ClassFileIndex newIndex(String fingerprint, List<URL> entries, FakeClasspath delegate) {
+        return new ClassFileIndex(indexFile, fingerprint, entries, delegate, delegate::locate);
+    }
+
+    private void writeClass(String resourcePath, String contents) throws IOException {
+        Path file = classes.resolve(resourcePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        assertNotNull(stream);
+        return IOUtil.readToString(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A classpath with the directory {@link #classes} and the jar
+     * {@link #jar}, in the order of the entries given to the index.
+     */
+    private final class FakeClasspath implements Classpath {
+
+        private final Map<String, String> jarContents = new HashMap<>();
+        private final List<String> queries = new ArrayList<>();
+
+        @Override
+        public InputStream findResource(String resourcePath) {
+            queries.add(resourcePath);
+            Path inDirectory = classes.resolve(resourcePath);
+            if (Files.isRegularFile(inDirectory)) {
+                try {
+                    return Files.newInputStream(inDirectory);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            String content = jarContents.get(resourcePath);
+            return content == null ? null : new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        URL locate(String resourcePath) {
+            try {
+                Path inDirectory = classes.resolve(resourcePath);
+                if (Files.isRegularFile(inDirectory)) {
+                    return inDirectory.toUri().toURL();
+                }
+                return jarContents.containsKey(resourcePath) ? new URL("jar:" + jar + "!/" + resourcePath) : null;
+            } catch (MalformedURLException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types
+
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import net.sourceforge.pmd.lang.java.ast.ParserTestCtx
+import net.sourceforge.pmd.lang.test.ast.IntelliMarker
+import net.sourceforge.pmd.lang.java.types.TypeOps.Convertibility.NEVER
+import net.sourceforge.pmd.lang.java.types.TypeOps.Convertibility.SUBTYPING
+
+class TypeRelationCacheTest : IntelliMarker, FunSpec({
+
+    val ts = testTypeSystem
+    with(TypeDslOf(ts)) {
+        with(gen) {
+
+            test("Types of class files are shareable") {
+                TypeRelationCache.isShareable(`t_List{String}`) shouldBe true
+                TypeRelationCache.isShareable(`t_List{? extends Number}`) shouldBe true
+                TypeRelationCache.isShareable(`t_Collection{T}`) shouldBe true
+                TypeRelationCache.isShareable(`t_Array{Object}`) shouldBe true
+                TypeRelationCache.isShareable(int) shouldBe true
+            }
+
+            test("Types that depend on a file are not shareable") {
+                val (tvar) = ParserTestCtx(this).makeDummyTVars("T")
+
+                TypeRelationCache.isShareable(tvar) shouldBe false
+                TypeRelationCache.isShareable(java.util.List::class[tvar]) shouldBe false
+                TypeRelationCache.isShareable(ts.UNKNOWN) shouldBe false
+                TypeRelationCache.isShareable(ts.NULL_TYPE) shouldBe false
+                TypeRelationCache.isShareable(TypeConversion.capture(`t_List{?}`).typeArgs[0]) shouldBe false
+            }
+
+            test("Cached relations are the same on repeated queries") {
+                repeat(2) {
+                    TypeOps.isConvertible(`t_ArrayList{Integer}`, `t_Collection{Integer}`) shouldBe SUBTYPING
+                    TypeOps.isConvertible(`t_ArrayList{Integer}`, `t_List{String}`) shouldBe NEVER
+                    `t_ArrayList{Integer}`.getAsSuper(t_Collection.symbol) shouldBe `t_Collection{Integer}`
+                    `t_ArrayList{Integer}`.getAsSuper(t_String.symbol) shouldBe null
+                }
+            }
+
+            test("Erasures of class types are shared") {
+                `t_List{String}`.erasure shouldBeSameInstanceAs `t_List{Integer}`.erasure
+                `t_List{String}`.erasure shouldBeSameInstanceAs ts.erasedType(t_List.symbol)
+            }
+        }
+    }
+})